@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Presents octets as characters without copying them, every octet is mapped
+ * to the character with the same value (ISO-8859-1).
+ * 
+ * This is exact for the US-ASCII characters data URIs consist of. Octets
+ * outside of US-ASCII are multi-octet sequences in most charsets, thus they
+ * have to be decoded explicitly using {@link #decode(int, int, Charset)}
+ * where they matter, respectively encoded using {@link #OCTETS} for
+ * passing them through unchanged.
+ *
+ * @author ooxi
+ */
+final class AsciiSequence implements CharSequence {
+	
+	/**
+	 * Charset which maps every character of an {@link AsciiSequence} back
+	 * to its original octet
+	 */
+	static final Charset OCTETS = Charset.forName("ISO-8859-1");
+	
+	private final ByteBuffer buffer;
+	private final int offset;
+	private final int length;
+	
+	
+	
+	/**
+	 * Presents {@code buffer[position, limit)}, neither the position nor
+	 * the limit of {@code buffer} will be modified
+	 */
+	AsciiSequence(ByteBuffer buffer) {
+		this(buffer, buffer.position(), buffer.remaining());
+	}
+	
+	private AsciiSequence(ByteBuffer buffer, int offset, int length) {
+		this.buffer = buffer;
+		this.offset = offset;
+		this.length = length;
+	}
+	
+	
+	
+	@Override
+	public int length() {
+		return length;
+	}
+	
+	@Override
+	public char charAt(int index) {
+		if ((index < 0) || (index >= length)) {
+			throw new IndexOutOfBoundsException("Index "+ index +" out of bounds for length "+ length);
+		}
+		return (char)(buffer.get(offset + index) & 0xFF);
+	}
+	
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if ((start < 0) || (end > length) || (start > end)) {
+			throw new IndexOutOfBoundsException("Range ["+ start +", "+ end +") out of bounds for length "+ length);
+		}
+		return new AsciiSequence(buffer, offset + start, end - start);
+	}
+	
+	@Override
+	public String toString() {
+		return decode(0, length, OCTETS);
+	}
+	
+	
+	
+	/**
+	 * @return true iff all octets in {@code [start, end)} are US-ASCII
+	 */
+	boolean isAscii(int start, int end) {
+		for (int i = start; i < end; ++i) {
+			if (buffer.get(offset + i) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @return Octets {@code [start, end)} decoded using {@code charset}
+	 */
+	String decode(int start, int end, Charset charset) {
+		if (buffer.hasArray()) {
+			return new String(buffer.array(), buffer.arrayOffset() + offset + start, end - start, charset);
+		}
+		
+		final byte[] octets = new byte[end - start];
+		final ByteBuffer view = buffer.duplicate();
+		
+		view.limit(offset + end).position(offset + start);
+		view.get(octets);
+		return new String(octets, charset);
+	}
+}
@@ -0,0 +1,406 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.util.Arrays;
+
+/**
+ * Table driven base64 encoding and decoding primitives
+ * 
+ * Encoding always uses the standard alphabet with padding and without line
+ * breaks. Decoding accepts the standard as well as the URL safe alphabet.
+ * 
+ * @see https://tools.ietf.org/html/rfc4648
+ *
+ * @author ooxi
+ */
+final class Base64Codec {
+	
+	private static final byte[] ENCODE_TABLE = {
+		'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L', 'M',
+		'N', 'O', 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z',
+		'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j', 'k', 'l', 'm',
+		'n', 'o', 'p', 'q', 'r', 's', 't', 'u', 'v', 'w', 'x', 'y', 'z',
+		'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '+', '/'
+	};
+	
+	/**
+	 * Value of every octet in the base64 alphabet (including the URL safe
+	 * alphabet) or -1, indexed by the unsigned octet value thus no range
+	 * check is necessary
+	 */
+	static final byte[] DECODE_TABLE = new byte[256];
+	
+	static {
+		Arrays.fill(DECODE_TABLE, (byte)-1);
+		
+		for (int i = 0; i < ENCODE_TABLE.length; ++i) {
+			DECODE_TABLE[ENCODE_TABLE[i]] = (byte)i;
+		}
+		DECODE_TABLE['-'] = 62;
+		DECODE_TABLE['_'] = 63;
+	}
+	
+	static final byte PAD = '=';
+	
+	
+	
+	private Base64Codec() {
+	}
+	
+	
+	
+	/**
+	 * @return Number of symbols {@code length} octets will be encoded to,
+	 *     including padding
+	 */
+	static long encodedLength(long length) {
+		return 4 * ((length + 2) / 3);
+	}
+	
+	/**
+	 * Validates {@code s[start, end)} against the strict syntax of RFC4648,
+	 * i.e. the standard alphabet only, complete quanta and padding only at
+	 * the very end
+	 * 
+	 * @return Position of the first offending symbol, {@code end} if the
+	 *     last quantum is incomplete or -1 if {@code s[start, end)} is
+	 *     canonical base64
+	 */
+	static int indexOfIllegalSymbol(CharSequence s, int start, int end) {
+		if (0 != (end - start) % 4) {
+			return end;
+		}
+		
+		for (int i = start; i < end; ++i) {
+			final char c = s.charAt(i);
+			
+			if ((c < 0x80) && (DECODE_TABLE[c] >= 0) && ('-' != c) && ('_' != c)) {
+				continue;
+			}
+			
+			/* At most two padding symbols, which must terminate the
+			 * last quantum
+			 */
+			if ((PAD == c) && (end - i <= 2) && ((i + 1 == end) || (PAD == s.charAt(i + 1)))) {
+				return -1;
+			}
+			return i;
+		}
+		return -1;
+	}
+	
+	
+	
+	/**
+	 * Encodes {@code src[srcOffset, srcOffset + length)} into {@code dst}
+	 * starting at {@code dstOffset}
+	 * 
+	 * Only the last chunk of a payload may have a length which is not a
+	 * multiple of three, since its trailing quantum will be padded.
+	 * 
+	 * @return Position in {@code dst} after the last written symbol
+	 */
+	static int encode(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset) {
+		final int end = srcOffset + length;
+		final int whole = srcOffset + length - length % 3;
+		int i = srcOffset;
+		int o = dstOffset;
+		
+		for (; i < whole; i += 3) {
+			final int bits = ((src[i] & 0xFF) << 16) | ((src[i + 1] & 0xFF) << 8) | (src[i + 2] & 0xFF);
+			
+			dst[o++] = ENCODE_TABLE[bits >>> 18];
+			dst[o++] = ENCODE_TABLE[(bits >>> 12) & 0x3F];
+			dst[o++] = ENCODE_TABLE[(bits >>> 6) & 0x3F];
+			dst[o++] = ENCODE_TABLE[bits & 0x3F];
+		}
+		
+		if (end - i == 1) {
+			final int bits = (src[i] & 0xFF) << 16;
+			
+			dst[o++] = ENCODE_TABLE[bits >>> 18];
+			dst[o++] = ENCODE_TABLE[(bits >>> 12) & 0x3F];
+			dst[o++] = PAD;
+			dst[o++] = PAD;
+		} else if (end - i == 2) {
+			final int bits = ((src[i] & 0xFF) << 16) | ((src[i + 1] & 0xFF) << 8);
+			
+			dst[o++] = ENCODE_TABLE[bits >>> 18];
+			dst[o++] = ENCODE_TABLE[(bits >>> 12) & 0x3F];
+			dst[o++] = ENCODE_TABLE[(bits >>> 6) & 0x3F];
+			dst[o++] = PAD;
+		}
+		
+		return o;
+	}
+	
+	
+	
+	/**
+	 * Encodes {@code src[srcOffset, srcOffset + length)} into the
+	 * characters {@code dst} starting at {@code dstOffset}
+	 * 
+	 * @return Position in {@code dst} after the last written symbol
+	 * @see #encode(byte[], int, int, byte[], int)
+	 */
+	static int encode(byte[] src, int srcOffset, int length, char[] dst, int dstOffset) {
+		final int end = srcOffset + length;
+		final int whole = srcOffset + length - length % 3;
+		int i = srcOffset;
+		int o = dstOffset;
+		
+		for (; i < whole; i += 3) {
+			final int bits = ((src[i] & 0xFF) << 16) | ((src[i + 1] & 0xFF) << 8) | (src[i + 2] & 0xFF);
+			
+			dst[o++] = (char)ENCODE_TABLE[bits >>> 18];
+			dst[o++] = (char)ENCODE_TABLE[(bits >>> 12) & 0x3F];
+			dst[o++] = (char)ENCODE_TABLE[(bits >>> 6) & 0x3F];
+			dst[o++] = (char)ENCODE_TABLE[bits & 0x3F];
+		}
+		
+		if (end - i == 1) {
+			final int bits = (src[i] & 0xFF) << 16;
+			
+			dst[o++] = (char)ENCODE_TABLE[bits >>> 18];
+			dst[o++] = (char)ENCODE_TABLE[(bits >>> 12) & 0x3F];
+			dst[o++] = (char)PAD;
+			dst[o++] = (char)PAD;
+		} else if (end - i == 2) {
+			final int bits = ((src[i] & 0xFF) << 16) | ((src[i + 1] & 0xFF) << 8);
+			
+			dst[o++] = (char)ENCODE_TABLE[bits >>> 18];
+			dst[o++] = (char)ENCODE_TABLE[(bits >>> 12) & 0x3F];
+			dst[o++] = (char)ENCODE_TABLE[(bits >>> 6) & 0x3F];
+			dst[o++] = (char)PAD;
+		}
+		
+		return o;
+	}
+	
+	
+	
+	/**
+	 * @return Exact number of octets {@code src[offset, offset + length)}
+	 *     will be decoded to by {@link #decode(byte[], int, int, byte[], int)}
+	 */
+	static int decodedLength(byte[] src, int offset, int length) {
+		final int end = offset + length;
+		int symbols = 0;
+		
+		for (int i = offset; i < end; ++i) {
+			final byte octet = src[i];
+			
+			if (PAD == octet) {
+				break;
+			}
+			if (DECODE_TABLE[octet & 0xFF] >= 0) {
+				++symbols;
+			}
+		}
+		
+		return EncodedPayload.base64Length(symbols);
+	}
+	
+	/**
+	 * Decodes the symbols {@code src[offset, offset + length)} into
+	 * {@code dst} starting at {@code dstOffset}
+	 * 
+	 * Octets outside of the alphabet are ignored and decoding stops at the
+	 * first padding character. A trailing partial quantum of two or three
+	 * symbols carries one or two octets, a single symbol is discarded.
+	 * 
+	 * Since a quantum of four symbols is read before its three octets are
+	 * written, {@code dst} may be {@code src} as long as {@code dstOffset}
+	 * is not greater than {@code offset}.
+	 * 
+	 * @return Position in {@code dst} after the last written octet
+	 */
+	static int decode(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+		final int end = offset + length;
+		int i = offset;
+		int o = dstOffset;
+		
+		while (i < end) {
+			
+			/* Fast path: Whole quanta of four alphabet symbols, any
+			 * other octet results in negative bits
+			 */
+			for (; i + 4 <= end; i += 4) {
+				final int bits =	(DECODE_TABLE[src[i] & 0xFF] << 18)
+						|	(DECODE_TABLE[src[i + 1] & 0xFF] << 12)
+						|	(DECODE_TABLE[src[i + 2] & 0xFF] << 6)
+						|	DECODE_TABLE[src[i + 3] & 0xFF];
+				
+				if (bits < 0) {
+					break;
+				}
+				
+				dst[o++] = (byte)(bits >> 16);
+				dst[o++] = (byte)(bits >> 8);
+				dst[o++] = (byte)bits;
+			}
+			
+			/* Slow path: Assemble a single quantum symbol by symbol,
+			 * skipping octets outside of the alphabet
+			 */
+			int bits = 0;
+			int symbols = 0;
+			
+			for (; (i < end) && (symbols < 4); ++i) {
+				final byte octet = src[i];
+				
+				if (PAD == octet) {
+					return flush(bits, symbols, dst, o);
+				}
+				
+				final int value = DECODE_TABLE[octet & 0xFF];
+				
+				if (value >= 0) {
+					bits = (bits << 6) | value;
+					++symbols;
+				}
+			}
+			
+			if (4 == symbols) {
+				dst[o++] = (byte)(bits >> 16);
+				dst[o++] = (byte)(bits >> 8);
+				dst[o++] = (byte)bits;
+			} else {
+				return flush(bits, symbols, dst, o);
+			}
+		}
+		
+		return o;
+	}
+	
+	/**
+	 * @return Exact number of octets {@code src[offset, offset + length)}
+	 *     will be decoded to by {@link #decode(CharSequence, int, int, byte[], int)}
+	 */
+	static int decodedLength(CharSequence src, int offset, int length) {
+		final int end = offset + length;
+		int symbols = 0;
+		
+		for (int i = offset; i < end; ++i) {
+			final char c = src.charAt(i);
+			
+			if (PAD == c) {
+				break;
+			}
+			if (value(c) >= 0) {
+				++symbols;
+			}
+		}
+		
+		return EncodedPayload.base64Length(symbols);
+	}
+	
+	/**
+	 * Decodes the symbols {@code src[offset, offset + length)} like
+	 * {@link #decode(byte[], int, int, byte[], int)}, thus payloads without
+	 * percent escapes can be decoded straight from the data URI. Characters
+	 * outside of US-ASCII are ignored like every other character outside of
+	 * the alphabet.
+	 * 
+	 * @return Position in {@code dst} after the last written octet
+	 */
+	static int decode(CharSequence src, int offset, int length, byte[] dst, int dstOffset) {
+		final int end = offset + length;
+		int i = offset;
+		int o = dstOffset;
+		
+		while (i < end) {
+			
+			/* Fast path: Whole quanta of four alphabet symbols
+			 */
+			for (; i + 4 <= end; i += 4) {
+				final int bits =	(value(src.charAt(i)) << 18)
+						|	(value(src.charAt(i + 1)) << 12)
+						|	(value(src.charAt(i + 2)) << 6)
+						|	value(src.charAt(i + 3));
+				
+				if (bits < 0) {
+					break;
+				}
+				
+				dst[o++] = (byte)(bits >> 16);
+				dst[o++] = (byte)(bits >> 8);
+				dst[o++] = (byte)bits;
+			}
+			
+			/* Slow path: Assemble a single quantum symbol by symbol
+			 */
+			int bits = 0;
+			int symbols = 0;
+			
+			for (; (i < end) && (symbols < 4); ++i) {
+				final char c = src.charAt(i);
+				
+				if (PAD == c) {
+					return flush(bits, symbols, dst, o);
+				}
+				
+				final int value = value(c);
+				
+				if (value >= 0) {
+					bits = (bits << 6) | value;
+					++symbols;
+				}
+			}
+			
+			if (4 == symbols) {
+				dst[o++] = (byte)(bits >> 16);
+				dst[o++] = (byte)(bits >> 8);
+				dst[o++] = (byte)bits;
+			} else {
+				return flush(bits, symbols, dst, o);
+			}
+		}
+		
+		return o;
+	}
+	
+	/**
+	 * @return Value of the symbol {@code c} or -1 if it is not part of the
+	 *     alphabet
+	 */
+	static int value(char c) {
+		return (c < 0x80) ? DECODE_TABLE[c] : -1;
+	}
+	
+	/**
+	 * Writes the octets carried by a trailing partial quantum
+	 * 
+	 * @return Position in {@code dst} after the last written octet
+	 */
+	private static int flush(int bits, int symbols, byte[] dst, int o) {
+		if (2 == symbols) {
+			dst[o++] = (byte)(bits >> 4);
+		} else if (3 == symbols) {
+			dst[o++] = (byte)(bits >> 10);
+			dst[o++] = (byte)(bits >> 2);
+		}
+		return o;
+	}
+}
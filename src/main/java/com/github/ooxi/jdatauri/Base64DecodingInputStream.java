@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Base64 decodes an underlying stream in chunks of constant size using
+ * {@link Base64Codec}
+ * 
+ * Octets outside of the alphabet are ignored and decoding stops at the first
+ * padding character. A trailing partial quantum of two or three symbols
+ * carries one or two octets, a single symbol is discarded.
+ *
+ * @author ooxi
+ */
+final class Base64DecodingInputStream extends InputStream {
+	
+	private static final int CHUNK_SYMBOLS = 4 * 1024;
+	
+	private final InputStream in;
+	
+	/**
+	 * Alphabet symbols read but not yet decoded, always less than one
+	 * quantum between fills
+	 */
+	private final byte[] symbols = new byte[CHUNK_SYMBOLS];
+	private int carry = 0;
+	
+	private final byte[] octets = new byte[CHUNK_SYMBOLS / 4 * 3];
+	private int octetsStart = 0;
+	private int octetsEnd = 0;
+	
+	private boolean padded = false;
+	private boolean finished = false;
+	
+	
+	
+	Base64DecodingInputStream(InputStream in) {
+		this.in = in;
+	}
+	
+	
+	
+	@Override
+	public int read() throws IOException {
+		if (!fill()) {
+			return -1;
+		}
+		return octets[octetsStart++] & 0xFF;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (0 == len) {
+			return 0;
+		}
+		if (!fill()) {
+			return -1;
+		}
+		
+		final int n = Math.min(len, octetsEnd - octetsStart);
+		System.arraycopy(octets, octetsStart, b, off, n);
+		octetsStart += n;
+		return n;
+	}
+	
+	@Override
+	public int available() {
+		return octetsEnd - octetsStart;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+	
+	
+	
+	/**
+	 * Decodes the next chunk unless decoded octets are still available
+	 * 
+	 * @return false iff the end of the payload has been reached
+	 */
+	private boolean fill() throws IOException {
+		while ((octetsStart == octetsEnd) && !finished) {
+			octetsStart = 0;
+			final int read = padded ? -1 : in.read(symbols, carry, symbols.length - carry);
+			
+			/* Trailing partial quantum
+			 */
+			if (-1 == read) {
+				octetsEnd = Base64Codec.decode(symbols, 0, carry, octets, 0);
+				carry = 0;
+				finished = true;
+				break;
+			}
+			
+			/* Keep only alphabet symbols, thus whole quanta can be
+			 * decoded on the fast path
+			 */
+			final int end = carry + read;
+			int count = carry;
+			
+			for (int i = carry; i < end; ++i) {
+				final byte octet = symbols[i];
+				
+				if (Base64Codec.PAD == octet) {
+					padded = true;
+					break;
+				}
+				if (Base64Codec.DECODE_TABLE[octet & 0xFF] >= 0) {
+					symbols[count++] = octet;
+				}
+			}
+			
+			final int whole = count & ~3;
+			octetsEnd = Base64Codec.decode(symbols, 0, whole, octets, 0);
+			carry = count - whole;
+			System.arraycopy(symbols, whole, symbols, 0, carry);
+		}
+		
+		return octetsStart < octetsEnd;
+	}
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Base64 decodes everything written to it in chunks of constant size using
+ * {@link Base64Codec}
+ * 
+ * Octets outside of the alphabet are ignored and everything after the first
+ * padding character is discarded. Closing this stream only writes the octets
+ * carried by a trailing partial quantum and leaves the underlying stream
+ * open.
+ *
+ * @author ooxi
+ */
+final class Base64DecodingOutputStream extends OutputStream {
+	
+	private static final int CHUNK_SYMBOLS = 4 * 1024;
+	
+	private final OutputStream out;
+	
+	/**
+	 * Alphabet symbols which have not been decoded yet, decoded in place
+	 */
+	private final byte[] symbols = new byte[CHUNK_SYMBOLS];
+	private int pending = 0;
+	private boolean padded = false;
+	private boolean closed = false;
+	
+	
+	
+	Base64DecodingOutputStream(OutputStream out) {
+		this.out = out;
+	}
+	
+	
+	
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] {(byte)b}, 0, 1);
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		final int end = off + len;
+		
+		for (int i = off; (i < end) && !padded; ++i) {
+			final byte octet = b[i];
+			
+			if (Base64Codec.PAD == octet) {
+				padded = true;
+			} else if (Base64Codec.DECODE_TABLE[octet & 0xFF] >= 0) {
+				symbols[pending++] = octet;
+				
+				if (CHUNK_SYMBOLS == pending) {
+					drain();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Writes the trailing partial quantum, the underlying stream will not
+	 * be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		drain();
+		out.flush();
+	}
+	
+	
+	
+	/**
+	 * Decodes all pending symbols, which must be a multiple of four unless
+	 * the stream is being closed
+	 */
+	private void drain() throws IOException {
+		final int length = Base64Codec.decode(symbols, 0, pending, symbols, 0);
+		out.write(symbols, 0, length);
+		pending = 0;
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Base64 encodes everything written to it in chunks of constant size
+ * 
+ * Closing this stream only writes the last (padded) quantum and leaves the
+ * underlying stream open, thus it can terminate a stack of content
+ * encodings in the middle of a data URI.
+ *
+ * @author ooxi
+ */
+final class Base64EncodingOutputStream extends OutputStream {
+	
+	private static final int CHUNK_OCTETS = 3 * 1024;
+	
+	private final OutputStream out;
+	private final byte[] octets = new byte[CHUNK_OCTETS];
+	private final byte[] symbols = new byte[CHUNK_OCTETS / 3 * 4];
+	private int pending = 0;
+	private boolean closed = false;
+	
+	
+	
+	Base64EncodingOutputStream(OutputStream out) {
+		this.out = out;
+	}
+	
+	
+	
+	@Override
+	public void write(int b) throws IOException {
+		if (CHUNK_OCTETS == pending) {
+			drain();
+		}
+		octets[pending++] = (byte)b;
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (CHUNK_OCTETS == pending) {
+				drain();
+			}
+			
+			final int n = Math.min(len, CHUNK_OCTETS - pending);
+			System.arraycopy(b, off, octets, pending, n);
+			pending += n;
+			off += n;
+			len -= n;
+		}
+	}
+	
+	/**
+	 * Writes the last quantum, the underlying stream will not be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		drain();
+		out.flush();
+	}
+	
+	
+	
+	/**
+	 * Encodes all pending octets, which must be a multiple of three unless
+	 * the stream is being closed
+	 */
+	private void drain() throws IOException {
+		final int length = Base64Codec.encode(octets, 0, pending, symbols, 0);
+		out.write(symbols, 0, length);
+		pending = 0;
+	}
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Validates base64 symbols on the fly against the strict syntax of RFC4648
+ * like {@link Base64Codec#indexOfIllegalSymbol(CharSequence, int, int)}
+ * does, passing them through unchanged
+ *
+ * @author ooxi
+ */
+final class Base64ValidatingInputStream extends FilterInputStream {
+	
+	private final long offset;
+	
+	/**
+	 * Number of symbols read so far
+	 */
+	private long position = 0;
+	private int padding = 0;
+	
+	
+	
+	/**
+	 * @param offset Position of the first symbol of {@code in} in the data
+	 *     URI, used for locating illegal symbols
+	 */
+	Base64ValidatingInputStream(InputStream in, long offset) {
+		super(in);
+		this.offset = offset;
+	}
+	
+	
+	
+	@Override
+	public int read() throws IOException {
+		final int octet = in.read();
+		
+		if (-1 == octet) {
+			end();
+		} else {
+			validate(octet);
+		}
+		return octet;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		final int read = in.read(b, off, len);
+		
+		if (-1 == read) {
+			end();
+		}
+		for (int i = 0; i < read; ++i) {
+			validate(b[off + i] & 0xFF);
+		}
+		return read;
+	}
+	
+	/**
+	 * Skipped symbols are read, thus they are validated as well
+	 */
+	@Override
+	public long skip(long n) throws IOException {
+		final byte[] skipped = new byte[(int)Math.min(n, 8192)];
+		long remaining = n;
+		
+		while (remaining > 0) {
+			final int read = read(skipped, 0, (int)Math.min(remaining, skipped.length));
+			
+			if (-1 == read) {
+				break;
+			}
+			remaining -= read;
+		}
+		return n - remaining;
+	}
+	
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+	
+	@Override
+	public synchronized void mark(int readlimit) {
+	}
+	
+	@Override
+	public synchronized void reset() throws IOException {
+		throw new IOException("mark/reset not supported");
+	}
+	
+	
+	
+	/**
+	 * Standard alphabet only, at most two padding symbols which must
+	 * terminate the payload
+	 */
+	private void validate(int octet) throws IOException {
+		final boolean symbol = (octet < 0x80) && (Base64Codec.DECODE_TABLE[octet] >= 0) && ('-' != octet) && ('_' != octet);
+		
+		if ((0 == padding) && symbol) {
+			++position;
+		} else if ((Base64Codec.PAD == octet) && (padding < 2)) {
+			++padding;
+			++position;
+		} else {
+			throw new IOException(DataUriError.ILLEGAL_BASE64.message(offset + position));
+		}
+	}
+	
+	/**
+	 * The last quantum must be complete
+	 */
+	private void end() throws IOException {
+		if (0 != position % 4) {
+			throw new IOException(DataUriError.ILLEGAL_BASE64.message(offset + position));
+		}
+	}
+}
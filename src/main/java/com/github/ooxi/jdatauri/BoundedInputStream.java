@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the octets read from an underlying stream (or only the occurrences
+ * of a single octet) and fails as soon as a limit configured in
+ * {@link DataUriParser} is exceeded
+ *
+ * @author ooxi
+ */
+final class BoundedInputStream extends FilterInputStream {
+	
+	/**
+	 * Counts every octet instead of a single one
+	 */
+	static final int ALL_OCTETS = -1;
+	
+	private final int counted;
+	private final long maximum;
+	private final DataUriError error;
+	private final long offset;
+	
+	private long count = 0;
+	
+	/**
+	 * Number of octets read so far
+	 */
+	private long position = 0;
+	
+	
+	
+	/**
+	 * @param counted Octet to count or {@link #ALL_OCTETS}
+	 * @param maximum Largest number of counted octets which may be read
+	 * @param error Reported once {@code maximum} is exceeded
+	 * @param offset Position of the first octet of {@code in} in the data
+	 *     URI, reported as error offset when counting all octets and used
+	 *     for locating the excess octet otherwise
+	 */
+	BoundedInputStream(InputStream in, int counted, long maximum, DataUriError error, long offset) {
+		super(in);
+		this.counted = counted;
+		this.maximum = maximum;
+		this.error = error;
+		this.offset = offset;
+	}
+	
+	
+	
+	@Override
+	public int read() throws IOException {
+		final int octet = in.read();
+		
+		if (-1 != octet) {
+			count(octet);
+			++position;
+		}
+		return octet;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		final int read = in.read(b, off, len);
+		
+		if (read > 0) {
+			if (ALL_OCTETS == counted) {
+				count += read;
+				check(offset);
+			} else {
+				for (int i = 0; i < read; ++i) {
+					count(b[off + i] & 0xFF);
+					++position;
+				}
+				return read;
+			}
+			position += read;
+		}
+		return read;
+	}
+	
+	/**
+	 * Skipped octets are read, thus they are counted as well
+	 */
+	@Override
+	public long skip(long n) throws IOException {
+		final byte[] skipped = new byte[(int)Math.min(n, 8192)];
+		long remaining = n;
+		
+		while (remaining > 0) {
+			final int read = read(skipped, 0, (int)Math.min(remaining, skipped.length));
+			
+			if (-1 == read) {
+				break;
+			}
+			remaining -= read;
+		}
+		return n - remaining;
+	}
+	
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+	
+	@Override
+	public synchronized void mark(int readlimit) {
+	}
+	
+	@Override
+	public synchronized void reset() throws IOException {
+		throw new IOException("mark/reset not supported");
+	}
+	
+	
+	
+	private void count(int octet) throws IOException {
+		if (ALL_OCTETS == counted) {
+			++count;
+			check(offset);
+		} else if (counted == octet) {
+			++count;
+			check(offset + position);
+		}
+	}
+	
+	private void check(long errorOffset) throws IOException {
+		if (count > maximum) {
+			throw new IOException(error.message(errorOffset));
+		}
+	}
+}
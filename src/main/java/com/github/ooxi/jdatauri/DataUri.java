@@ -22,16 +22,17 @@
  */
 package com.github.ooxi.jdatauri;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.regex.Pattern;
-
-import org.apache.commons.codec.binary.Base64;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * A data URI parser
@@ -44,15 +45,82 @@ import org.apache.commons.codec.binary.Base64;
  */
 public class DataUri {
 	
-	private static final String CHARSET_OPTION_NAME = "charset";
-	private static final String FILENAME_OPTION_NAME = "filename";
-	private static final String CONTENT_DISPOSITION_OPTION_NAME = "content-disposition";
+	static final String DATA_SCHEME = "data:";
+	static final String BASE64_ENCODING_NAME = "base64";
+	static final String CHARSET_OPTION_NAME = "charset";
+	static final String FILENAME_OPTION_NAME = "filename";
+	static final String CONTENT_DISPOSITION_OPTION_NAME = "content-disposition";
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	/**
+	 * Payload is encoded in chunks of constant size when writing data URIs
+	 */
+	private static final int ENCODE_CHUNK_OCTETS = 3 * 1024;
+	private static final int ENCODE_CHUNK_SYMBOLS = 4 * 1024;
+	
+	/**
+	 * Default size of scratch buffers used for transferring decoded
+	 * payload
+	 */
+	private static final int TRANSFER_BUFFER_SIZE = 8 * 1024;
+	
+	private static final String DIGEST_ALGORITHM = "SHA-256";
+	
+	static final String[] NO_PARAMETERS = new String[0];
 
 	private final String mime;
 	private final Charset charset;
 	private final String filename;
 	private final String contentDisposition;
-	private final byte[] data;
+	
+	/**
+	 * Parameters retained by a {@link DataUriParser} in addition to the
+	 * supported values as flat array of name, value pairs
+	 */
+	private final String[] parameters;
+	
+	/**
+	 * Decoded payload, will only be null until the encoded payload has
+	 * been decoded on first access
+	 */
+	private volatile byte[] data;
+	
+	/**
+	 * Encoded payload of lazily parsed data URIs, will be released as soon
+	 * as it has been decoded
+	 */
+	private EncodedPayload payload;
+	
+	/**
+	 * Payload of data URIs decoded by a {@link DataUriArena}, which is a
+	 * view into one of its slabs and only valid until the arena has been
+	 * closed. Null for all other data URIs.
+	 * 
+	 * Hash code and digest of these data URIs are calculated on creation,
+	 * thus {@link #hashCode()} and {@link #equals(Object)} never access a
+	 * slab which may have been recycled.
+	 */
+	private final ByteBuffer slice;
+	private final DataUriArena arena;
+	
+	/**
+	 * Shared instances never expose their decoded payload array, since it
+	 * is visible to multiple independent callers. Instances are marked as
+	 * shared by a {@link DataUriCache} before they are stored.
+	 */
+	private volatile boolean shared = false;
+	
+	/**
+	 * Cached {@link #hashCode()}, 0 if it has not been calculated yet
+	 * (or if the hash code actually is 0)
+	 */
+	private int hash;
+	
+	/**
+	 * SHA-256 digest of the payload, will only be calculated on request
+	 */
+	private volatile byte[] digest;
 	
 	
 	
@@ -61,11 +129,18 @@ public class DataUri {
 	}
 	
 	public DataUri(String mime, Charset charset, String filename, String contentDisposition, byte[] data) {
+		this(mime, charset, filename, contentDisposition, NO_PARAMETERS, data);
+	}
+	
+	DataUri(String mime, Charset charset, String filename, String contentDisposition, String[] parameters, byte[] data) {
 		this.mime = mime;
 		this.charset = charset;
 		this.filename = filename;
 		this.contentDisposition = contentDisposition;
+		this.parameters = parameters;
 		this.data = data;
+		this.slice = null;
+		this.arena = null;
 		
 		if (null == mime) {
 			throw new NullPointerException("`mime' must not be null");
@@ -74,6 +149,31 @@ public class DataUri {
 			throw new NullPointerException("`data' must not be null");
 		}
 	}
+	
+	private DataUri(String mime, Charset charset, String filename, String contentDisposition, EncodedPayload payload) {
+		this.mime = mime;
+		this.charset = charset;
+		this.filename = filename;
+		this.contentDisposition = contentDisposition;
+		this.parameters = NO_PARAMETERS;
+		this.data = null;
+		this.payload = payload;
+		this.slice = null;
+		this.arena = null;
+	}
+	
+	DataUri(String mime, Charset charset, String filename, String contentDisposition, DataUriArena arena, ByteBuffer slice) {
+		this.mime = mime;
+		this.charset = charset;
+		this.filename = filename;
+		this.contentDisposition = contentDisposition;
+		this.parameters = NO_PARAMETERS;
+		this.data = null;
+		this.slice = slice;
+		this.arena = arena;
+		this.digest = digest();
+		this.hash = hashCode();
+	}
 
 	
 	
@@ -101,26 +201,234 @@ public class DataUri {
 	public String getContentDisposition() {
 		return contentDisposition;
 	}
+	
+	/**
+	 * @return Number of parameters retained in addition to the supported
+	 *     values, always 0 unless parsed by a {@link DataUriParser}
+	 *     configured to retain parameters
+	 */
+	public int getParameterCount() {
+		return parameters.length / 2;
+	}
+	
+	/**
+	 * @return Lowercase name of the {@code i}th retained parameter
+	 */
+	public String getParameterName(int i) {
+		return parameters[2 * checkParameterIndex(i)];
+	}
+	
+	public String getParameterValue(int i) {
+		return parameters[2 * checkParameterIndex(i) + 1];
+	}
+	
+	/**
+	 * @param name Case-insensitive name of a retained parameter
+	 * 
+	 * @warning May be null
+	 */
+	public String getParameter(String name) {
+		for (int i = 0; i < parameters.length; i += 2) {
+			if (parameters[i].equalsIgnoreCase(name)) {
+				return parameters[i + 1];
+			}
+		}
+		return null;
+	}
+	
+	private int checkParameterIndex(int i) {
+		if ((i < 0) || (2 * i >= parameters.length)) {
+			throw new IndexOutOfBoundsException("Parameter "+ i +" of "+ getParameterCount());
+		}
+		return i;
+	}
 
+	/**
+	 * Lazily parsed data URIs will decode their payload on first access,
+	 * concurrent access is safe.
+	 * 
+	 * Instances shared by a {@link DataUriCache} clone their payload on
+	 * every call, since the array is visible to all other callers of the
+	 * cache. Cache users should prefer {@link #getDataBuffer()} for
+	 * read-only access without copying.
+	 * 
+	 * Instances decoded by a {@link DataUriArena} copy their payload out
+	 * of the slab into a new array on every call, which costs an allocation
+	 * and a pass over the whole payload each time. Prefer
+	 * {@link #getDataBuffer()} while the arena is open and call this method
+	 * at most once to retain the payload beyond it.
+	 * 
+	 * @warning Hash code and digest are cached, thus the returned array
+	 *     must not be modified
+	 */
 	public byte[] getData() {
+		return shared ? data().clone() : data();
+	}
+	
+	/**
+	 * Views of data URIs decoded by a {@link DataUriArena} are invalidated
+	 * when the arena is closed: their limit is reset to 0, thus any further
+	 * read fails instead of exposing a recycled slab.
+	 * 
+	 * @return Read-only view of {@link #getData()}, which is not copied
+	 * @throws IllegalStateException iff the payload has been decoded by an
+	 *     arena which has already been closed
+	 */
+	public ByteBuffer getDataBuffer() {
+		if (null == slice) {
+			return buffer().asReadOnlyBuffer();
+		}
+		return arena.track(slice.asReadOnlyBuffer());
+	}
+	
+	/**
+	 * Calculates the SHA-256 digest of the payload on first access, which
+	 * lets {@link #equals(Object)} compare large payloads in constant time
+	 * if both instances already know their digest. Deduplicating large
+	 * payloads thus only requires a single pass over each of them.
+	 * 
+	 * @return SHA-256 digest of {@link #getData()}
+	 */
+	public byte[] getDigest() {
+		return digest().clone();
+	}
+	
+	/**
+	 * Marks this instance as shared between independent callers, thus its
+	 * payload array will no longer be exposed. Must only be called before
+	 * the instance is published and never for instances decoded by an
+	 * arena.
+	 * 
+	 * @return This instance
+	 */
+	DataUri markShared() {
+		shared = true;
+		return this;
+	}
+	
+	private byte[] digest() {
+		byte[] digest = this.digest;
+		
+		if (null == digest) {
+			try {
+				final MessageDigest md = MessageDigest.getInstance(DIGEST_ALGORITHM);
+				md.update(buffer());
+				digest = md.digest();
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException("Every Java platform must support "+ DIGEST_ALGORITHM, e);
+			}
+			this.digest = digest;
+		}
+		return digest;
+	}
+	
+	/**
+	 * @return Decoded payload, which must not be modified
+	 */
+	private byte[] data() {
+		if (null != slice) {
+			final byte[] data = new byte[slice.capacity()];
+			buffer().get(data);
+			return data;
+		}
+		
+		byte[] data = this.data;
+		
+		if (null == data) {
+			synchronized (this) {
+				data = this.data;
+				
+				if (null == data) {
+					data = payload.decode();
+					this.data = data;
+					payload = null;
+				}
+			}
+		}
 		return data;
 	}
 	
+	/**
+	 * @return Independent view of the payload from position 0 to limit,
+	 *     which must not be modified
+	 * 
+	 * @throws IllegalStateException iff the payload has been decoded by an
+	 *     arena which has already been closed
+	 */
+	private ByteBuffer buffer() {
+		if (null == slice) {
+			return ByteBuffer.wrap(data());
+		}
+		arena.checkOpen();
+		return slice.duplicate();
+	}
+	
+	/**
+	 * @return Octets {@code payload[offset, offset + length)}, either in
+	 *     the array backing {@code payload} starting at
+	 *     {@link #chunkOffset(ByteBuffer, int)} or copied to the start of
+	 *     {@code scratch}
+	 */
+	private static byte[] chunk(ByteBuffer payload, int offset, int length, byte[] scratch) {
+		if (payload.hasArray()) {
+			return payload.array();
+		}
+		final ByteBuffer chunk = payload.duplicate();
+		chunk.position(offset);
+		chunk.get(scratch, 0, length);
+		return scratch;
+	}
+	
+	private static int chunkOffset(ByteBuffer payload, int offset) {
+		return payload.hasArray() ? payload.arrayOffset() + offset : 0;
+	}
+	
 	
 
 	@Override
 	public int hashCode() {
-		int hash = 3;
-		hash = 23 * hash + (this.mime != null ? this.mime.hashCode() : 0);
-		hash = 23 * hash + (this.charset != null ? this.charset.hashCode() : 0);
-		hash = 23 * hash + (this.filename != null ? this.filename.hashCode() : 0);
-		hash = 23 * hash + (this.contentDisposition != null ? this.contentDisposition.hashCode() : 0);
-		hash = 23 * hash + Arrays.hashCode(this.data);
+		int hash = this.hash;
+		
+		/* The payload is never modified after construction, thus the
+		 * hash code is calculated only once (racing threads will
+		 * calculate the same value)
+		 */
+		if (0 == hash) {
+			hash = 3;
+			hash = 23 * hash + (this.mime != null ? this.mime.hashCode() : 0);
+			hash = 23 * hash + (this.charset != null ? this.charset.hashCode() : 0);
+			hash = 23 * hash + (this.filename != null ? this.filename.hashCode() : 0);
+			hash = 23 * hash + (this.contentDisposition != null ? this.contentDisposition.hashCode() : 0);
+			hash = 23 * hash + Arrays.hashCode(this.parameters);
+			hash = 23 * hash + payloadHashCode();
+			this.hash = hash;
+		}
+		return hash;
+	}
+
+	/**
+	 * @return {@link Arrays#hashCode(byte[])} of the payload, regardless of
+	 *     where it is stored
+	 */
+	private int payloadHashCode() {
+		if (null == slice) {
+			return Arrays.hashCode(data());
+		}
+		
+		final ByteBuffer payload = buffer();
+		int hash = 1;
+		
+		for (int i = 0; i < payload.limit(); ++i) {
+			hash = 31 * hash + payload.get(i);
+		}
 		return hash;
 	}
 
 	@Override
 	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
 		if (obj == null) {
 			return false;
 		}
@@ -140,10 +448,32 @@ public class DataUri {
 		if ((this.contentDisposition == null) ? (other.contentDisposition != null) : !this.contentDisposition.equals(other.contentDisposition)) {
 			return false;
 		}
-		if (!Arrays.equals(this.data, other.data)) {
+		if (!Arrays.equals(this.parameters, other.parameters)) {
+			return false;
+		}
+		/* Short-circuit comparison of the payload with already known
+		 * hash codes and digests
+		 */
+		if ((0 != this.hash) && (0 != other.hash) && (this.hash != other.hash)) {
 			return false;
 		}
-		return true;
+		
+		final byte[] thisDigest = this.digest;
+		final byte[] otherDigest = other.digest;
+		
+		if ((null != thisDigest) && (null != otherDigest)) {
+			return MessageDigest.isEqual(thisDigest, otherDigest);
+		}
+		
+		if ((null == this.slice) && (null == other.slice)) {
+			return Arrays.equals(this.data(), other.data());
+		}
+		
+		/* Payloads decoded by an arena are only compared by their
+		 * digest calculated on creation, since the arena may have been
+		 * closed in the meantime
+		 */
+		return MessageDigest.isEqual(this.digest(), other.digest());
 	}
 	
 	
@@ -160,273 +490,598 @@ public class DataUri {
 	 *     process
 	 */
 	public static DataUri parse(String uri, Charset charset) {
-
-		/* If URI does not start with a case-insensitive "data:":
-		 * Throw a MALFORMED_URI exception.
-		 */
-		if (!uri.toLowerCase().startsWith("data:")) {
-			throw new IllegalArgumentException("URI must start with a case-insensitive `data:'");
-		}
-
-		/* If URI does not contain a ",":
-		 * Throw a MALFORMED_URI exception.
+		return parse((CharSequence)uri, charset);
+	}
+	
+	/**
+	 * Tries to parse a data URI described in RFC2397 without copying it
+	 * 
+	 * @param uri Characters representing the data URI
+	 * @param charset Charset to use when decoding percent encoded options
+	 *     like filename
+	 * 
+	 * @return Parsed data URI
+	 * @throws IllegalArgumentException iff an error occured during parse
+	 *     process
+	 */
+	public static DataUri parse(CharSequence uri, Charset charset) {
+		final HeaderScanner header = HeaderScanner.scan(uri, charset);
+		
+		/* Let data be the result of percent-decoding the substring of
+		 * URI from position comma + 1 to the end of URI.
 		 */
-		if (-1 == uri.indexOf(',')) {
-			throw new IllegalArgumentException("URI must contain a `,'");
-		}
+		final byte[] data = EncodedPayload.decode(uri, header.comma + 1, uri.length(), header.base64, charset);
 		
-		/* Let supportedContentEncodings be an array of strings
-		 * representing the supported content encodings. (["base64"] for
-		 * example)
+		/* Let dataURIObject be an object consisting of the mimeType,
+		 * contentEncoding, data and supportedValues objects.
 		 */
-		Collection<String> supportedContentEncodings = Arrays.asList(
-			"base64"
+		DataUri dataURIObject = new DataUri(
+			header.mime,
+			header.charset(),
+			header.filename,
+			header.contentDisposition,
+			data
 		);
 		
-		/* Let mimeType be a string with the value "text/plain".
+		/* return dataURIObject.
 		 */
-		String mimeType = "text/plain";
+		return dataURIObject;
+	}
+	
+	/**
+	 * Parses a data URI described in RFC2397 like
+	 * {@link #parse(CharSequence, Charset)} but reports malformed data URIs
+	 * without throwing an exception
+	 * 
+	 * @param uri Characters representing the data URI
+	 * @param charset Charset to use when decoding percent encoded options
+	 *     like filename
+	 * 
+	 * @return Parsed data URI or the reason and position it is malformed
+	 */
+	public static DataUriParseResult tryParse(CharSequence uri, Charset charset) {
+		return DataUriParser.DEFAULT.tryParse(uri, charset);
+	}
+	
+	/**
+	 * Tries to parse a data URI described in RFC2397, decoding a huge
+	 * base64 payload concurrently
+	 * 
+	 * Payloads of at least {@value ParallelBase64#THRESHOLD} octets are
+	 * split at quantum boundaries and decoded by {@code pool}, the result
+	 * is identical to {@link #parse(CharSequence, Charset)}.
+	 * 
+	 * @param uri Characters representing the data URI
+	 * @param charset Charset to use when decoding percent encoded options
+	 *     like filename
+	 * @param pool Executes the decoding tasks
+	 * 
+	 * @return Parsed data URI
+	 * @throws IllegalArgumentException iff an error occured during parse
+	 *     process
+	 */
+	public static DataUri parse(CharSequence uri, Charset charset, ForkJoinPool pool) {
+		final HeaderScanner header = HeaderScanner.scan(uri, charset);
 		
-		/* Let contentEncoding be an empy string.
-		 */
-		String contentEncoding = "";
+		return new DataUri(
+			header.mime,
+			header.charset(),
+			header.filename,
+			header.contentDisposition,
+			EncodedPayload.decode(uri, header.comma + 1, uri.length(), header.base64, charset, pool)
+		);
+	}
+	
+	/**
+	 * Tries to parse a data URI described in RFC2397 from octets without
+	 * copying them
+	 * 
+	 * @param uri Octets representing the data URI
+	 * @param offset Position of the first octet in {@code uri}
+	 * @param length Number of octets
+	 * @param charset Charset of the octets which will also be used when
+	 *     decoding percent encoded options like filename, octets outside
+	 *     of US-ASCII in the payload will be passed through unchanged
+	 * 
+	 * @return Parsed data URI
+	 * @throws IllegalArgumentException iff an error occured during parse
+	 *     process
+	 */
+	public static DataUri parse(byte[] uri, int offset, int length, Charset charset) {
+		return parse(new AsciiSequence(ByteBuffer.wrap(uri, offset, length)), charset);
+	}
+	
+	/**
+	 * Tries to parse a data URI described in RFC2397 from the remaining
+	 * octets of a (possibly direct) buffer without copying them
+	 * 
+	 * @param uri Octets representing the data URI, neither position nor
+	 *     limit will be modified
+	 * @param charset Charset of the octets which will also be used when
+	 *     decoding percent encoded options like filename, octets outside
+	 *     of US-ASCII in the payload will be passed through unchanged
+	 * 
+	 * @return Parsed data URI
+	 * @throws IllegalArgumentException iff an error occured during parse
+	 *     process
+	 */
+	public static DataUri parse(ByteBuffer uri, Charset charset) {
+		return parse(new AsciiSequence(uri), charset);
+	}
+	
+	private static DataUri parse(AsciiSequence uri, Charset charset) {
+		return parse(uri, HeaderScanner.scan(uri, charset));
+	}
+	
+	/**
+	 * @param header Scanned header of {@code uri}
+	 */
+	static DataUri parse(AsciiSequence uri, HeaderScanner header) {
+		return new DataUri(
+			header.mime,
+			header.charset(),
+			header.filename,
+			header.contentDisposition,
+			EncodedPayload.decode(uri, header.comma + 1, uri.length(), header.base64, AsciiSequence.OCTETS)
+		);
+	}
+	
+	/**
+	 * Parses the header of a data URI described in RFC2397 but defers
+	 * decoding its payload until {@link #getData()} is called for the
+	 * first time.
+	 * 
+	 * Until then the returned instance keeps a reference to {@code uri}.
+	 * Percent escapes in the payload are validated eagerly, thus
+	 * {@link #getData()} will not fail later on.
+	 * 
+	 * @param uri A string representing the data URI
+	 * @param charset Charset to use when decoding percent encoded options
+	 *     like filename
+	 * 
+	 * @return Parsed data URI with lazily decoded payload
+	 * @throws IllegalArgumentException iff an error occured during parse
+	 *     process
+	 */
+	public static DataUri parseLazy(String uri, Charset charset) {
+		final HeaderScanner header = HeaderScanner.scan(uri, charset);
+		PercentDecoder.countEscapes(uri, header.comma + 1, uri.length());
 		
-		/* Let contentEncodingAlreadySet be a boolean with a value of
-		 * false.
-		 */
-		boolean contentEncodingAlreadySet = false;
+		return new DataUri(
+			header.mime,
+			header.charset(),
+			header.filename,
+			header.contentDisposition,
+			new EncodedPayload(uri, header.comma + 1, uri.length(), header.base64, charset)
+		);
+	}
+	
+	/**
+	 * Decodes the payload of a data URI described in RFC2397 directly into
+	 * a (possibly direct) buffer, without allocating an intermediate
+	 * array for the payload
+	 * 
+	 * @param uri Characters representing the data URI
+	 * @param charset Charset to use when decoding percent encoded options
+	 *     like filename
+	 * @param target Receives the decoded payload starting at its position,
+	 *     which will be advanced by the number of octets written
+	 * 
+	 * @return Metadata of the data URI, {@link DataUriHeader#getDecodedLength()}
+	 *     is the number of octets written
+	 * @throws IllegalArgumentException iff an error occured during parse
+	 *     process
+	 * @throws BufferOverflowException iff the decoded payload does not fit
+	 *     into the remaining space of {@code target}, nothing will be
+	 *     written in that case
+	 */
+	public static DataUriHeader decodeInto(CharSequence uri, Charset charset, ByteBuffer target) {
+		return decodeInto(uri, HeaderScanner.scan(uri, charset), charset, target);
+	}
+	
+	/**
+	 * Decodes the payload of a data URI described in RFC2397, read from the
+	 * remaining octets of a (possibly direct) buffer, directly into another
+	 * buffer without allocating an intermediate array for the payload
+	 * 
+	 * @param uri Octets representing the data URI, neither position nor
+	 *     limit will be modified
+	 * @param charset Charset of the octets which will also be used when
+	 *     decoding percent encoded options like filename, octets outside
+	 *     of US-ASCII in the payload will be passed through unchanged
+	 * @param target Receives the decoded payload starting at its position,
+	 *     which will be advanced by the number of octets written
+	 * 
+	 * @return Metadata of the data URI, {@link DataUriHeader#getDecodedLength()}
+	 *     is the number of octets written
+	 * @throws IllegalArgumentException iff an error occured during parse
+	 *     process
+	 * @throws BufferOverflowException iff the decoded payload does not fit
+	 *     into the remaining space of {@code target}, nothing will be
+	 *     written in that case
+	 */
+	public static DataUriHeader decodeInto(ByteBuffer uri, Charset charset, ByteBuffer target) {
+		final AsciiSequence octets = new AsciiSequence(uri);
+		return decodeInto(octets, HeaderScanner.scan(octets, charset), AsciiSequence.OCTETS, target);
+	}
+	
+	private static DataUriHeader decodeInto(CharSequence uri, HeaderScanner header, Charset charset, ByteBuffer target) {
+		final int length = EncodedPayload.decodedLength(uri, header.comma + 1, uri.length(), header.base64, charset);
 		
-		/* Let supportedValues be a map of string:string pairs where the
-		 * first string in each pair represents the name of the
-		 * supported value and the second string in each pair represents
-		 * an empty string or default string value. (Example: {"charset"
-		 * : "", "filename" : "", "content-disposition" : ""})
-		 */
-		final Map<String, String> supportedValues = new HashMap<String, String>() {{
-			put(CHARSET_OPTION_NAME, "");
-			put(FILENAME_OPTION_NAME, "");
-			put(CONTENT_DISPOSITION_OPTION_NAME, "");
-		}};
-		
-		/* Let supportedValueSetBits be a map of string:bool pairs
-		 * representing each of the names in supportedValues with each
-		 * name set to false.
-		 */
-		final Map<String, Boolean> supportedValueSetBits = new HashMap<String, Boolean>() {{
-			for (String key : supportedValues.keySet()) {
-				put(key, false);
-			}
-		}};
+		if (length > target.remaining()) {
+			throw new BufferOverflowException();
+		}
 		
-		/* Let comma be the position of the first "," found in URI.
-		 */
-		int comma = uri.indexOf(',');
+		final DataUriHeader result = header.toHeader(length);
+		final PayloadChannel payload = new PayloadChannel(uri, header.comma + 1, uri.length(), header.base64, charset);
 		
-		/* Let temp be the substring of URI from, and including,
-		 * position 5 to, and excluding, the comma position. (between
-		 * "data:" and first ",")
-		 */
-		String temp = uri.substring("data:".length(), comma);
+		while (-1 != payload.decode(target)) {
+		}
+		return result;
+	}
+	
+	/**
+	 * Decodes the payload of a data URI described in RFC2397 and writes it
+	 * to a channel (like a {@link java.nio.channels.FileChannel} or a
+	 * socket) using a scratch buffer of constant size
+	 * 
+	 * @see #transferTo(CharSequence, Charset, WritableByteChannel, ByteBuffer)
+	 */
+	public static DataUriHeader transferTo(CharSequence uri, Charset charset, WritableByteChannel target) throws IOException {
+		return transferTo(uri, charset, target, ByteBuffer.allocate(TRANSFER_BUFFER_SIZE));
+	}
+	
+	/**
+	 * Decodes the payload of a data URI described in RFC2397 and writes it
+	 * to a channel (like a {@link java.nio.channels.FileChannel} or a
+	 * socket) using a scratch buffer supplied by the caller, which can be
+	 * reused between transfers
+	 * 
+	 * The payload is never materialized as a whole. If it contains an
+	 * illegal percent escape, everything decoded before the escape has
+	 * already been written when the exception is thrown.
+	 * 
+	 * @param uri Characters representing the data URI
+	 * @param charset Charset to use when decoding percent encoded options
+	 *     like filename
+	 * @param target Receives the decoded payload
+	 * @param scratch Buffer used for transferring the decoded payload, its
+	 *     content will be overwritten
+	 * 
+	 * @return Metadata of the data URI, {@link DataUriHeader#getDecodedLength()}
+	 *     is the number of octets written
+	 * @throws IllegalArgumentException iff an error occured during parse
+	 *     process
+	 * @throws IOException iff writing to {@code target} fails
+	 */
+	public static DataUriHeader transferTo(CharSequence uri, Charset charset, WritableByteChannel target, ByteBuffer scratch) throws IOException {
+		return transferTo(uri, HeaderScanner.scan(uri, charset), charset, target, scratch);
+	}
+	
+	/**
+	 * Decodes the payload of a data URI described in RFC2397, read from the
+	 * remaining octets of a (possibly direct or mapped) buffer, and writes
+	 * it to a channel using a scratch buffer of constant size
+	 * 
+	 * @see #transferTo(ByteBuffer, Charset, WritableByteChannel, ByteBuffer)
+	 */
+	public static DataUriHeader transferTo(ByteBuffer uri, Charset charset, WritableByteChannel target) throws IOException {
+		return transferTo(uri, charset, target, ByteBuffer.allocate(TRANSFER_BUFFER_SIZE));
+	}
+	
+	/**
+	 * Decodes the payload of a data URI described in RFC2397, read from the
+	 * remaining octets of a (possibly direct or mapped) buffer, and writes
+	 * it to a channel using a scratch buffer supplied by the caller, which
+	 * can be reused between transfers
+	 * 
+	 * The payload is never materialized as a whole. If it contains an
+	 * illegal percent escape, everything decoded before the escape has
+	 * already been written when the exception is thrown.
+	 * 
+	 * @param uri Octets representing the data URI, neither position nor
+	 *     limit will be modified
+	 * @param charset Charset of the octets which will also be used when
+	 *     decoding percent encoded options like filename, octets outside
+	 *     of US-ASCII in the payload will be passed through unchanged
+	 * @param target Receives the decoded payload
+	 * @param scratch Buffer used for transferring the decoded payload, its
+	 *     content will be overwritten
+	 * 
+	 * @return Metadata of the data URI, {@link DataUriHeader#getDecodedLength()}
+	 *     is the number of octets written
+	 * @throws IllegalArgumentException iff an error occured during parse
+	 *     process
+	 * @throws IOException iff writing to {@code target} fails
+	 */
+	public static DataUriHeader transferTo(ByteBuffer uri, Charset charset, WritableByteChannel target, ByteBuffer scratch) throws IOException {
+		final AsciiSequence octets = new AsciiSequence(uri);
+		return transferTo(octets, HeaderScanner.scan(octets, charset), AsciiSequence.OCTETS, target, scratch);
+	}
+	
+	private static DataUriHeader transferTo(CharSequence uri, HeaderScanner header, Charset charset, WritableByteChannel target, ByteBuffer scratch) throws IOException {
+		final PayloadChannel payload = new PayloadChannel(uri, header.comma + 1, uri.length(), header.base64, charset);
+		long transferred = 0;
 		
-		/* Let headers be an array of strings returned by splitting temp
-		 * by ";".
-		 */
-		String[] headers = temp.split(";");
-
-		/* For each string s in headers:
-		 */
-		for (int header = 0; header < headers.length; ++header) {
-			String s = headers[header];
-
-			/* Let s equal the lowercase version of s
-			 */
-			s = s.toLowerCase();
-			
-			/* Let eq be the position result of searching for "=" in
-			 * s.
-			 */
-			int eq = s.indexOf('=');
+		scratch.clear();
+		
+		while (-1 != payload.decode(scratch)) {
+			scratch.flip();
+			transferred += scratch.remaining();
+			writeFully(target, scratch);
+			scratch.clear();
+		}
+		
+		return header.toHeader(transferred);
+	}
+	
+	/**
+	 * Parses the header of a data URI described in RFC2397 and calculates
+	 * the exact length of its payload without decoding it.
+	 * 
+	 * @param uri Characters representing the data URI
+	 * @param charset Charset to use when decoding percent encoded options
+	 *     like filename
+	 * 
+	 * @return Metadata of the data URI
+	 * @throws IllegalArgumentException iff an error occured during parse
+	 *     process
+	 */
+	public static DataUriHeader peek(CharSequence uri, Charset charset) {
+		final HeaderScanner header = HeaderScanner.scan(uri, charset);
+		
+		return header.toHeader(
+			EncodedPayload.decodedLength(uri, header.comma + 1, uri.length(), header.base64, charset)
+		);
+	}
+	
+	
+	
+	/**
+	 * Writes the same representation {@link #toString()} returns, encoding
+	 * the payload in chunks of constant size
+	 * 
+	 * @throws IOException iff appending to {@code out} fails
+	 */
+	public void writeTo(Appendable out) throws IOException {
+		out.append(header(null, true));
+		
+		final ByteBuffer payload = buffer();
+		final byte[] scratch = payload.hasArray() ? null : new byte[ENCODE_CHUNK_OCTETS];
+		final char[] chars = new char[ENCODE_CHUNK_SYMBOLS];
+		final CharBuffer charsView = CharBuffer.wrap(chars);
+		
+		for (int offset = 0; offset < payload.limit(); offset += ENCODE_CHUNK_OCTETS) {
+			final int octets = Math.min(ENCODE_CHUNK_OCTETS, payload.limit() - offset);
+			final int length = Base64Codec.encode(chunk(payload, offset, octets, scratch), chunkOffset(payload, offset), octets, chars, 0);
 			
-			/* Let name and value be empty strings.
-			 */
-			String name;
-			String value = "";
-
-			/* If eq is not a valid position in s:
-			 */
-			if (-1 == eq) {
-
-				/* Let name equal the result of percent-decoding
-				 * s.
-				 */
-				name = percentDecode(s, charset);
-
-				/* Let name equal the result of trimming leading
-				 * and trailing white-space from name.
-				 */
-				name = name.trim();
-				
-			/* Else:
-			 */
+			if (out instanceof StringBuilder) {
+				((StringBuilder)out).append(chars, 0, length);
 			} else {
-				
-				/* Let name equal the substring of s from
-				 * position 0 to, but not including, position
-				 * eq.
-				 */
-				name = s.substring(0, eq);
-				
-				/* Let name equal the result of percent-decoding
-				 * name.
-				 */
-				name = percentDecode(name, charset);
-				
-				/* Let name equal the result of trimmnig leading
-				 * and trailing white-space from name.
-				 */
-				name = name.trim();
-				
-				/* Let value equal the substring of s from
-				 * position eq + 1 to the end of s.
-				 */
-				value = s.substring(eq + 1);
-				
-				/* Let value equal the result of precent-
-				 * decoding value.
-				 */
-				value = percentDecode(value, charset);
-				
-				/* Let value equal the result of trimming
-				 * leading and trailing white-space from value.
-				 */
-				value = value.trim();
+				out.append(charsView, 0, length);
 			}
+		}
+	}
+	
+	/**
+	 * Writes the same representation {@link #toString()} returns, encoding
+	 * the payload in chunks of constant size. The header is encoded as
+	 * UTF-8, the payload consists of US-ASCII characters only.
+	 * 
+	 * @throws IOException iff writing to {@code out} fails
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		out.write(header(null, true).getBytes(UTF_8));
+		
+		final ByteBuffer payload = buffer();
+		final byte[] scratch = payload.hasArray() ? null : new byte[ENCODE_CHUNK_OCTETS];
+		final byte[] symbols = new byte[ENCODE_CHUNK_SYMBOLS];
+		
+		for (int offset = 0; offset < payload.limit(); offset += ENCODE_CHUNK_OCTETS) {
+			final int octets = Math.min(ENCODE_CHUNK_OCTETS, payload.limit() - offset);
+			final int length = Base64Codec.encode(chunk(payload, offset, octets, scratch), chunkOffset(payload, offset), octets, symbols, 0);
+			out.write(symbols, 0, length);
+		}
+	}
+	
+	/**
+	 * Writes the same representation {@link #toString()} returns, encoding
+	 * the payload in chunks of constant size. The header is encoded as
+	 * UTF-8, the payload consists of US-ASCII characters only.
+	 * 
+	 * @throws IOException iff writing to {@code out} fails
+	 */
+	public void writeTo(WritableByteChannel out) throws IOException {
+		writeFully(out, ByteBuffer.wrap(header(null, true).getBytes(UTF_8)));
+		
+		final ByteBuffer payload = buffer();
+		final byte[] scratch = payload.hasArray() ? null : new byte[ENCODE_CHUNK_OCTETS];
+		final byte[] symbols = new byte[ENCODE_CHUNK_SYMBOLS];
+		final ByteBuffer symbolsView = ByteBuffer.wrap(symbols);
+		
+		for (int offset = 0; offset < payload.limit(); offset += ENCODE_CHUNK_OCTETS) {
+			final int octets = Math.min(ENCODE_CHUNK_OCTETS, payload.limit() - offset);
+			final int length = Base64Codec.encode(chunk(payload, offset, octets, scratch), chunkOffset(payload, offset), octets, symbols, 0);
 			
-			/* If s is the first element in headers and eq is not a
-			 * valid position in s and the length of name is greater
-			 * than 0:
-			 */
-			if ((0 == header) && (-1 == eq) && !name.isEmpty()) {
-				
-				/* Let mimeType equal name.
-				 */
-				mimeType = name;
+			symbolsView.clear().limit(length);
+			writeFully(out, symbolsView);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		final String header = header(null, true);
+		final long length = header.length() + Base64Codec.encodedLength(buffer().limit());
+		
+		if (length > Integer.MAX_VALUE) {
+			throw new OutOfMemoryError("Data URI too large for a string");
+		}
+		
+		final StringBuilder s = new StringBuilder((int)length);
+		
+		try {
+			writeTo(s);
+		} catch (IOException e) {
+			throw new IllegalStateException("StringBuilder must not throw", e);
+		}
+		return s.toString();
+	}
+	
+	/**
+	 * Returns the same representation as {@link #toString()}, encoding a
+	 * huge payload concurrently
+	 * 
+	 * Payloads of at least {@value ParallelBase64#THRESHOLD} octets are
+	 * split at multiples of three octets and encoded by {@code pool}.
+	 * 
+	 * @param pool Executes the encoding tasks
+	 */
+	public String toString(ForkJoinPool pool) {
+		final String header = header(null, true);
+		final byte[] data = data();
+		final long length = header.length() + Base64Codec.encodedLength(data.length);
+		
+		if (length > Integer.MAX_VALUE) {
+			throw new OutOfMemoryError("Data URI too large for a string");
+		}
+		
+		final char[] s = new char[(int)length];
+		header.getChars(0, header.length(), s, 0);
+		ParallelBase64.encode(data, s, header.length(), pool);
+		
+		return new String(s);
+	}
+	
+	/**
+	 * Returns the shortest representation of this data URI, which is
+	 * either the same as {@link #toString()} or one with the payload
+	 * compressed by {@code encoding} before base64 encoding it (like
+	 * {@code data:image/svg+xml;gzip;base64,...}).
+	 * 
+	 * Compression is aborted as soon as it cannot pay off anymore, thus
+	 * incompressible payload costs at most one pass.
+	 * 
+	 * @param encoding Content encoding like {@link DataUriCompression#GZIP}
+	 */
+	public String toString(DataUriContentEncoding encoding) {
+		final ByteBuffer payload = buffer();
+		final String name = encoding.getName();
+		
+		/* Compressed payload pays off iff its base64 encoding plus the
+		 * additional header segment is shorter than the base64
+		 * encoding of the payload
+		 */
+		final long limit = (Base64Codec.encodedLength(payload.limit()) - name.length() - 2) / 4 * 3;
+		final BoundedOutputStream compressed = new BoundedOutputStream(limit);
+		
+		try {
+			final OutputStream compressor = encoding.encode(compressed);
+			final byte[] scratch = payload.hasArray() ? null : new byte[ENCODE_CHUNK_OCTETS];
 			
-			/* Else:
-			 */
-			} else {
-
-				/* If eq is not a valid position in s:
-				 */
-				if (-1 == eq) {
-
-					/* If name is found case-insensitively
-					 * in supportedContentEncodings:
-					 */
-					final String nameCaseInsensitive = name.toLowerCase();
-					
-					if (supportedContentEncodings.contains(nameCaseInsensitive)) {
-
-						/* If contentEncodingAlreadySet
-						 * is false:
-						 */
-						if (!contentEncodingAlreadySet) {
-
-							/* Let contentEncoding
-							 * equal name.
-							 */
-							contentEncoding = name;
-							
-							/* Let contentEncodingAlreadySet
-							 * equal true.
-							 */
-							contentEncodingAlreadySet = true;
-						}
-					}
-
-				/* Else:
-				 */
-				} else {
-
-					/* If the length of value is greater
-					 * than 0 and name is found case-
-					 * insensitively in supportedValues:
-					 */
-					final String nameCaseInsensitive = name.toLowerCase();
-					
-					if (!value.isEmpty() && supportedValues.containsKey(nameCaseInsensitive)) {
-
-						/* If the corresponding value
-						 * for name found (case-
-						 * insensitivley) in
-						 * supportedValueSetBits is
-						 * false:
-						 */
-						boolean valueSet = supportedValueSetBits.get(nameCaseInsensitive);
-						
-						if (!valueSet) {
-							
-							/* Let the corresponding
-							 * value for name found
-							 * (case-insensitively)
-							 * in supportedValues
-							 * equal value.
-							 */
-							supportedValues.put(nameCaseInsensitive, value);
-							
-							/* Let the corresponding
-							 * value for name found
-							 * (case-insensitively)
-							 * in supportedValueSetBits
-							 * equal true.
-							 */
-							supportedValueSetBits.put(nameCaseInsensitive, true);
-						}
-					}
-				}
+			for (int offset = 0; (offset < payload.limit()) && !compressed.isExceeded(); offset += ENCODE_CHUNK_OCTETS) {
+				final int octets = Math.min(ENCODE_CHUNK_OCTETS, payload.limit() - offset);
+				compressor.write(chunk(payload, offset, octets, scratch), chunkOffset(payload, offset), octets);
 			}
-
+			compressor.close();
+		} catch (IOException e) {
+			throw new IllegalStateException("Content encoding `"+ name +"' failed", e);
 		}
 		
-		/* Let data be the substring of URI from position comma + 1 to
-		 * the end of URI.
-		 */
-		String data = uri.substring(comma + 1);
+		if (compressed.isExceeded()) {
+			return toString();
+		}
 		
-		/* Let data be the result of percent-decoding data.
-		 */
-		data = percentDecode(data, charset);
+		final String header = header(name, true);
+		final char[] s = new char[header.length() + (int)Base64Codec.encodedLength(compressed.size())];
 		
-		/* Let dataURIObject be an object consisting of the mimeType,
-		 * contentEncoding, data and supportedValues objects.
-		 */
-		final String finalMimeType = mimeType;
-		final Charset finalCharset = supportedValues.get(CHARSET_OPTION_NAME).isEmpty()
-			? null : Charset.forName(supportedValues.get(CHARSET_OPTION_NAME));
-		final String finalFilename = supportedValues.get(FILENAME_OPTION_NAME).isEmpty()
-			? null : supportedValues.get(FILENAME_OPTION_NAME);
-		final String finalContentDisposition = supportedValues.get(CONTENT_DISPOSITION_OPTION_NAME).isEmpty()
-			? null : supportedValues.get(CONTENT_DISPOSITION_OPTION_NAME);
-		final byte[] finalData = "base64".equalsIgnoreCase(contentEncoding)
-			? Base64.decodeBase64(data) : data.getBytes(charset);
+		header.getChars(0, header.length(), s, 0);
+		Base64Codec.encode(compressed.buffer(), 0, compressed.size(), s, header.length());
+		return new String(s);
+	}
+	
+	/**
+	 * Writes this data URI with its payload compressed by {@code encoding}
+	 * while base64 encoding it, without buffering the compressed payload.
+	 * In contrast to {@link #toString(DataUriContentEncoding)} compression
+	 * is always applied.
+	 * 
+	 * @param encoding Content encoding like {@link DataUriCompression#GZIP}
+	 * 
+	 * @throws IOException iff writing to {@code out} fails, {@code out}
+	 *     will not be closed
+	 */
+	public void writeTo(OutputStream out, DataUriContentEncoding encoding) throws IOException {
+		out.write(header(encoding.getName(), true).getBytes(UTF_8));
 		
-		DataUri dataURIObject = new DataUri(
-			finalMimeType,
-			finalCharset,
-			finalFilename,
-			finalContentDisposition,
-			finalData
-		);
+		final ByteBuffer payload = buffer();
+		final byte[] scratch = payload.hasArray() ? null : new byte[ENCODE_CHUNK_OCTETS];
+		final OutputStream compressor = encoding.encode(new Base64EncodingOutputStream(out));
 		
-		/* return dataURIObject.
+		for (int offset = 0; offset < payload.limit(); offset += ENCODE_CHUNK_OCTETS) {
+			final int octets = Math.min(ENCODE_CHUNK_OCTETS, payload.limit() - offset);
+			compressor.write(chunk(payload, offset, octets, scratch), chunkOffset(payload, offset), octets);
+		}
+		compressor.close();
+	}
+	
+	/**
+	 * Returns the shorter one of {@link #toString()} and a representation
+	 * with percent encoded payload, which is considerably shorter for
+	 * mostly US-ASCII payload like inline SVG.
+	 * 
+	 * The exact length of both representations is calculated in a single
+	 * pass over the payload, the result is then written into a buffer of
+	 * exactly that length.
+	 * 
+	 * @see PercentEncoder
+	 */
+	public String toCompactString() {
+		final ByteBuffer payload = buffer();
+		final byte[] scratch = payload.hasArray() ? null : new byte[ENCODE_CHUNK_OCTETS];
+		long escapes = 0;
+		
+		for (int offset = 0; offset < payload.limit(); offset += ENCODE_CHUNK_OCTETS) {
+			final int octets = Math.min(ENCODE_CHUNK_OCTETS, payload.limit() - offset);
+			escapes += PercentEncoder.countEscapes(chunk(payload, offset, octets, scratch), chunkOffset(payload, offset), octets);
+		}
+		
+		/* Percent encoding omits the `;base64' segment
 		 */
-		return dataURIObject;
+		final long percentLength = payload.limit() + 2 * escapes;
+		final long base64Length = Base64Codec.encodedLength(payload.limit()) + 1 + BASE64_ENCODING_NAME.length();
+		
+		if (base64Length <= percentLength) {
+			return toString();
+		}
+		
+		final String header = header(null, false);
+		final long length = header.length() + percentLength;
+		
+		if (length > Integer.MAX_VALUE) {
+			throw new OutOfMemoryError("Data URI too large for a string");
+		}
+		
+		final char[] s = new char[(int)length];
+		int position = header.length();
+		header.getChars(0, header.length(), s, 0);
+		
+		for (int offset = 0; offset < payload.limit(); offset += ENCODE_CHUNK_OCTETS) {
+			final int octets = Math.min(ENCODE_CHUNK_OCTETS, payload.limit() - offset);
+			position = PercentEncoder.encode(chunk(payload, offset, octets, scratch), chunkOffset(payload, offset), octets, s, position);
+		}
+		return new String(s);
 	}
 	
-	@Override
-	public String toString() {
+	/**
+	 * @param contentEncoding Content encoding preceding `base64' or null
+	 * @param base64 Iff false the payload will be percent encoded
+	 * 
+	 * @return Everything {@link #toString()} returns up to and including
+	 *     the `,'
+	 */
+	private String header(String contentEncoding, boolean base64) {
 		StringBuilder s = new StringBuilder();
-		s.append("data:").append(this.getMime()).append(";");
+		s.append(DATA_SCHEME).append(this.getMime()).append(";");
 
 		if (this.charset != null) {
 			s.append(CHARSET_OPTION_NAME + "=").append(this.charset.name()).append(";");
@@ -439,25 +1094,72 @@ public class DataUri {
 		if (this.filename != null) {
 			s.append(FILENAME_OPTION_NAME + "=").append(this.filename).append(";");
 		}
+		
+		for (int i = 0; i < this.parameters.length; i += 2) {
+			s.append(this.parameters[i]).append("=").append(this.parameters[i + 1]).append(";");
+		}
 
-		s.append("base64,").append(Base64.encodeBase64String(this.getData()));
+		if (null != contentEncoding) {
+			s.append(contentEncoding).append(";");
+		}
 
+		if (base64) {
+			s.append(BASE64_ENCODING_NAME + ",");
+		} else {
+			s.setCharAt(s.length() - 1, ',');
+		}
 		return s.toString();
 	}
-
-	private static final Pattern PLUS = Pattern.compile("+", Pattern.LITERAL);
-
-	private static String percentDecode(String s, Charset cs) {
-		try {
-			// We only need to decode %hh escape sequences, while
-			// URLDecoder.decode in addition to that also replaces '+' with space.
-			// As a workaround we first replace all pluses with %2B sequence,
-			// so that they are preserved after decoding.
-			s = PLUS.matcher(s).replaceAll("%2B");
-
-			return URLDecoder.decode(s, cs.name());
-		} catch (UnsupportedEncodingException e) {
-			throw new IllegalStateException("Charset `"+ cs.name() +"' not supported", e);
+	
+	/**
+	 * Collects octets until more than a given number of octets has been
+	 * written, discarding everything from then on
+	 */
+	private static final class BoundedOutputStream extends OutputStream {
+		
+		private final long limit;
+		private byte[] buffer = new byte[256];
+		private int size = 0;
+		private boolean exceeded = false;
+		
+		private BoundedOutputStream(long limit) {
+			this.limit = limit;
+		}
+		
+		@Override
+		public void write(int b) {
+			write(new byte[] {(byte)b}, 0, 1);
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) {
+			if (exceeded || (size + (long)len > limit)) {
+				exceeded = true;
+				return;
+			}
+			if (size + len > buffer.length) {
+				buffer = Arrays.copyOf(buffer, (int)Math.min(limit, Math.max(size + len, 2L * buffer.length)));
+			}
+			System.arraycopy(b, off, buffer, size, len);
+			size += len;
+		}
+		
+		boolean isExceeded() {
+			return exceeded;
+		}
+		
+		byte[] buffer() {
+			return buffer;
+		}
+		
+		int size() {
+			return size;
+		}
+	}
+	
+	private static void writeFully(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
 		}
 	}
 }
@@ -0,0 +1,342 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes the payloads of a batch of data URIs (like all inline assets of a
+ * document) into few large slabs instead of one array per data URI
+ * 
+ * Slabs are taken from a {@link Pool} and returned to it as soon as the
+ * arena is closed, thus decoding the next batch does not allocate at all.
+ * The data URIs returned by an arena are views into its slabs and become
+ * invalid on {@link #close()}, accessing their payload afterwards throws an
+ * {@link IllegalStateException}. {@link DataUri#getData()} always returns a
+ * copy which remains valid. Hash code and digest are calculated while
+ * decoding, thus closed data URIs can still be compared.
+ * 
+ * An arena must not be used by multiple threads concurrently, the returned
+ * data URIs may be read concurrently while the arena is open.
+ * 
+ * <pre>
+ * DataUriArena.Pool pool = new DataUriArena.Pool(1024 * 1024, true);
+ * 
+ * try (DataUriArena arena = pool.open()) {
+ *     for (String uri : uris) {
+ *         process(arena.parse(uri, charset));
+ *     }
+ * }
+ * </pre>
+ *
+ * @author ooxi
+ */
+public final class DataUriArena implements Closeable {
+	
+	/**
+	 * Thread-safe pool of equally sized slabs shared by all arenas opened
+	 * from it
+	 */
+	public static final class Pool {
+		
+		/**
+		 * Default number of idle slabs retained by a pool
+		 */
+		public static final int DEFAULT_MAXIMUM_IDLE_SLABS = 16;
+		
+		private final int slabSize;
+		private final boolean direct;
+		private final int maximumIdleSlabs;
+		
+		private final ConcurrentLinkedQueue<ByteBuffer> idle = new ConcurrentLinkedQueue<ByteBuffer>();
+		private final AtomicInteger idleSlabs = new AtomicInteger();
+		
+		
+		
+		/**
+		 * @see #Pool(int, boolean, int)
+		 */
+		public Pool(int slabSize, boolean direct) {
+			this(slabSize, direct, DEFAULT_MAXIMUM_IDLE_SLABS);
+		}
+		
+		/**
+		 * @param slabSize Capacity of each slab in octets, payloads which
+		 *     are larger will be decoded into a dedicated buffer which
+		 *     is not pooled
+		 * @param direct Iff true slabs will be allocated off-heap
+		 * @param maximumIdleSlabs Slabs returned while that many slabs
+		 *     are idle will be left to the garbage collector
+		 */
+		public Pool(int slabSize, boolean direct, int maximumIdleSlabs) {
+			if (slabSize <= 0) {
+				throw new IllegalArgumentException("`slabSize' must be positive");
+			}
+			if (maximumIdleSlabs < 0) {
+				throw new IllegalArgumentException("`maximumIdleSlabs' must not be negative");
+			}
+			this.slabSize = slabSize;
+			this.direct = direct;
+			this.maximumIdleSlabs = maximumIdleSlabs;
+		}
+		
+		
+		
+		/**
+		 * @return New arena decoding into slabs of this pool
+		 */
+		public DataUriArena open() {
+			return new DataUriArena(this);
+		}
+		
+		public int getSlabSize() {
+			return slabSize;
+		}
+		
+		public boolean isDirect() {
+			return direct;
+		}
+		
+		/**
+		 * @return Number of slabs currently available for reuse
+		 */
+		public int getIdleSlabCount() {
+			return idleSlabs.get();
+		}
+		
+		
+		
+		private ByteBuffer take() {
+			final ByteBuffer slab = idle.poll();
+			
+			if (null == slab) {
+				return allocate(slabSize);
+			}
+			idleSlabs.decrementAndGet();
+			return slab;
+		}
+		
+		private void recycle(ByteBuffer slab) {
+			if (idleSlabs.incrementAndGet() > maximumIdleSlabs) {
+				idleSlabs.decrementAndGet();
+				return;
+			}
+			slab.clear();
+			idle.offer(slab);
+		}
+		
+		private ByteBuffer allocate(int capacity) {
+			return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+		}
+	}
+	
+	
+	
+	private final Pool pool;
+	
+	/**
+	 * Slabs taken from the pool, the last one is the one currently being
+	 * filled
+	 */
+	private final List<ByteBuffer> slabs = new ArrayList<ByteBuffer>();
+	private ByteBuffer current = null;
+	
+	/**
+	 * Views handed out by {@link DataUri#getDataBuffer()}, which will be
+	 * invalidated on {@link #close()}
+	 */
+	private final List<ByteBuffer> views = new ArrayList<ByteBuffer>();
+	
+	private long decoded = 0;
+	private volatile boolean closed = false;
+	
+	
+	
+	private DataUriArena(Pool pool) {
+		this.pool = pool;
+	}
+	
+	
+	
+	/**
+	 * Parses a data URI described in RFC2397 like
+	 * {@link DataUri#parse(CharSequence, Charset)}, decoding its payload
+	 * into this arena
+	 * 
+	 * @param uri Characters representing the data URI
+	 * @param charset Charset to use when decoding percent encoded options
+	 *     like filename
+	 * 
+	 * @return Parsed data URI, its payload is only valid until this arena
+	 *     has been closed
+	 * @throws IllegalArgumentException iff an error occured during parse
+	 *     process
+	 * @throws IllegalStateException iff this arena has already been closed
+	 */
+	public DataUri parse(CharSequence uri, Charset charset) {
+		return parse(uri, HeaderScanner.scan(uri, charset), charset);
+	}
+	
+	/**
+	 * Parses a data URI described in RFC2397 from the remaining octets of
+	 * a (possibly direct) buffer like
+	 * {@link DataUri#parse(ByteBuffer, Charset)}, decoding its payload into
+	 * this arena
+	 * 
+	 * @param uri Octets representing the data URI, neither position nor
+	 *     limit will be modified
+	 * @param charset Charset of the octets which will also be used when
+	 *     decoding percent encoded options like filename, octets outside
+	 *     of US-ASCII in the payload will be passed through unchanged
+	 * 
+	 * @return Parsed data URI, its payload is only valid until this arena
+	 *     has been closed
+	 * @throws IllegalArgumentException iff an error occured during parse
+	 *     process
+	 * @throws IllegalStateException iff this arena has already been closed
+	 */
+	public DataUri parse(ByteBuffer uri, Charset charset) {
+		final AsciiSequence octets = new AsciiSequence(uri);
+		return parse(octets, HeaderScanner.scan(octets, charset), AsciiSequence.OCTETS);
+	}
+	
+	/**
+	 * @return Number of payload octets decoded into this arena
+	 */
+	public long getDecodedLength() {
+		return decoded;
+	}
+	
+	/**
+	 * Invalidates all data URIs parsed by this arena and returns its slabs
+	 * to the pool, closing an arena more than once has no effect
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		
+		/* Views may be requested concurrently, thus they must not be
+		 * handed out while being invalidated
+		 */
+		synchronized (views) {
+			closed = true;
+			
+			for (ByteBuffer view : views) {
+				view.position(0);
+				view.limit(0);
+			}
+			views.clear();
+		}
+		
+		for (ByteBuffer slab : slabs) {
+			pool.recycle(slab);
+		}
+		slabs.clear();
+		current = null;
+	}
+	
+	
+	
+	/**
+	 * @throws IllegalStateException iff this arena has already been closed
+	 */
+	void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("Arena has already been closed");
+		}
+	}
+	
+	/**
+	 * Registers {@code view} to be invalidated on {@link #close()}
+	 * 
+	 * @return {@code view}
+	 * 
+	 * @throws IllegalStateException iff this arena has already been closed
+	 */
+	ByteBuffer track(ByteBuffer view) {
+		synchronized (views) {
+			checkOpen();
+			views.add(view);
+		}
+		return view;
+	}
+	
+	private DataUri parse(CharSequence uri, HeaderScanner header, Charset charset) {
+		checkOpen();
+		final Charset mediaCharset = header.charset();
+		
+		/* The exact length is known before decoding, thus the payload
+		 * can be decoded straight into the slab
+		 */
+		final int length = EncodedPayload.decodedLength(uri, header.comma + 1, uri.length(), header.base64, charset);
+		final ByteBuffer slice = allocate(length);
+		final PayloadChannel payload = new PayloadChannel(uri, header.comma + 1, uri.length(), header.base64, charset);
+		
+		/* Stop as soon as the slice is full, everything behind the
+		 * last decoded octet is ignorable
+		 */
+		while (slice.hasRemaining() && (-1 != payload.decode(slice))) {
+		}
+		slice.clear();
+		decoded += length;
+		
+		return new DataUri(
+			header.mime,
+			mediaCharset,
+			header.filename,
+			header.contentDisposition,
+			this,
+			slice
+		);
+	}
+	
+	/**
+	 * @return Buffer with position 0 and a capacity of {@code length}
+	 *     octets, backed by a slab if the payload fits into one
+	 */
+	private ByteBuffer allocate(int length) {
+		if (length > pool.slabSize) {
+			return pool.allocate(length);
+		}
+		
+		if ((null == current) || (current.remaining() < length)) {
+			current = pool.take();
+			slabs.add(current);
+		}
+		
+		final int start = current.position();
+		current.position(start + length);
+		
+		final ByteBuffer slice = current.duplicate();
+		slice.position(start).limit(start + length);
+		return slice.slice();
+	}
+}
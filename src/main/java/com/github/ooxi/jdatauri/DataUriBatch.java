@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Parses many data URIs at once on an executor, a malformed data URI does
+ * not abort the batch but is reported in its result slot
+ * 
+ * The input is split into a few slices of consecutive data URIs per
+ * available processor, thus the cost of submitting tasks is shared by
+ * many data URIs. Any executor service can be used, e.g. a virtual thread
+ * per task executor on JDK 21+.
+ *
+ * @author ooxi
+ */
+public final class DataUriBatch {
+	
+	/**
+	 * Number of slices per available processor, balancing data URIs of
+	 * different size
+	 */
+	private static final int SLICES_PER_PROCESSOR = 4;
+	
+	
+	
+	private DataUriBatch() {
+	}
+	
+	
+	
+	/**
+	 * Outcome of parsing a single data URI, either the parsed data URI or
+	 * the exception thrown by {@link DataUri#parse(CharSequence, Charset)}
+	 */
+	public static final class Result {
+		
+		private final DataUri dataUri;
+		private final RuntimeException error;
+		
+		private Result(DataUri dataUri, RuntimeException error) {
+			this.dataUri = dataUri;
+			this.error = error;
+		}
+		
+		public boolean isSuccess() {
+			return null == error;
+		}
+		
+		/**
+		 * @warning May be null
+		 */
+		public DataUri getDataUri() {
+			return dataUri;
+		}
+		
+		/**
+		 * @return Usually an {@link IllegalArgumentException} for
+		 *     malformed data URIs or a {@link NullPointerException}
+		 *     for null input
+		 * @warning May be null
+		 */
+		public RuntimeException getError() {
+			return error;
+		}
+	}
+	
+	
+	
+	/**
+	 * Parses every data URI in {@code uris} using {@code executor}
+	 * 
+	 * @param uris Data URIs to parse
+	 * @param charset Charset to use when decoding percent encoded options
+	 *     like filename
+	 * @param executor Executes the parse tasks
+	 * 
+	 * @return One result per data URI in the same order as {@code uris}
+	 * @throws InterruptedException iff the calling thread is interrupted
+	 *     while waiting for the parse tasks
+	 */
+	public static List<Result> parse(List<? extends CharSequence> uris, final Charset charset, ExecutorService executor) throws InterruptedException {
+		final CharSequence[] input = uris.toArray(new CharSequence[uris.size()]);
+		final Result[] results = new Result[input.length];
+		final int slices = Math.max(1, Math.min(input.length, SLICES_PER_PROCESSOR * Runtime.getRuntime().availableProcessors()));
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(slices);
+		
+		for (int slice = 0; slice < slices; ++slice) {
+			final int from = (int)((long)input.length * slice / slices);
+			final int to = (int)((long)input.length * (slice + 1) / slices);
+			
+			tasks.add(new Callable<Void>() {
+				@Override public Void call() {
+					parse(input, from, to, charset, results);
+					return null;
+				}
+			});
+		}
+		
+		for (final Future<Void> task : executor.invokeAll(tasks)) {
+			try {
+				task.get();
+			} catch (ExecutionException e) {
+				
+				/* Parse errors are reported per data URI, thus only
+				 * errors like OutOfMemoryError end up here
+				 */
+				if (e.getCause() instanceof Error) {
+					throw (Error)e.getCause();
+				}
+				throw new IllegalStateException("Unexpected parse task failure", e.getCause());
+			}
+		}
+		
+		return Collections.unmodifiableList(Arrays.asList(results));
+	}
+	
+	/**
+	 * Parses every data URI in {@code uris} using {@code executor}
+	 * 
+	 * @see #parse(List, Charset, ExecutorService)
+	 */
+	public static List<Result> parse(CharSequence[] uris, Charset charset, ExecutorService executor) throws InterruptedException {
+		return parse(Arrays.asList(uris), charset, executor);
+	}
+	
+	
+	
+	private static void parse(CharSequence[] input, int from, int to, Charset charset, Result[] results) {
+		for (int i = from; i < to; ++i) {
+			try {
+				results[i] = new Result(DataUri.parse(input[i], charset), null);
+			} catch (RuntimeException e) {
+				results[i] = new Result(null, e);
+			}
+		}
+	}
+}
@@ -0,0 +1,321 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread-safe cache in front of {@link DataUri#parse(CharSequence, Charset)}
+ * for data URIs which are parsed over and over again (like inline icons)
+ * 
+ * The cache is bounded by the weight of its entries, which is the number of
+ * decoded octets plus the number of source characters retained for
+ * verifying hits. Eviction follows a segmented LRU policy: New entries are
+ * put on probation and only promoted to the protected segment on their
+ * second access, thus data URIs seen only once never displace frequently
+ * used ones.
+ * 
+ * Returned instances are shared between all callers and therefore
+ * immutable, {@link DataUri#getData()} returns a copy of the payload while
+ * {@link DataUri#getDataBuffer()} provides read-only access without
+ * copying.
+ *
+ * @author ooxi
+ */
+public final class DataUriCache {
+	
+	/**
+	 * Share of the maximum weight reserved for entries accessed at least
+	 * twice
+	 */
+	private static final double PROTECTED_SHARE = 0.8;
+	
+	private final long maximumWeight;
+	private final long maximumProtectedWeight;
+	
+	/**
+	 * Both segments are in access order, i.e. the eldest entry is the least
+	 * recently used one
+	 */
+	private final LinkedHashMap<Key, Entry> probation = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+	private final LinkedHashMap<Key, Entry> protectedSegment = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+	private long probationWeight = 0;
+	private long protectedWeight = 0;
+	
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+	
+	
+	
+	/**
+	 * @param maximumWeight Maximum sum of decoded octets and source
+	 *     characters of all cached data URIs
+	 */
+	public DataUriCache(long maximumWeight) {
+		if (maximumWeight < 0) {
+			throw new IllegalArgumentException("`maximumWeight' must not be negative");
+		}
+		this.maximumWeight = maximumWeight;
+		this.maximumProtectedWeight = (long)(PROTECTED_SHARE * maximumWeight);
+	}
+	
+	
+	
+	/**
+	 * Returns the cached data URI represented by {@code uri} or parses and
+	 * caches it. Malformed data URIs are not cached.
+	 * 
+	 * @param uri Characters representing the data URI
+	 * @param charset Charset to use when decoding percent encoded options
+	 *     like filename
+	 * 
+	 * @return Parsed data URI, shared with other callers
+	 * @throws IllegalArgumentException iff an error occured during parse
+	 *     process
+	 */
+	public DataUri parse(CharSequence uri, Charset charset) {
+		final Key key = new Key(uri, charset);
+		
+		synchronized (this) {
+			Entry entry = protectedSegment.get(key);
+			
+			if (null == entry) {
+				entry = probation.remove(key);
+				
+				if (null != entry) {
+					probationWeight -= entry.weight;
+					promote(key, entry);
+				}
+			}
+			
+			if (null != entry) {
+				++hits;
+				return entry.dataUri;
+			}
+			++misses;
+		}
+		
+		/* Parse outside of the lock, concurrent misses of the same data
+		 * URI will only be cached once
+		 */
+		final DataUri dataUri = DataUri.parse(uri, charset).markShared();
+		final Entry entry = new Entry(dataUri, (long)dataUri.getDataBuffer().remaining() + uri.length());
+		
+		if (entry.weight > maximumWeight) {
+			return dataUri;
+		}
+		
+		synchronized (this) {
+			final Key stored = key.retain();
+			
+			if (protectedSegment.containsKey(stored) || probation.containsKey(stored)) {
+				return dataUri;
+			}
+			
+			probation.put(stored, entry);
+			probationWeight += entry.weight;
+			evict();
+		}
+		return dataUri;
+	}
+	
+	
+	
+	public synchronized long getHitCount() {
+		return hits;
+	}
+	
+	public synchronized long getMissCount() {
+		return misses;
+	}
+	
+	public synchronized long getEvictionCount() {
+		return evictions;
+	}
+	
+	/**
+	 * @return Number of cached data URIs
+	 */
+	public synchronized int size() {
+		return probation.size() + protectedSegment.size();
+	}
+	
+	/**
+	 * @return Sum of decoded octets and source characters of all cached
+	 *     data URIs
+	 */
+	public synchronized long getWeight() {
+		return probationWeight + protectedWeight;
+	}
+	
+	/**
+	 * Removes all cached data URIs without counting them as evicted
+	 */
+	public synchronized void clear() {
+		probation.clear();
+		protectedSegment.clear();
+		probationWeight = 0;
+		protectedWeight = 0;
+	}
+	
+	
+	
+	/**
+	 * Moves an entry accessed on probation into the protected segment,
+	 * demoting the least recently used protected entries if necessary
+	 */
+	private void promote(Key key, Entry entry) {
+		protectedSegment.put(key, entry);
+		protectedWeight += entry.weight;
+		
+		final Iterator<Map.Entry<Key, Entry>> eldest = protectedSegment.entrySet().iterator();
+		
+		while ((protectedWeight > maximumProtectedWeight) && eldest.hasNext()) {
+			final Map.Entry<Key, Entry> demoted = eldest.next();
+			
+			if (demoted.getValue() == entry) {
+				break;
+			}
+			eldest.remove();
+			protectedWeight -= demoted.getValue().weight;
+			probation.put(demoted.getKey(), demoted.getValue());
+			probationWeight += demoted.getValue().weight;
+		}
+	}
+	
+	/**
+	 * Evicts least recently used entries on probation (and protected
+	 * entries if probation is empty) until the maximum weight is met
+	 */
+	private void evict() {
+		evict(probation.entrySet().iterator(), false);
+		evict(protectedSegment.entrySet().iterator(), true);
+	}
+	
+	private void evict(Iterator<Map.Entry<Key, Entry>> eldest, boolean isProtected) {
+		while ((probationWeight + protectedWeight > maximumWeight) && eldest.hasNext()) {
+			final long weight = eldest.next().getValue().weight;
+			eldest.remove();
+			
+			if (isProtected) {
+				protectedWeight -= weight;
+			} else {
+				probationWeight -= weight;
+			}
+			++evictions;
+		}
+	}
+	
+	
+	
+	/**
+	 * Identifies a data URI by its length, charset and a 64 bit hash
+	 * calculated in a single pass. Hits are verified by comparing the
+	 * source, which is only copied when a new entry is stored.
+	 */
+	private static final class Key {
+		
+		private final CharSequence source;
+		private final Charset charset;
+		private final long hash;
+		
+		Key(CharSequence source, Charset charset) {
+			this(source, charset, hash(source));
+		}
+		
+		private Key(CharSequence source, Charset charset, long hash) {
+			this.source = source;
+			this.charset = charset;
+			this.hash = hash;
+		}
+		
+		/**
+		 * @return Key which does not depend on a possibly mutable
+		 *     character sequence of the caller
+		 */
+		Key retain() {
+			return (source instanceof String) ? this : new Key(source.toString(), charset, hash);
+		}
+		
+		private static long hash(CharSequence s) {
+			long hash = s.length();
+			
+			for (int i = 0; i < s.length(); ++i) {
+				hash = (hash ^ s.charAt(i)) * 0x100000001B3L;
+			}
+			
+			/* Final avalanche, thus the lower bits used by hash tables
+			 * depend on every character
+			 */
+			hash ^= hash >>> 33;
+			hash *= 0xFF51AFD7ED558CCDL;
+			hash ^= hash >>> 33;
+			return hash;
+		}
+		
+		@Override
+		public int hashCode() {
+			return (int)(hash ^ (hash >>> 32));
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key)obj;
+			
+			if ((hash != other.hash) || (source.length() != other.source.length())) {
+				return false;
+			}
+			if ((null == charset) ? (null != other.charset) : !charset.equals(other.charset)) {
+				return false;
+			}
+			if ((source instanceof String) && (other.source instanceof String)) {
+				return source.equals(other.source);
+			}
+			
+			for (int i = 0; i < source.length(); ++i) {
+				if (source.charAt(i) != other.source.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+	
+	private static final class Entry {
+		
+		final DataUri dataUri;
+		final long weight;
+		
+		Entry(DataUri dataUri, long weight) {
+			this.dataUri = dataUri;
+			this.weight = weight;
+		}
+	}
+}
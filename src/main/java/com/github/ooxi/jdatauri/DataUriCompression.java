@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compressed content encodings for text heavy payloads (like inline SVG,
+ * JSON or CSV), stacked below the transfer encoding as in
+ * {@code data:image/svg+xml;gzip;base64,...}
+ * 
+ * Both directions are streaming, the payload is inflated while it is
+ * base64 decoded and deflated while it is base64 encoded.
+ * 
+ * @see DataUriParser.Builder#addContentEncoding(DataUriContentEncoding)
+ * @see DataUri#toString(DataUriContentEncoding)
+ *
+ * @author ooxi
+ */
+public enum DataUriCompression implements DataUriContentEncoding {
+	
+	/**
+	 * RFC1952 gzip file format
+	 */
+	GZIP("gzip") {
+		
+		@Override
+		public InputStream decode(InputStream encoded) throws IOException {
+			return new GZIPInputStream(encoded, BUFFER_SIZE);
+		}
+		
+		@Override
+		public OutputStream encode(OutputStream encoded) throws IOException {
+			return new GZIPOutputStream(encoded, BUFFER_SIZE);
+		}
+	},
+	
+	/**
+	 * RFC1950 zlib format, which HTTP calls `deflate'
+	 */
+	DEFLATE("deflate") {
+		
+		@Override
+		public InputStream decode(InputStream encoded) throws IOException {
+			return new InflaterInputStream(encoded);
+		}
+		
+		@Override
+		public OutputStream encode(OutputStream encoded) throws IOException {
+			return new DeflaterOutputStream(encoded);
+		}
+	};
+	
+	
+	
+	/**
+	 * Size of the internal buffers of the compressing and decompressing
+	 * streams
+	 */
+	private static final int BUFFER_SIZE = 8 * 1024;
+	
+	private final String name;
+	
+	
+	
+	private DataUriCompression(String name) {
+		this.name = name;
+	}
+	
+	
+	
+	@Override
+	public String getName() {
+		return name;
+	}
+}
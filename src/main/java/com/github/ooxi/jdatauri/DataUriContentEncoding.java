@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Content encoding applied to the payload of a data URI before the
+ * transfer encoding (i.e. `base64'), like `gzip' in
+ * {@code data:text/plain;gzip;base64,...}
+ * 
+ * @see DataUriParser.Builder#addContentEncoding(DataUriContentEncoding)
+ * @see DataUriCompression
+ *
+ * @author ooxi
+ */
+public interface DataUriContentEncoding {
+	
+	/**
+	 * @return Case-insensitive name of the encoding in the header of a
+	 *     data URI
+	 */
+	String getName();
+	
+	/**
+	 * @param encoded Encoded payload
+	 * 
+	 * @return Stream of the decoded payload, closing it must close
+	 *     {@code encoded}
+	 * 
+	 * @throws IOException iff {@code encoded} cannot be decoded
+	 */
+	InputStream decode(InputStream encoded) throws IOException;
+	
+	/**
+	 * @param encoded Receives the encoded payload
+	 * 
+	 * @return Stream encoding everything written to it, closing it must
+	 *     write all pending octets and close {@code encoded}
+	 * 
+	 * @throws IOException iff writing to {@code encoded} fails
+	 */
+	OutputStream encode(OutputStream encoded) throws IOException;
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+/**
+ * Reasons a data URI cannot be parsed
+ * 
+ * @see DataUri#tryParse(CharSequence, java.nio.charset.Charset)
+ *
+ * @author ooxi
+ */
+public enum DataUriError {
+	
+	/**
+	 * URI does not start with a case-insensitive `data:', the offset is
+	 * always 0
+	 */
+	MISSING_SCHEME,
+	
+	/**
+	 * URI does not contain a `,' separating header and payload, the offset
+	 * is the length of the URI
+	 */
+	MISSING_COMMA,
+	
+	/**
+	 * A `%' is not followed by two hexadecimal digits, the offset is the
+	 * position of the `%'
+	 */
+	ILLEGAL_PERCENT_ESCAPE,
+	
+	/**
+	 * The value of the `charset' option is not a legal charset name, the
+	 * offset is the position of the value
+	 */
+	ILLEGAL_CHARSET_NAME,
+	
+	/**
+	 * The charset named by the `charset' option is not supported by this
+	 * JVM, the offset is the position of the value
+	 */
+	UNSUPPORTED_CHARSET,
+	
+	/**
+	 * Strict mode only: The media type is not of the form `type/subtype',
+	 * the offset is the position of the media type
+	 */
+	ILLEGAL_MEDIA_TYPE,
+	
+	/**
+	 * Strict mode only: A parameter is empty, duplicated, unknown or
+	 * follows a content encoding, the offset is the position of the
+	 * parameter
+	 */
+	ILLEGAL_PARAMETER,
+	
+	/**
+	 * Strict mode only: The payload is not canonical base64, the offset is
+	 * the position of the offending symbol
+	 */
+	ILLEGAL_BASE64,
+	
+	/**
+	 * The payload cannot be decoded using one of the content encodings
+	 * (like `gzip'), the offset is the position of the payload
+	 */
+	ILLEGAL_CONTENT_ENCODING,
+	
+	/**
+	 * The header is longer than the configured maximum, the offset is the
+	 * maximum header length
+	 * 
+	 * @see DataUriParser.Builder#setMaximumHeaderLength(int)
+	 */
+	HEADER_TOO_LONG,
+	
+	/**
+	 * The header consists of more parameters than the configured maximum,
+	 * the offset is the position of the first excess parameter
+	 * 
+	 * @see DataUriParser.Builder#setMaximumParameterCount(int)
+	 */
+	TOO_MANY_PARAMETERS,
+	
+	/**
+	 * The payload contains more percent escapes than the configured
+	 * maximum, the offset is the position of the first excess escape
+	 * 
+	 * @see DataUriParser.Builder#setMaximumEscapeCount(int)
+	 */
+	TOO_MANY_ESCAPES,
+	
+	/**
+	 * The decoded payload would be larger than the configured maximum, the
+	 * offset is the position of the payload
+	 * 
+	 * @see DataUriParser.Builder#setMaximumDecodedLength(long)
+	 */
+	PAYLOAD_TOO_LARGE;
+	
+	
+	
+	/**
+	 * @return Message of the exception {@link DataUri#parse(CharSequence, java.nio.charset.Charset)}
+	 *     throws for this error
+	 */
+	String message(long offset) {
+		switch (this) {
+			case MISSING_SCHEME: return "URI must start with a case-insensitive `data:'";
+			case MISSING_COMMA: return "URI must contain a `,'";
+			case ILLEGAL_PERCENT_ESCAPE: return "Illegal percent escape at position "+ offset;
+			case ILLEGAL_CHARSET_NAME: return "Illegal charset name at position "+ offset;
+			case UNSUPPORTED_CHARSET: return "Unsupported charset at position "+ offset;
+			case ILLEGAL_MEDIA_TYPE: return "Illegal media type at position "+ offset;
+			case ILLEGAL_PARAMETER: return "Illegal parameter at position "+ offset;
+			case ILLEGAL_BASE64: return "Illegal base64 symbol at position "+ offset;
+			case ILLEGAL_CONTENT_ENCODING: return "Illegal content encoding at position "+ offset;
+			case HEADER_TOO_LONG: return "Header exceeds maximum length of "+ offset;
+			case TOO_MANY_PARAMETERS: return "Too many parameters at position "+ offset;
+			case TOO_MANY_ESCAPES: return "Too many percent escapes at position "+ offset;
+			default: return "Payload at position "+ offset +" exceeds maximum decoded length";
+		}
+	}
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.nio.charset.Charset;
+
+/**
+ * Metadata of a data URI, which can be obtained without decoding its payload
+ * 
+ * @see DataUri#peek(CharSequence, Charset)
+ *
+ * @author ooxi
+ */
+public class DataUriHeader {
+	
+	/**
+	 * Decoded length of payloads which have not been seen yet
+	 */
+	public static final long UNKNOWN_LENGTH = -1;
+	
+	private final String mime;
+	private final Charset charset;
+	private final String filename;
+	private final String contentDisposition;
+	private final String contentEncoding;
+	private final long decodedLength;
+	
+	
+	
+	public DataUriHeader(String mime, Charset charset, String filename, String contentDisposition, String contentEncoding, long decodedLength) {
+		this.mime = mime;
+		this.charset = charset;
+		this.filename = filename;
+		this.contentDisposition = contentDisposition;
+		this.contentEncoding = contentEncoding;
+		this.decodedLength = decodedLength;
+		
+		if (null == mime) {
+			throw new NullPointerException("`mime' must not be null");
+		}
+		if ((decodedLength < 0) && (UNKNOWN_LENGTH != decodedLength)) {
+			throw new IllegalArgumentException("`decodedLength' must not be negative");
+		}
+	}
+	
+	
+	
+	public String getMime() {
+		return mime;
+	}
+
+	/**
+	 * @warning May be null
+	 */
+	public Charset getCharset() {
+		return charset;
+	}
+	
+	/**
+	 * @warning May be null
+	 */
+	public String getFilename() {
+		return filename;
+	}
+	
+	/**
+	 * @warning May be null
+	 */
+	public String getContentDisposition() {
+		return contentDisposition;
+	}
+	
+	/**
+	 * @return Content encodings of the payload in order of appearance
+	 *     separated by `;' (like `base64' or `gzip;base64'), null if the
+	 *     payload is only percent encoded
+	 */
+	public String getContentEncoding() {
+		return contentEncoding;
+	}
+	
+	/**
+	 * @return Exact number of octets {@link DataUri#getData()} will
+	 *     contain or {@link #UNKNOWN_LENGTH} if the payload has not been
+	 *     seen yet
+	 */
+	public long getDecodedLength() {
+		return decodedLength;
+	}
+	
+	
+
+	@Override
+	public int hashCode() {
+		int hash = 7;
+		hash = 29 * hash + (this.mime != null ? this.mime.hashCode() : 0);
+		hash = 29 * hash + (this.charset != null ? this.charset.hashCode() : 0);
+		hash = 29 * hash + (this.filename != null ? this.filename.hashCode() : 0);
+		hash = 29 * hash + (this.contentDisposition != null ? this.contentDisposition.hashCode() : 0);
+		hash = 29 * hash + (this.contentEncoding != null ? this.contentEncoding.hashCode() : 0);
+		hash = 29 * hash + (int)(this.decodedLength ^ (this.decodedLength >>> 32));
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == null) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		final DataUriHeader other = (DataUriHeader) obj;
+		if ((this.mime == null) ? (other.mime != null) : !this.mime.equals(other.mime)) {
+			return false;
+		}
+		if (this.charset != other.charset && (this.charset == null || !this.charset.equals(other.charset))) {
+			return false;
+		}
+		if ((this.filename == null) ? (other.filename != null) : !this.filename.equals(other.filename)) {
+			return false;
+		}
+		if ((this.contentDisposition == null) ? (other.contentDisposition != null) : !this.contentDisposition.equals(other.contentDisposition)) {
+			return false;
+		}
+		if ((this.contentEncoding == null) ? (other.contentEncoding != null) : !this.contentEncoding.equals(other.contentEncoding)) {
+			return false;
+		}
+		if (this.decodedLength != other.decodedLength) {
+			return false;
+		}
+		return true;
+	}
+}
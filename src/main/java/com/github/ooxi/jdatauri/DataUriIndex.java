@@ -0,0 +1,273 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Positions of all data URIs in a (usually memory mapped) document, which
+ * can be persisted and used for decoding individual data URIs on demand
+ * straight from the document
+ * 
+ * Every entry consists of the start of the data URI, the position of the
+ * `,' ending its header, its end and whether its payload is base64
+ * encoded. Positions are relative to the position of the document buffer,
+ * thus documents must be smaller than 2 GiB (the limit of
+ * {@link java.nio.channels.FileChannel#map}).
+ * 
+ * @see DataUriScanner
+ *
+ * @author ooxi
+ */
+public final class DataUriIndex {
+	
+	/**
+	 * Identifies persisted indices, followed by a format version
+	 */
+	private static final int MAGIC = 0x64617469;
+	private static final int VERSION = 1;
+	
+	private final long documentLength;
+	private int size = 0;
+	private int[] starts;
+	private int[] commas;
+	private int[] ends;
+	private boolean[] base64;
+	
+	
+	
+	private DataUriIndex(long documentLength, int capacity) {
+		this.documentLength = documentLength;
+		this.starts = new int[capacity];
+		this.commas = new int[capacity];
+		this.ends = new int[capacity];
+		this.base64 = new boolean[capacity];
+	}
+	
+	
+	
+	/**
+	 * Indexes all data URIs of a document, data URIs with a malformed
+	 * header (including an illegal or unsupported charset) are skipped
+	 * 
+	 * @param document Octets of an US-ASCII compatible charset like UTF-8,
+	 *     neither position nor limit will be modified
+	 */
+	public static DataUriIndex build(ByteBuffer document) {
+		final DataUriIndex index = new DataUriIndex(document.remaining(), 16);
+		final AsciiSequence octets = new AsciiSequence(document);
+		final DataUriScanner scanner = new DataUriScanner(document);
+		
+		try {
+			while (scanner.find()) {
+				final int start = (int)scanner.start();
+				final int end = (int)scanner.end();
+				final HeaderScanner header = HeaderScanner.tryScan(octets.subSequence(start, end), AsciiSequence.OCTETS).checkCharset();
+				
+				if (null == header.error) {
+					index.add(start, start + header.comma, end, header.base64);
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Scanning a buffer must not fail", e);
+		}
+		
+		return index;
+	}
+	
+	private void add(int start, int comma, int end, boolean base64) {
+		if (size == starts.length) {
+			final int capacity = 2 * size;
+			starts = Arrays.copyOf(starts, capacity);
+			commas = Arrays.copyOf(commas, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			this.base64 = Arrays.copyOf(this.base64, capacity);
+		}
+		
+		starts[size] = start;
+		commas[size] = comma;
+		ends[size] = end;
+		this.base64[size] = base64;
+		++size;
+	}
+	
+	
+	
+	/**
+	 * @return Number of indexed data URIs
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @return Length of the indexed document
+	 */
+	public long getDocumentLength() {
+		return documentLength;
+	}
+	
+	/**
+	 * @return Position of the first octet of data URI {@code i}
+	 */
+	public int start(int i) {
+		return starts[checkIndex(i)];
+	}
+	
+	/**
+	 * @return Position of the `,' separating header and payload of data
+	 *     URI {@code i}
+	 */
+	public int headerEnd(int i) {
+		return commas[checkIndex(i)];
+	}
+	
+	/**
+	 * @return Position after the last octet of data URI {@code i}
+	 */
+	public int end(int i) {
+		return ends[checkIndex(i)];
+	}
+	
+	/**
+	 * @return true iff the payload of data URI {@code i} is base64 encoded
+	 */
+	public boolean isBase64(int i) {
+		return base64[checkIndex(i)];
+	}
+	
+	
+	
+	/**
+	 * @param document Indexed document, neither position nor limit will be
+	 *     modified
+	 * 
+	 * @return View of data URI {@code i} in {@code document} without
+	 *     copying, e.g. for {@link DataUri#transferTo(ByteBuffer, Charset, java.nio.channels.WritableByteChannel)}
+	 * @throws IllegalArgumentException iff {@code document} has not the
+	 *     length of the indexed document
+	 */
+	public ByteBuffer slice(ByteBuffer document, int i) {
+		if (document.remaining() != documentLength) {
+			throw new IllegalArgumentException("Document length "+ document.remaining() +" differs from indexed length "+ documentLength);
+		}
+		
+		final ByteBuffer slice = document.duplicate();
+		slice.limit(document.position() + end(i)).position(document.position() + start(i));
+		return slice;
+	}
+	
+	/**
+	 * Parses data URI {@code i} straight from the indexed document, the
+	 * header is not searched for its `,' again
+	 * 
+	 * @param document Indexed document, neither position nor limit will be
+	 *     modified
+	 * @param charset Charset of the document which will also be used when
+	 *     decoding percent encoded options like filename
+	 * 
+	 * @throws IllegalArgumentException iff {@code document} has not the
+	 *     length of the indexed document or the data URI is malformed
+	 */
+	public DataUri parse(ByteBuffer document, int i, Charset charset) {
+		final AsciiSequence uri = new AsciiSequence(slice(document, i));
+		return DataUri.parse(uri, HeaderScanner.scan(uri, headerEnd(i) - start(i), charset));
+	}
+	
+	
+	
+	/**
+	 * Persists the index, the stream will not be closed
+	 * 
+	 * @throws IOException iff writing fails
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		final DataOutputStream data = new DataOutputStream(out);
+		
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeLong(documentLength);
+		data.writeInt(size);
+		
+		for (int i = 0; i < size; ++i) {
+			data.writeInt(starts[i]);
+			data.writeInt(commas[i] - starts[i]);
+			data.writeInt(ends[i] - commas[i]);
+			data.writeBoolean(base64[i]);
+		}
+		data.flush();
+	}
+	
+	/**
+	 * Reads an index persisted by {@link #writeTo(OutputStream)}, the
+	 * stream will not be closed
+	 * 
+	 * @throws IOException iff reading fails or {@code in} does not contain
+	 *     a persisted index
+	 */
+	public static DataUriIndex readFrom(InputStream in) throws IOException {
+		final DataInputStream data = new DataInputStream(in);
+		
+		if ((MAGIC != data.readInt()) || (VERSION != data.readInt())) {
+			throw new IOException("Not a data URI index");
+		}
+		
+		final long documentLength = data.readLong();
+		final int size = data.readInt();
+		
+		if ((documentLength < 0) || (size < 0)) {
+			throw new IOException("Corrupt data URI index");
+		}
+		
+		final DataUriIndex index = new DataUriIndex(documentLength, Math.max(1, Math.min(size, 1024 * 1024)));
+		
+		for (int i = 0; i < size; ++i) {
+			final int start = data.readInt();
+			final int comma = start + data.readInt();
+			final int end = comma + data.readInt();
+			
+			if ((start < 0) || (comma < start) || (end < comma) || (end > documentLength)) {
+				throw new IOException("Corrupt data URI index entry "+ i);
+			}
+			index.add(start, comma, end, data.readBoolean());
+		}
+		
+		return index;
+	}
+	
+	
+	
+	private int checkIndex(int i) {
+		if ((i < 0) || (i >= size)) {
+			throw new IndexOutOfBoundsException("Index "+ i +" out of bounds for size "+ size);
+		}
+		return i;
+	}
+}
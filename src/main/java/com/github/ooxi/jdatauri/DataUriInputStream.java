@@ -0,0 +1,286 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+/**
+ * Reads a data URI described in RFC2397 from a stream and provides its
+ * decoded payload as stream.
+ * 
+ * The header is parsed eagerly during construction, while the payload is
+ * percent- and base64-decoded on the fly using buffers of constant size.
+ * Thus arbitrarily large data URIs can be processed in bounded memory.
+ * 
+ * @author ooxi
+ */
+public class DataUriInputStream extends InputStream {
+	
+	private final HeaderScanner header;
+	private final Charset charset;
+	private final InputStream data;
+	
+	
+	
+	/**
+	 * Reads the header of a data URI from an octet stream
+	 * 
+	 * @param in Stream of the data URI's characters encoded in
+	 *     {@code charset}, octets outside of US-ASCII in the payload will
+	 *     be passed through unchanged
+	 * @param charset Charset of {@code in} which will also be used when
+	 *     decoding percent encoded options like filename
+	 * 
+	 * @throws IOException iff reading from {@code in} fails
+	 * @throws IllegalArgumentException iff the header is malformed
+	 */
+	public DataUriInputStream(InputStream in, Charset charset) throws IOException {
+		final InputStream buffered = buffered(in);
+		
+		this.header = readHeader(buffered, charset, DataUriParser.DEFAULT);
+		this.charset = header.charset();
+		this.data = decode(header, buffered, DataUriParser.DEFAULT);
+	}
+	
+	/**
+	 * Reads the header of a data URI from an octet stream according to the
+	 * configuration of {@code parser}, additional content encodings (like
+	 * {@link DataUriCompression#GZIP}) are reverted on the fly. The limits
+	 * of {@code parser} are checked while reading the payload.
+	 * 
+	 * @param in Stream of the data URI's characters encoded in the charset
+	 *     of {@code parser}
+	 * 
+	 * @throws IOException iff reading from {@code in} fails
+	 * @throws IllegalArgumentException iff the header is malformed
+	 */
+	public DataUriInputStream(InputStream in, DataUriParser parser) throws IOException {
+		final InputStream buffered = buffered(in);
+		
+		this.header = readHeader(buffered, parser.getCharset(), parser);
+		this.charset = header.charset();
+		this.data = decode(header, buffered, parser);
+	}
+	
+	/**
+	 * Reads the header of a data URI from a character stream
+	 * 
+	 * @param in Stream of the data URI's characters
+	 * @param charset Charset to use when decoding percent encoded options
+	 *     like filename as well as literal characters outside of US-ASCII
+	 *     in the payload
+	 * 
+	 * @throws IOException iff reading from {@code in} fails
+	 * @throws IllegalArgumentException iff the header is malformed
+	 */
+	public DataUriInputStream(Reader in, Charset charset) throws IOException {
+		final Reader buffered = buffered(in);
+		
+		this.header = readHeader(buffered, charset, DataUriParser.DEFAULT);
+		this.charset = header.charset();
+		this.data = decode(header, new ReaderInputStream(buffered, charset), DataUriParser.DEFAULT);
+	}
+	
+	/**
+	 * Reads the header of a data URI from a character stream according to
+	 * the configuration of {@code parser}, additional content encodings
+	 * (like {@link DataUriCompression#GZIP}) are reverted on the fly. The
+	 * limits of {@code parser} are checked while reading the payload.
+	 * 
+	 * @param in Stream of the data URI's characters, literal characters
+	 *     outside of US-ASCII in the payload are encoded using the charset
+	 *     of {@code parser}
+	 * 
+	 * @throws IOException iff reading from {@code in} fails
+	 * @throws IllegalArgumentException iff the header is malformed
+	 */
+	public DataUriInputStream(Reader in, DataUriParser parser) throws IOException {
+		final Reader buffered = buffered(in);
+		
+		this.header = readHeader(buffered, parser.getCharset(), parser);
+		this.charset = header.charset();
+		this.data = decode(header, new ReaderInputStream(buffered, parser.getCharset()), parser);
+	}
+	
+	
+	
+	public String getMime() {
+		return header.mime;
+	}
+
+	/**
+	 * @warning May be null
+	 */
+	public Charset getCharset() {
+		return charset;
+	}
+	
+	/**
+	 * @warning May be null
+	 */
+	public String getFilename() {
+		return header.filename;
+	}
+	
+	/**
+	 * @warning May be null
+	 */
+	public String getContentDisposition() {
+		return header.contentDisposition;
+	}
+	
+	/**
+	 * @return Content encodings of the payload in order of appearance
+	 *     separated by `;' (like `base64' or `gzip;base64'), null if the
+	 *     payload is only percent encoded
+	 */
+	public String getContentEncoding() {
+		return header.contentEncoding();
+	}
+	
+	
+	
+	/**
+	 * @throws IOException iff reading fails, the payload contains an
+	 *     illegal percent escape or violates a limit of the parser
+	 */
+	@Override
+	public int read() throws IOException {
+		return data.read();
+	}
+	
+	/**
+	 * @throws IOException iff reading fails, the payload contains an
+	 *     illegal percent escape or violates a limit of the parser
+	 */
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		return data.read(b, off, len);
+	}
+	
+	@Override
+	public long skip(long n) throws IOException {
+		return data.skip(n);
+	}
+	
+	@Override
+	public void close() throws IOException {
+		data.close();
+	}
+	
+	
+	
+	/**
+	 * Reverts percent and base64 encoding as well as additional content
+	 * encodings in reverse order of their application
+	 * 
+	 * Strict base64 syntax, the number of percent escapes and the decoded
+	 * length (after reverting additional content encodings, thus
+	 * decompression bombs are stopped while inflating) are checked on the
+	 * fly according to {@code parser}, violations are reported as
+	 * {@link IOException} when they are reached.
+	 */
+	private static InputStream decode(HeaderScanner header, InputStream payload, DataUriParser parser) throws IOException {
+		final long offset = header.comma + 1;
+		InputStream encoded = payload;
+		
+		if (parser.strict && header.base64) {
+			encoded = new Base64ValidatingInputStream(encoded, offset);
+		}
+		if (Integer.MAX_VALUE != parser.maximumEscapeCount) {
+			encoded = new BoundedInputStream(encoded, '%', parser.maximumEscapeCount, DataUriError.TOO_MANY_ESCAPES, offset);
+		}
+		
+		final InputStream percentDecoded = new PercentDecodingInputStream(encoded);
+		InputStream data = header.base64 ? new Base64DecodingInputStream(percentDecoded) : percentDecoded;
+		
+		for (int i = header.encodingCount - 1; i >= 0; --i) {
+			data = header.encodings[i].decode(data);
+		}
+		
+		if (Long.MAX_VALUE != parser.maximumDecodedLength) {
+			data = new BoundedInputStream(data, BoundedInputStream.ALL_OCTETS, parser.maximumDecodedLength, DataUriError.PAYLOAD_TOO_LARGE, offset);
+		}
+		return data;
+	}
+	
+	/**
+	 * Reads everything up to and including the first `,' and scans it as
+	 * header, leaving {@code in} positioned at the first payload octet.
+	 */
+	private static HeaderScanner readHeader(InputStream in, Charset charset, DataUriParser parser) throws IOException {
+		final ByteArrayOutputStream header = new ByteArrayOutputStream();
+		
+		for (int octet = in.read(); -1 != octet; octet = in.read()) {
+			header.write(octet);
+			
+			if ((',' == octet) || (parser.maximumHeaderLength == header.size())) {
+				break;
+			}
+			if ((DataUri.DATA_SCHEME.length() == header.size()) && !isDataScheme(header.toString("ISO-8859-1"))) {
+				break;
+			}
+		}
+		
+		return HeaderScanner.scan(new String(header.toByteArray(), charset), charset, parser);
+	}
+	
+	/**
+	 * Reads everything up to and including the first `,' and scans it as
+	 * header, leaving {@code in} positioned at the first payload character.
+	 */
+	private static HeaderScanner readHeader(Reader in, Charset charset, DataUriParser parser) throws IOException {
+		final StringBuilder header = new StringBuilder();
+		
+		for (int c = in.read(); -1 != c; c = in.read()) {
+			header.append((char)c);
+			
+			if ((',' == c) || (parser.maximumHeaderLength == header.length())) {
+				break;
+			}
+			if ((DataUri.DATA_SCHEME.length() == header.length()) && !isDataScheme(header)) {
+				break;
+			}
+		}
+		
+		return HeaderScanner.scan(header, charset, parser);
+	}
+	
+	private static boolean isDataScheme(CharSequence s) {
+		return HeaderScanner.equalsIgnoreCase(s, 0, DataUri.DATA_SCHEME.length(), DataUri.DATA_SCHEME);
+	}
+	
+	private static InputStream buffered(InputStream in) {
+		return (in instanceof BufferedInputStream) ? in : new BufferedInputStream(in);
+	}
+	
+	private static Reader buffered(Reader in) {
+		return (in instanceof BufferedReader) ? in : new BufferedReader(in);
+	}
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+/**
+ * Outcome of {@link DataUri#tryParse(CharSequence, java.nio.charset.Charset)},
+ * either the parsed data URI or the reason and position it is malformed
+ *
+ * @author ooxi
+ */
+public class DataUriParseResult {
+	
+	private final DataUri dataUri;
+	private final DataUriError error;
+	private final int errorOffset;
+	
+	
+	
+	private DataUriParseResult(DataUri dataUri, DataUriError error, int errorOffset) {
+		this.dataUri = dataUri;
+		this.error = error;
+		this.errorOffset = errorOffset;
+	}
+	
+	static DataUriParseResult success(DataUri dataUri) {
+		return new DataUriParseResult(dataUri, null, -1);
+	}
+	
+	static DataUriParseResult failure(DataUriError error, int errorOffset) {
+		return new DataUriParseResult(null, error, errorOffset);
+	}
+	
+	
+	
+	public boolean isSuccess() {
+		return null == error;
+	}
+	
+	/**
+	 * @warning May be null
+	 */
+	public DataUri getDataUri() {
+		return dataUri;
+	}
+	
+	/**
+	 * @warning May be null
+	 */
+	public DataUriError getError() {
+		return error;
+	}
+	
+	/**
+	 * @return Position of the offending character in the URI or -1 on
+	 *     success
+	 */
+	public int getErrorOffset() {
+		return errorOffset;
+	}
+	
+	
+	
+	@Override
+	public String toString() {
+		return isSuccess() ? dataUri.toString() : error.message(errorOffset);
+	}
+}
@@ -0,0 +1,618 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable and thread-safe data URI parser configured once and shared
+ * between callers
+ * 
+ * In addition to {@link DataUri#parse(CharSequence, Charset)} a parser can
+ * recognize additional content encodings (applied before `base64'), retain
+ * parameters other than `charset', `filename' and `content-disposition'
+ * and reject data URIs violating RFC2397 in strict mode or exceeding
+ * configured size and complexity limits. All names are looked up in
+ * tables precomputed by {@link Builder#build()}, a parser using the
+ * default configuration performs exactly like the static methods of
+ * {@link DataUri}.
+ * 
+ * <pre>
+ * DataUriParser parser = new DataUriParser.Builder()
+ *     .setMode(DataUriParser.Mode.STRICT)
+ *     .addParameter("width")
+ *     .build();
+ * 
+ * DataUri dataUri = parser.parse("data:image/png;width=16;base64,...");
+ * dataUri.getParameter("width");
+ * </pre>
+ *
+ * @author ooxi
+ */
+public final class DataUriParser {
+	
+	public static enum Mode {
+		
+		/**
+		 * Follows the rules browsers apply: Malformed or unknown
+		 * parameters are ignored and the payload is decoded as good
+		 * as possible
+		 */
+		LENIENT,
+		
+		/**
+		 * Additionally rejects media types not of the form
+		 * `type/subtype', empty, duplicated or unknown parameters,
+		 * parameters following content encodings and base64 payload
+		 * which is not canonical
+		 */
+		STRICT
+	}
+	
+	
+	
+	/**
+	 * Collects the configuration of a {@link DataUriParser}, a builder may
+	 * be reused after {@link #build()} but is not thread-safe
+	 */
+	public static final class Builder {
+		
+		private static final Charset UTF_8 = Charset.forName("UTF-8");
+		
+		private Charset charset = UTF_8;
+		private Mode mode = Mode.LENIENT;
+		private final Map<String, DataUriContentEncoding> encodings = new LinkedHashMap<String, DataUriContentEncoding>();
+		private final List<String> parameters = new ArrayList<String>();
+		private boolean retainAllParameters = false;
+		
+		private long maximumDecodedLength = Long.MAX_VALUE;
+		private int maximumHeaderLength = Integer.MAX_VALUE;
+		private int maximumParameterCount = Integer.MAX_VALUE;
+		private int maximumEscapeCount = Integer.MAX_VALUE;
+		
+		
+		
+		/**
+		 * @param charset Charset to use when decoding percent encoded
+		 *     options like filename, defaults to UTF-8
+		 */
+		public Builder setCharset(Charset charset) {
+			if (null == charset) {
+				throw new NullPointerException("`charset' must not be null");
+			}
+			this.charset = charset;
+			return this;
+		}
+		
+		public Builder setMode(Mode mode) {
+			if (null == mode) {
+				throw new NullPointerException("`mode' must not be null");
+			}
+			this.mode = mode;
+			return this;
+		}
+		
+		/**
+		 * Recognizes an additional content encoding, which replaces a
+		 * previously added encoding of the same name
+		 * 
+		 * @throws IllegalArgumentException iff the name of the encoding is
+		 *     empty or `base64'
+		 */
+		public Builder addContentEncoding(DataUriContentEncoding encoding) {
+			final String name = normalize(encoding.getName(), "encoding");
+			
+			if (DataUri.BASE64_ENCODING_NAME.equals(name)) {
+				throw new IllegalArgumentException("`base64' is always supported");
+			}
+			encodings.put(name, encoding);
+			return this;
+		}
+		
+		/**
+		 * Retains the parameter named {@code name}, which will be
+		 * available via {@link DataUri#getParameter(String)}
+		 * 
+		 * @throws IllegalArgumentException iff {@code name} is empty or one
+		 *     of the supported values
+		 */
+		public Builder addParameter(String name) {
+			final String normalized = normalize(name, "parameter");
+			
+			if (DataUri.CHARSET_OPTION_NAME.equals(normalized) || DataUri.FILENAME_OPTION_NAME.equals(normalized) || DataUri.CONTENT_DISPOSITION_OPTION_NAME.equals(normalized)) {
+				throw new IllegalArgumentException("`"+ normalized +"' is always supported");
+			}
+			if (!parameters.contains(normalized)) {
+				parameters.add(normalized);
+			}
+			return this;
+		}
+		
+		/**
+		 * @param retainAllParameters Iff true every parameter will be
+		 *     retained regardless of {@link #addParameter(String)},
+		 *     which also makes unknown parameters legal in strict mode
+		 */
+		public Builder setRetainAllParameters(boolean retainAllParameters) {
+			this.retainAllParameters = retainAllParameters;
+			return this;
+		}
+		
+		/**
+		 * Rejects data URIs whose payload would decode to more octets,
+		 * which is detected before allocating the payload (or while
+		 * inflating it, in case of compressed content encodings).
+		 * Unlimited by default.
+		 */
+		public Builder setMaximumDecodedLength(long maximumDecodedLength) {
+			if (maximumDecodedLength < 0) {
+				throw new IllegalArgumentException("`maximumDecodedLength' must not be negative");
+			}
+			this.maximumDecodedLength = maximumDecodedLength;
+			return this;
+		}
+		
+		/**
+		 * Rejects data URIs whose header (everything up to and including
+		 * the first `,') is longer, without searching the rest of the
+		 * URI for a `,'. Unlimited by default.
+		 */
+		public Builder setMaximumHeaderLength(int maximumHeaderLength) {
+			if (maximumHeaderLength < 0) {
+				throw new IllegalArgumentException("`maximumHeaderLength' must not be negative");
+			}
+			this.maximumHeaderLength = maximumHeaderLength;
+			return this;
+		}
+		
+		/**
+		 * Rejects data URIs with more `;' separated header segments
+		 * following the media type (including `base64' and content
+		 * encodings). Unlimited by default.
+		 */
+		public Builder setMaximumParameterCount(int maximumParameterCount) {
+			if (maximumParameterCount < 0) {
+				throw new IllegalArgumentException("`maximumParameterCount' must not be negative");
+			}
+			this.maximumParameterCount = maximumParameterCount;
+			return this;
+		}
+		
+		/**
+		 * Rejects data URIs with more percent escapes in the payload.
+		 * Unlimited by default.
+		 */
+		public Builder setMaximumEscapeCount(int maximumEscapeCount) {
+			if (maximumEscapeCount < 0) {
+				throw new IllegalArgumentException("`maximumEscapeCount' must not be negative");
+			}
+			this.maximumEscapeCount = maximumEscapeCount;
+			return this;
+		}
+		
+		public DataUriParser build() {
+			return new DataUriParser(this);
+		}
+		
+		private static String normalize(String name, String what) {
+			final String normalized = name.trim().toLowerCase(Locale.ROOT);
+			
+			if (normalized.isEmpty()) {
+				throw new IllegalArgumentException("Name of "+ what +" must not be empty");
+			}
+			return normalized;
+		}
+	}
+	
+	
+	
+	/**
+	 * Open addressing hash table of lowercase names, which can be queried
+	 * case-insensitively by character ranges without materializing them
+	 */
+	static final class NameTable {
+		
+		private final String[] names;
+		private final int mask;
+		private final boolean empty;
+		
+		
+		
+		NameTable(List<String> names) {
+			int capacity = 2;
+			
+			while (capacity < 2 * names.size()) {
+				capacity *= 2;
+			}
+			
+			this.names = new String[capacity];
+			this.mask = capacity - 1;
+			this.empty = names.isEmpty();
+			
+			for (String name : names) {
+				int slot = hash(name, 0, name.length()) & mask;
+				
+				while (null != this.names[slot]) {
+					slot = (slot + 1) & mask;
+				}
+				this.names[slot] = name;
+			}
+		}
+		
+		
+		
+		boolean isEmpty() {
+			return empty;
+		}
+		
+		/**
+		 * @return Slot of {@code s[start, end)} ignoring the case of
+		 *     US-ASCII letters or -1 if it is not contained
+		 */
+		int indexOf(CharSequence s, int start, int end) {
+			for (int slot = hash(s, start, end) & mask; null != names[slot]; slot = (slot + 1) & mask) {
+				if (HeaderScanner.equalsIgnoreCase(s, start, end, names[slot])) {
+					return slot;
+				}
+			}
+			return -1;
+		}
+		
+		String get(int slot) {
+			return names[slot];
+		}
+		
+		/**
+		 * @return {@link String#hashCode()} of {@code s[start, end)} with
+		 *     US-ASCII letters lowercased, spread over the low bits
+		 */
+		private static int hash(CharSequence s, int start, int end) {
+			int hash = 0;
+			
+			for (int i = start; i < end; ++i) {
+				final char c = s.charAt(i);
+				hash = 31 * hash + (((c >= 'A') && (c <= 'Z')) ? (c | 0x20) : c);
+			}
+			return hash ^ (hash >>> 16);
+		}
+	}
+	
+	
+	
+	/**
+	 * Upper bound of the initial buffer for payload with content encodings,
+	 * whose decoded length is unknown
+	 */
+	private static final int MAXIMUM_INITIAL_CAPACITY = 1024 * 1024;
+	
+	/**
+	 * Parser with the configuration {@link DataUri} uses
+	 */
+	static final DataUriParser DEFAULT = new Builder().build();
+	
+	private final Charset charset;
+	final boolean strict;
+	
+	/**
+	 * Content encodings indexed by the slot of their name in
+	 * {@link #encodingNames}
+	 */
+	final NameTable encodingNames;
+	final DataUriContentEncoding[] encodings;
+	
+	final NameTable parameterNames;
+	final boolean retainsAllParameters;
+	final boolean retainsParameters;
+	
+	/**
+	 * Limits checked while scanning, violations are reported like any
+	 * other malformed data URI
+	 */
+	final long maximumDecodedLength;
+	final int maximumHeaderLength;
+	final int maximumParameterCount;
+	final int maximumEscapeCount;
+	
+	
+	
+	private DataUriParser(Builder builder) {
+		this.charset = builder.charset;
+		this.strict = Mode.STRICT == builder.mode;
+		
+		this.encodingNames = new NameTable(new ArrayList<String>(builder.encodings.keySet()));
+		this.encodings = new DataUriContentEncoding[this.encodingNames.names.length];
+		
+		for (Map.Entry<String, DataUriContentEncoding> encoding : builder.encodings.entrySet()) {
+			this.encodings[this.encodingNames.indexOf(encoding.getKey(), 0, encoding.getKey().length())] = encoding.getValue();
+		}
+		
+		this.parameterNames = new NameTable(builder.parameters);
+		this.retainsAllParameters = builder.retainAllParameters;
+		this.retainsParameters = builder.retainAllParameters || !builder.parameters.isEmpty();
+		
+		this.maximumDecodedLength = builder.maximumDecodedLength;
+		this.maximumHeaderLength = builder.maximumHeaderLength;
+		this.maximumParameterCount = builder.maximumParameterCount;
+		this.maximumEscapeCount = builder.maximumEscapeCount;
+	}
+	
+	
+	
+	public Charset getCharset() {
+		return charset;
+	}
+	
+	public Mode getMode() {
+		return strict ? Mode.STRICT : Mode.LENIENT;
+	}
+	
+	
+	
+	/**
+	 * Parses a data URI described in RFC2397 according to the
+	 * configuration of this parser
+	 * 
+	 * @param uri Characters representing the data URI
+	 * 
+	 * @return Parsed data URI
+	 * @throws IllegalArgumentException iff an error occured during parse
+	 *     process
+	 */
+	public DataUri parse(CharSequence uri) {
+		return parse(uri, HeaderScanner.scan(uri, charset, this), charset);
+	}
+	
+	/**
+	 * Parses a data URI described in RFC2397 from the remaining octets of
+	 * a (possibly direct) buffer without copying them
+	 * 
+	 * @param uri Octets representing the data URI, neither position nor
+	 *     limit will be modified. The charset of this parser is the
+	 *     charset of the octets, octets outside of US-ASCII in the
+	 *     payload will be passed through unchanged
+	 * 
+	 * @return Parsed data URI
+	 * @throws IllegalArgumentException iff an error occured during parse
+	 *     process
+	 */
+	public DataUri parse(ByteBuffer uri) {
+		final AsciiSequence octets = new AsciiSequence(uri);
+		return parse(octets, HeaderScanner.scan(octets, charset, this), AsciiSequence.OCTETS);
+	}
+	
+	/**
+	 * Parses a data URI described in RFC2397 like
+	 * {@link #parse(CharSequence)} but reports malformed data URIs without
+	 * throwing an exception
+	 * 
+	 * @param uri Characters representing the data URI
+	 * 
+	 * @return Parsed data URI or the reason and position it is malformed
+	 */
+	public DataUriParseResult tryParse(CharSequence uri) {
+		return tryParse(uri, charset);
+	}
+	
+	DataUriParseResult tryParse(CharSequence uri, Charset charset) {
+		final HeaderScanner header = HeaderScanner.tryScan(uri, charset, this);
+		
+		if (null != header.error) {
+			return DataUriParseResult.failure(header.error, header.errorOffset);
+		}
+		
+		final int illegal = PercentDecoder.indexOfIllegalEscape(uri, header.comma + 1, uri.length());
+		
+		if (-1 != illegal) {
+			return DataUriParseResult.failure(DataUriError.ILLEGAL_PERCENT_ESCAPE, illegal);
+		}
+		
+		header.checkCharset();
+		
+		if (null == header.error) {
+			checkPayload(uri, header, charset);
+		}
+		
+		if (null != header.error) {
+			return DataUriParseResult.failure(header.error, header.errorOffset);
+		}
+		
+		final byte[] data;
+		
+		try {
+			data = decode(uri, header, charset);
+		} catch (IOException e) {
+			return DataUriParseResult.failure(DataUriError.ILLEGAL_CONTENT_ENCODING, header.comma + 1);
+		}
+		
+		if (null == data) {
+			return DataUriParseResult.failure(DataUriError.PAYLOAD_TOO_LARGE, header.comma + 1);
+		}
+		
+		return DataUriParseResult.success(new DataUri(
+			header.mime,
+			header.charset(),
+			header.filename,
+			header.contentDisposition,
+			header.parameters(),
+			data
+		));
+	}
+	
+	
+	
+	private DataUri parse(CharSequence uri, HeaderScanner header, Charset charset) {
+		final Charset mediaCharset = header.charset();
+		checkPayload(uri, header, charset);
+		
+		if (null != header.error) {
+			throw new IllegalArgumentException(header.error.message(header.errorOffset));
+		}
+		
+		final byte[] data;
+		
+		try {
+			data = decode(uri, header, charset);
+		} catch (IOException e) {
+			throw new IllegalArgumentException(DataUriError.ILLEGAL_CONTENT_ENCODING.message(header.comma + 1), e);
+		}
+		
+		if (null == data) {
+			throw new IllegalArgumentException(DataUriError.PAYLOAD_TOO_LARGE.message(header.comma + 1));
+		}
+		
+		return new DataUri(
+			header.mime,
+			mediaCharset,
+			header.filename,
+			header.contentDisposition,
+			header.parameters(),
+			data
+		);
+	}
+	
+	/**
+	 * Validates the payload according to strict mode and the configured
+	 * limits without decoding it, setting {@link HeaderScanner#error} on
+	 * the first violation
+	 * 
+	 * @throws IllegalArgumentException iff the payload contains an illegal
+	 *     percent escape
+	 */
+	private void checkPayload(CharSequence uri, HeaderScanner header, Charset charset) {
+		final int start = header.comma + 1;
+		
+		if (strict && header.base64) {
+			final int illegal = Base64Codec.indexOfIllegalSymbol(uri, start, uri.length());
+			
+			if (-1 != illegal) {
+				header.fail(DataUriError.ILLEGAL_BASE64, illegal);
+				return;
+			}
+		}
+		
+		if (Integer.MAX_VALUE != maximumEscapeCount) {
+			final int excess = PercentDecoder.indexOfExcessEscape(uri, start, uri.length(), maximumEscapeCount);
+			
+			if (-1 != excess) {
+				header.fail(DataUriError.TOO_MANY_ESCAPES, excess);
+				return;
+			}
+		}
+		
+		/* The exact decoded length requires a pass over the payload,
+		 * which is only necessary if a cheap upper bound exceeds the
+		 * limit. The length of payload with additional content
+		 * encodings is only known while decoding it.
+		 */
+		if ((0 == header.encodingCount) && (maximumDecodedLength < maximumDecodedLength(uri.length() - start, header.base64, charset))) {
+			if (maximumDecodedLength < EncodedPayload.decodedLength(uri, start, uri.length(), header.base64, charset)) {
+				header.fail(DataUriError.PAYLOAD_TOO_LARGE, start);
+			}
+		}
+	}
+	
+	/**
+	 * @return Upper bound of the number of octets {@code symbols}
+	 *     characters of payload will be decoded to
+	 */
+	private static long maximumDecodedLength(int symbols, boolean base64, Charset charset) {
+		if (base64) {
+			return EncodedPayload.base64Length(symbols);
+		}
+		if (AsciiSequence.OCTETS == charset) {
+			return symbols;
+		}
+		
+		/* Decode-only charsets (like ISO-2022-CN) provide no encoder,
+		 * thus no bound is known and the exact length will be calculated
+		 */
+		if (!charset.canEncode()) {
+			return Long.MAX_VALUE;
+		}
+		return symbols * (long)Math.ceil(charset.newEncoder().maxBytesPerChar());
+	}
+	
+	/**
+	 * Decodes the payload and reverts the additional content encodings in
+	 * reverse order of appearance. Content encodings are reverted while
+	 * the payload is being decoded, without materializing the encoded
+	 * payload.
+	 * 
+	 * @return Decoded payload or null if it exceeds the maximum decoded
+	 *     length
+	 * @throws IOException iff the payload cannot be decoded
+	 */
+	private byte[] decode(CharSequence uri, HeaderScanner header, Charset charset) throws IOException {
+		if (0 == header.encodingCount) {
+			return EncodedPayload.decode(uri, header.comma + 1, uri.length(), header.base64, charset);
+		}
+		
+		InputStream in = Channels.newInputStream(new PayloadChannel(uri, header.comma + 1, uri.length(), header.base64, charset));
+		
+		for (int i = header.encodingCount - 1; i >= 0; --i) {
+			in = header.encodings[i].decode(in);
+		}
+		
+		/* Compressed payload usually expands, thus start with a
+		 * multiple of the encoded length
+		 */
+		byte[] decoded = new byte[(int)Math.min(Math.min(MAXIMUM_INITIAL_CAPACITY, Math.min(maximumDecodedLength, Integer.MAX_VALUE) + 1), Math.max(64L, 4L * (uri.length() - header.comma)))];
+		int length = 0;
+		
+		try {
+			for (int read = in.read(decoded, 0, decoded.length); -1 != read; read = in.read(decoded, length, decoded.length - length)) {
+				length += read;
+				
+				/* Decompression bombs are detected as soon as they
+				 * exceed the limit
+				 */
+				if (length > maximumDecodedLength) {
+					return null;
+				}
+				if (decoded.length == length) {
+					decoded = Arrays.copyOf(decoded, grow(decoded.length));
+				}
+			}
+		} finally {
+			in.close();
+		}
+		return (decoded.length == length) ? decoded : Arrays.copyOf(decoded, length);
+	}
+	
+	private static int grow(int capacity) {
+		if (Integer.MAX_VALUE - 8 == capacity) {
+			throw new OutOfMemoryError("Decoded payload too large for an array");
+		}
+		return (int)Math.min(Integer.MAX_VALUE - 8, 2L * capacity);
+	}
+}
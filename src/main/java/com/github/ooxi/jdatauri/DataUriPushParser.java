@@ -0,0 +1,377 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Resumable data URI parser which is fed with chunks of octets as they
+ * arrive and never blocks.
+ * 
+ * Chunks may be split at arbitrary positions, including in the middle of a
+ * percent escape or a base64 quantum. The header is reported as soon as the
+ * `,' terminating it has been fed, the decoded payload is handed to the
+ * {@link Handler} chunk by chunk without buffering the whole URI.
+ * 
+ * Instances are not thread safe and can only parse a single data URI.
+ * 
+ * @author ooxi
+ */
+public class DataUriPushParser {
+	
+	/**
+	 * Receives the parse results
+	 */
+	public interface Handler {
+		
+		/**
+		 * Called once the header has been parsed, the decoded length
+		 * will always be {@link DataUriHeader#UNKNOWN_LENGTH}
+		 */
+		void header(DataUriHeader header);
+		
+		/**
+		 * Called for every chunk of decoded payload
+		 * 
+		 * @param data Read-only view of the decoded payload, only valid
+		 *     during this call
+		 */
+		void data(ByteBuffer data);
+		
+		/**
+		 * Called once after the whole data URI has been parsed
+		 */
+		void end();
+	}
+	
+	
+	
+	private static enum State {
+		HEADER,
+		PAYLOAD,
+		ESCAPE_HIGH,
+		ESCAPE_LOW,
+		FINISHED,
+		FAILED
+	}
+	
+	private static final int BUFFER_SIZE = 8192;
+	
+	private final Charset charset;
+	private final DataUriParser parser;
+	private final Handler handler;
+	
+	private State state = State.HEADER;
+	
+	/**
+	 * Number of octets fed so far
+	 */
+	private long position = 0;
+	
+	private byte[] header = new byte[64];
+	private int headerLength = 0;
+	
+	private final byte[] decoded = new byte[BUFFER_SIZE];
+	private int decodedLength = 0;
+	private int escape;
+	
+	/**
+	 * Position of the first payload octet, number of percent escapes and
+	 * number of octets handed to {@link #handler}, checked against the
+	 * limits of {@link #parser}
+	 */
+	private long payloadOffset;
+	private int escapes = 0;
+	private long forwarded = 0;
+	
+	/**
+	 * Receives percent-decoded payload and forwards it to
+	 * {@link #handler}, after base64-decoding it if necessary
+	 */
+	private OutputStream payload;
+	
+	
+	
+	/**
+	 * @param charset Charset of the data URI's octets which will also be
+	 *     used when decoding percent encoded options like filename
+	 * @param handler Receives the parse results
+	 */
+	public DataUriPushParser(Charset charset, Handler handler) {
+		this(charset, DataUriParser.DEFAULT, handler);
+	}
+	
+	/**
+	 * Parses according to the configuration of {@code parser}, including
+	 * its limits. Additional content encodings (like
+	 * {@link DataUriCompression#GZIP}) are reported by the header but not
+	 * reverted, the handler receives the payload as it has been
+	 * transmitted.
+	 * 
+	 * Since the maximum decoded length could only bound the still
+	 * compressed payload, data URIs with additional content encodings are
+	 * rejected with {@link DataUriError#ILLEGAL_CONTENT_ENCODING} if
+	 * {@code parser} limits the decoded length.
+	 * 
+	 * @param parser Configures the charset of the data URI's octets,
+	 *     recognized parameters and content encodings as well as limits
+	 * @param handler Receives the parse results
+	 */
+	public DataUriPushParser(DataUriParser parser, Handler handler) {
+		this((null == parser) ? null : parser.getCharset(), parser, handler);
+	}
+	
+	private DataUriPushParser(Charset charset, DataUriParser parser, Handler handler) {
+		this.charset = charset;
+		this.parser = parser;
+		this.handler = handler;
+		
+		if (null == parser) {
+			throw new NullPointerException("`parser' must not be null");
+		}
+		if (null == charset) {
+			throw new NullPointerException("`charset' must not be null");
+		}
+		if (null == handler) {
+			throw new NullPointerException("`handler' must not be null");
+		}
+	}
+	
+	
+	
+	/**
+	 * Consumes all remaining octets of {@code chunk}
+	 * 
+	 * @throws IllegalArgumentException iff the data URI is malformed, the
+	 *     parser cannot be used afterwards
+	 * @throws IllegalStateException iff the parser has already finished or
+	 *     failed
+	 */
+	public void feed(ByteBuffer chunk) {
+		ensureRunning();
+		
+		try {
+			while (chunk.hasRemaining()) {
+				if (State.HEADER == state) {
+					feedHeader(chunk);
+				} else {
+					feedPayload(chunk);
+				}
+			}
+			flush();
+		} catch (RuntimeException e) {
+			state = State.FAILED;
+			throw e;
+		}
+	}
+	
+	/**
+	 * Signals the end of the data URI
+	 * 
+	 * @throws IllegalArgumentException iff the data URI is malformed or
+	 *     truncated
+	 * @throws IllegalStateException iff the parser has already finished or
+	 *     failed
+	 */
+	public void finish() {
+		ensureRunning();
+		
+		try {
+			if (State.HEADER == state) {
+				HeaderScanner.scan(new String(header, 0, headerLength, charset), charset, parser);
+			}
+			if (State.PAYLOAD != state) {
+				throw new IllegalArgumentException("Incomplete percent escape at position "+ position);
+			}
+			
+			flush();
+			payload.close();
+			state = State.FINISHED;
+		} catch (IOException e) {
+			state = State.FAILED;
+			throw new IllegalStateException(e);
+		} catch (RuntimeException e) {
+			state = State.FAILED;
+			throw e;
+		}
+		
+		handler.end();
+	}
+	
+	/**
+	 * @return true iff the header has been parsed
+	 */
+	public boolean isHeaderComplete() {
+		return null != payload;
+	}
+	
+	
+	
+	private void ensureRunning() {
+		if (State.FINISHED == state) {
+			throw new IllegalStateException("Parser has already finished");
+		}
+		if (State.FAILED == state) {
+			throw new IllegalStateException("Parser has already failed");
+		}
+	}
+	
+	/**
+	 * Accumulates header octets up to and including the first `,' but
+	 * never more than the maximum header length
+	 */
+	private void feedHeader(ByteBuffer chunk) {
+		while (chunk.hasRemaining()) {
+			final byte octet = chunk.get();
+			++position;
+			
+			if (headerLength == header.length) {
+				header = Arrays.copyOf(header, 2 * header.length);
+			}
+			header[headerLength++] = octet;
+			
+			if ((',' != octet) && (parser.maximumHeaderLength == headerLength)) {
+				throw new IllegalArgumentException(DataUriError.HEADER_TOO_LONG.message(parser.maximumHeaderLength));
+			}
+			
+			if ((DataUri.DATA_SCHEME.length() == headerLength) || (',' == octet)) {
+				final String s = new String(header, 0, headerLength, charset);
+				
+				if (',' == octet) {
+					final HeaderScanner scanner = HeaderScanner.scan(s, charset, parser);
+					
+					if ((0 != scanner.encodingCount) && (Long.MAX_VALUE != parser.maximumDecodedLength)) {
+						throw new IllegalArgumentException(DataUriError.ILLEGAL_CONTENT_ENCODING.message(position));
+					}
+					final OutputStream forward = new ForwardingOutputStream();
+					
+					payload = scanner.base64 ? new Base64DecodingOutputStream(forward) : forward;
+					payloadOffset = position;
+					state = State.PAYLOAD;
+					header = null;
+					
+					handler.header(scanner.toHeader(DataUriHeader.UNKNOWN_LENGTH));
+					return;
+				}
+				if (!HeaderScanner.equalsIgnoreCase(s, 0, s.length(), DataUri.DATA_SCHEME)) {
+					throw new IllegalArgumentException("URI must start with a case-insensitive `data:'");
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Percent-decodes payload octets into {@link #decoded}
+	 */
+	private void feedPayload(ByteBuffer chunk) {
+		while (chunk.hasRemaining()) {
+			final byte octet = chunk.get();
+			
+			switch (state) {
+				case PAYLOAD:
+					if ('%' == octet) {
+						if (++escapes > parser.maximumEscapeCount) {
+							throw new IllegalArgumentException(DataUriError.TOO_MANY_ESCAPES.message(position));
+						}
+						state = State.ESCAPE_HIGH;
+					} else {
+						emit(octet);
+					}
+					break;
+					
+				case ESCAPE_HIGH:
+					escape = PercentDecoder.hex(octet);
+					
+					if (escape < 0) {
+						throw new IllegalArgumentException("Illegal percent escape at position "+ (position - 1));
+					}
+					state = State.ESCAPE_LOW;
+					break;
+					
+				case ESCAPE_LOW:
+					final int low = PercentDecoder.hex(octet);
+					
+					if (low < 0) {
+						throw new IllegalArgumentException("Illegal percent escape at position "+ (position - 2));
+					}
+					emit((byte)((escape << 4) | low));
+					state = State.PAYLOAD;
+					break;
+					
+				default:
+					throw new IllegalStateException("Unexpected state "+ state);
+			}
+			++position;
+		}
+	}
+	
+	private void emit(byte octet) {
+		if (decoded.length == decodedLength) {
+			flush();
+		}
+		decoded[decodedLength++] = octet;
+	}
+	
+	private void flush() {
+		if ((0 == decodedLength) || (null == payload)) {
+			return;
+		}
+		
+		try {
+			payload.write(decoded, 0, decodedLength);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		decodedLength = 0;
+	}
+	
+	
+	
+	/**
+	 * Hands everything written to {@link #handler} unless the maximum
+	 * decoded length would be exceeded
+	 */
+	private class ForwardingOutputStream extends OutputStream {
+		
+		@Override
+		public void write(int b) {
+			write(new byte[] {(byte)b}, 0, 1);
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) {
+			if (len > 0) {
+				forwarded += len;
+				
+				if (forwarded > parser.maximumDecodedLength) {
+					throw new IllegalArgumentException(DataUriError.PAYLOAD_TOO_LARGE.message(payloadOffset));
+				}
+				handler.data(ByteBuffer.wrap(b, off, len).asReadOnlyBuffer());
+			}
+		}
+	}
+}
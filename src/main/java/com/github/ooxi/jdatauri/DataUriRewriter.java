@@ -0,0 +1,359 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Copies a document (HTML, CSS, JSON, ...) while replacing every embedded
+ * data URI by a text returned from a {@link Handler}, usually a link to an
+ * external resource the payload has been written to.
+ * 
+ * Data URIs are recognized in the same contexts as by
+ * {@link DataUriScanner}. Their payload is decoded on the fly while the
+ * handler reads it, thus documents and data URIs of arbitrary size are
+ * rewritten in constant memory. Data URIs with a malformed header (or a
+ * header longer than {@value #MAXIMUM_HEADER_LENGTH} characters) are copied
+ * unchanged.
+ *
+ * @author ooxi
+ */
+public class DataUriRewriter {
+	
+	/**
+	 * Maximum number of characters read while parsing a data URI header,
+	 * which are retained for copying the data URI if its header turns out
+	 * to be malformed
+	 */
+	public static final int MAXIMUM_HEADER_LENGTH = 64 * 1024;
+	
+	private static final int BUFFER_SIZE = 8 * 1024;
+	
+	
+	
+	/**
+	 * Decides how a data URI will be replaced
+	 */
+	public static interface Handler {
+		
+		/**
+		 * @param header Metadata of the data URI, its decoded length is
+		 *     unknown
+		 * @param payload Decoded payload, which does not have to be read
+		 *     completely. It is only valid during this call.
+		 * 
+		 * @return Text written instead of the data URI, must not be null
+		 * @throws IOException iff the payload cannot be processed, which
+		 *     aborts rewriting
+		 */
+		String replace(DataUriHeader header, InputStream payload) throws IOException;
+	}
+	
+	
+	
+	private final Charset charset;
+	private final Handler handler;
+	
+	
+	
+	/**
+	 * @param charset Charset to use when decoding percent encoded options
+	 *     like filename as well as literal characters outside of US-ASCII
+	 *     in the payload
+	 * @param handler Decides how data URIs will be replaced
+	 */
+	public DataUriRewriter(Charset charset, Handler handler) {
+		this.charset = charset;
+		this.handler = handler;
+		
+		if (null == handler) {
+			throw new NullPointerException("`handler' must not be null");
+		}
+	}
+	
+	
+	
+	/**
+	 * Copies {@code in} to {@code out} replacing all data URIs, neither
+	 * stream will be closed
+	 * 
+	 * @return Number of replaced data URIs
+	 * @throws IOException iff reading or writing fails, the handler fails
+	 *     or a payload contains an illegal percent escape
+	 */
+	public long rewrite(Reader in, Writer out) throws IOException {
+		return new Rewrite(in, out).run();
+	}
+	
+	
+	
+	/**
+	 * State of a single {@link #rewrite(Reader, Writer)} call
+	 */
+	private final class Rewrite {
+		
+		private final Reader in;
+		private final Writer out;
+		
+		/**
+		 * {@code buffer[position, limit)} has been read but not yet
+		 * processed
+		 */
+		private final char[] buffer = new char[BUFFER_SIZE];
+		private int position = 0;
+		private int limit = 0;
+		private boolean eof = false;
+		
+		/**
+		 * Context of the next character: the last character copied and
+		 * the last one which was not white-space, followed by
+		 * {@code whitespace} white-space characters
+		 */
+		private char previous = 0;
+		private char previousNonWhitespace = 0;
+		private int whitespace = 0;
+		
+		Rewrite(Reader in, Writer out) {
+			this.in = in;
+			this.out = out;
+		}
+		
+		
+		
+		long run() throws IOException {
+			long replaced = 0;
+			
+			while (available(1)) {
+				int run = position;
+				
+				/* Copy characters until a data URI might start
+				 */
+				while (position < limit) {
+					final char c = buffer[position];
+					
+					if ((('d' == c) || ('D' == c)) && (0 != opener())) {
+						break;
+					}
+					advance(c);
+					++position;
+				}
+				out.write(buffer, run, position - run);
+				
+				if ((position < limit) && available(DataUri.DATA_SCHEME.length()) && isScheme()) {
+					if (replace()) {
+						++replaced;
+					}
+				} else if (position < limit) {
+					advance(buffer[position]);
+					out.write(buffer[position++]);
+				}
+			}
+			
+			out.flush();
+			return replaced;
+		}
+		
+		
+		
+		/**
+		 * Replaces the data URI starting at {@link #position} or copies
+		 * the characters consumed while trying to read its header
+		 * 
+		 * @return true iff the data URI has been replaced
+		 */
+		private boolean replace() throws IOException {
+			final UriReader uri = new UriReader(opener());
+			final DataUriInputStream payload;
+			
+			try {
+				payload = new DataUriInputStream(uri, charset);
+			} catch (IllegalArgumentException e) {
+				final String consumed = uri.stopRecording();
+				
+				for (int i = 0; i < consumed.length(); ++i) {
+					advance(consumed.charAt(i));
+				}
+				out.write(consumed);
+				return false;
+			}
+			uri.stopRecording();
+			
+			final String replacement = handler.replace(new DataUriHeader(
+				payload.getMime(),
+				payload.getCharset(),
+				payload.getFilename(),
+				payload.getContentDisposition(),
+				payload.getContentEncoding(),
+				DataUriHeader.UNKNOWN_LENGTH
+			), payload);
+			
+			if (null == replacement) {
+				throw new NullPointerException("Replacement must not be null");
+			}
+			
+			uri.skipRemaining();
+			out.write(replacement);
+			previous = 0;
+			previousNonWhitespace = 0;
+			whitespace = 0;
+			return true;
+		}
+		
+		/**
+		 * @return Character introducing a data URI at {@link #position}
+		 *     or 0 if no data URI may start there
+		 */
+		private char opener() {
+			if (('"' == previous) || ('\'' == previous)) {
+				return previous;
+			}
+			if ((whitespace < DataUriScanner.LOOKBEHIND) && (('(' == previousNonWhitespace) || ('=' == previousNonWhitespace))) {
+				return previousNonWhitespace;
+			}
+			return 0;
+		}
+		
+		private void advance(char c) {
+			previous = c;
+			
+			if (DataUriScanner.isWhitespace(c)) {
+				++whitespace;
+			} else {
+				previousNonWhitespace = c;
+				whitespace = 0;
+			}
+		}
+		
+		private boolean isScheme() {
+			for (int k = 0; k < DataUri.DATA_SCHEME.length(); ++k) {
+				final char c = buffer[position + k];
+				
+				if (DataUri.DATA_SCHEME.charAt(k) != (((c >= 'A') && (c <= 'Z')) ? (char)(c | 0x20) : c)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		/**
+		 * Makes at least {@code n} unprocessed characters available,
+		 * moving them to the beginning of {@link #buffer} if necessary
+		 * 
+		 * @return false iff the end of the document has been reached
+		 *     before
+		 */
+		private boolean available(int n) throws IOException {
+			if (limit - position >= n) {
+				return true;
+			}
+			
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			position = 0;
+			
+			while (!eof && (limit < n)) {
+				final int read = in.read(buffer, limit, buffer.length - limit);
+				
+				if (-1 == read) {
+					eof = true;
+				} else {
+					limit += read;
+				}
+			}
+			return limit >= n;
+		}
+		
+		
+		
+		/**
+		 * Presents the characters of the data URI starting at
+		 * {@link #position}, ending before its terminator
+		 */
+		private final class UriReader extends Reader {
+			
+			private final char opener;
+			private StringBuilder recorded = new StringBuilder();
+			private boolean terminated = false;
+			
+			UriReader(char opener) {
+				this.opener = opener;
+			}
+			
+			/**
+			 * @return Characters consumed so far, which will not be
+			 *     recorded any longer
+			 */
+			String stopRecording() {
+				final String consumed = recorded.toString();
+				recorded = null;
+				return consumed;
+			}
+			
+			void skipRemaining() throws IOException {
+				final char[] skipped = new char[BUFFER_SIZE];
+				
+				while (-1 != read(skipped, 0, skipped.length)) {
+				}
+			}
+			
+			@Override
+			public int read(char[] cbuf, int off, int len) throws IOException {
+				if (null != recorded) {
+					len = Math.min(len, MAXIMUM_HEADER_LENGTH - recorded.length());
+				}
+				if (terminated || (len <= 0) || !available(1)) {
+					return -1;
+				}
+				
+				int read = 0;
+				
+				while ((read < len) && (position < limit)) {
+					final char c = buffer[position];
+					
+					if (DataUriScanner.isTerminator(opener, c)) {
+						terminated = true;
+						break;
+					}
+					cbuf[off + read++] = c;
+					++position;
+				}
+				
+				if (0 == read) {
+					return -1;
+				}
+				if (null != recorded) {
+					recorded.append(cbuf, off, read);
+				}
+				return read;
+			}
+			
+			@Override
+			public void close() {
+			}
+		}
+	}
+}
@@ -0,0 +1,421 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Finds data URIs embedded in HTML, CSS and JSON documents, similar to
+ * {@link java.util.regex.Matcher#find()}
+ * 
+ * A data URI is recognized if it directly follows a quote (HTML attribute
+ * values, CSS strings, JSON strings), or if it follows a `(' or `=' after
+ * optional white-space (unquoted CSS {@code url(...)} respectively HTML
+ * attribute values). It ends at the matching quote, respectively at the
+ * next white-space, `)' or `>'. Since `<', `>' and line breaks must be
+ * percent encoded in URIs, quoted data URIs end at them as well, thus an
+ * unterminated quote does not swallow the rest of the document. Escape
+ * sequences of the surrounding document (like {@code \/} in JSON) are not
+ * resolved.
+ * 
+ * Matches are only reported by their position, parsing them is left to the
+ * caller. Documents read from a {@link Reader} are scanned using a sliding
+ * window, thus memory usage is bounded by the longest data URI. Data URIs
+ * longer than a configurable maximum are skipped regardless of how the
+ * document is provided.
+ *
+ * @author ooxi
+ */
+public class DataUriScanner {
+	
+	/**
+	 * Default maximum number of characters of data URIs
+	 */
+	public static final int DEFAULT_MAXIMUM_LENGTH = 16 * 1024 * 1024;
+	
+	/**
+	 * Number of characters preceding the current position which are always
+	 * retained for recognizing the context of a data URI
+	 */
+	static final int LOOKBEHIND = 16;
+	
+	private static final int BUFFER_SIZE = 8 * 1024;
+	
+	/**
+	 * Either the whole document ({@link #text}, optionally backed by
+	 * {@link #octets}) or a window of a document read from {@link #reader}
+	 * is available
+	 */
+	private final CharSequence text;
+	private final ByteBuffer octets;
+	private final Reader reader;
+	private final int maximumLength;
+	
+	/**
+	 * {@code buffer[0, limit)} contains the characters at document
+	 * position {@code [base, base + limit)}
+	 */
+	private char[] buffer;
+	private int limit = 0;
+	private long base = 0;
+	private boolean eof = false;
+	
+	/**
+	 * Document position at which the next search starts
+	 */
+	private long position = 0;
+	
+	private long matchStart = -1;
+	private long matchEnd = -1;
+	
+	
+	
+	/**
+	 * Scans a document available as characters, skipping data URIs longer
+	 * than {@link #DEFAULT_MAXIMUM_LENGTH}
+	 */
+	public DataUriScanner(CharSequence text) {
+		this(text, DEFAULT_MAXIMUM_LENGTH);
+	}
+	
+	/**
+	 * Scans a document available as characters
+	 * 
+	 * @param maximumLength Data URIs with more characters will be
+	 *     skipped
+	 */
+	public DataUriScanner(CharSequence text, int maximumLength) {
+		this(text, null, null, maximumLength);
+	}
+	
+	/**
+	 * Scans a document available as (possibly direct or memory mapped)
+	 * octets of an US-ASCII compatible charset like UTF-8, skipping data
+	 * URIs longer than {@link #DEFAULT_MAXIMUM_LENGTH}
+	 * 
+	 * @see #DataUriScanner(ByteBuffer, int)
+	 */
+	public DataUriScanner(ByteBuffer octets) {
+		this(octets, DEFAULT_MAXIMUM_LENGTH);
+	}
+	
+	/**
+	 * Scans a document available as (possibly direct or memory mapped)
+	 * octets of an US-ASCII compatible charset like UTF-8, positions refer
+	 * to octets relative to the position of {@code octets}
+	 * 
+	 * @param octets Neither position nor limit will be modified
+	 * @param maximumLength Data URIs with more octets will be skipped
+	 */
+	public DataUriScanner(ByteBuffer octets, int maximumLength) {
+		this(new AsciiSequence(octets), octets, null, maximumLength);
+	}
+	
+	/**
+	 * Scans a document read from {@code reader}, skipping data URIs longer
+	 * than {@link #DEFAULT_MAXIMUM_LENGTH}
+	 */
+	public DataUriScanner(Reader reader) {
+		this(reader, DEFAULT_MAXIMUM_LENGTH);
+	}
+	
+	/**
+	 * Scans a document read from {@code reader}
+	 * 
+	 * @param maximumLength Data URIs with more characters will be
+	 *     skipped, bounding the memory required
+	 */
+	public DataUriScanner(Reader reader, int maximumLength) {
+		this(null, null, reader, maximumLength);
+		
+		if (null == reader) {
+			throw new NullPointerException("`reader' must not be null");
+		}
+	}
+	
+	private DataUriScanner(CharSequence text, ByteBuffer octets, Reader reader, int maximumLength) {
+		this.text = text;
+		this.octets = octets;
+		this.reader = reader;
+		this.maximumLength = maximumLength;
+		this.buffer = (null == reader) ? null : new char[BUFFER_SIZE];
+		
+		if ((null == reader) && (null == text)) {
+			throw new NullPointerException("`text' must not be null");
+		}
+		if (maximumLength < DataUri.DATA_SCHEME.length()) {
+			throw new IllegalArgumentException("`maximumLength' must not be less than "+ DataUri.DATA_SCHEME.length());
+		}
+	}
+	
+	
+	
+	/**
+	 * Searches for the next data URI
+	 * 
+	 * @return true iff a data URI has been found, its position is available
+	 *     through {@link #start()} and {@link #end()}
+	 * @throws IOException iff reading the document fails
+	 */
+	public boolean find() throws IOException {
+		long i = position;
+		
+		while (true) {
+			
+			/* Search for "data:" in a context a data URI may appear
+			 */
+			while (i + DataUri.DATA_SCHEME.length() > available()) {
+				if (!fill(i)) {
+					position = available();
+					matchStart = -1;
+					matchEnd = -1;
+					return false;
+				}
+			}
+			
+			if (!isScheme(i)) {
+				++i;
+				continue;
+			}
+			
+			final char opener = opener(i);
+			
+			if (0 == opener) {
+				++i;
+				continue;
+			}
+			
+			/* Search for the end of the data URI, which does not have
+			 * to be retained if it turns out to be too long
+			 */
+			long j = i + DataUri.DATA_SCHEME.length();
+			boolean skip = false;
+			
+			while (true) {
+				if ((j >= available()) && !fill(skip ? j : i)) {
+					break;
+				}
+				if (isTerminator(opener, at(j))) {
+					break;
+				}
+				
+				++j;
+				skip = skip || (j - i > maximumLength);
+			}
+			
+			if (skip) {
+				i = j;
+				continue;
+			}
+			
+			matchStart = i;
+			matchEnd = j;
+			position = j;
+			return true;
+		}
+	}
+	
+	
+	
+	/**
+	 * @return Position of the first character of the data URI found by
+	 *     {@link #find()}
+	 */
+	public long start() {
+		checkMatch();
+		return matchStart;
+	}
+	
+	/**
+	 * @return Position after the last character of the data URI found by
+	 *     {@link #find()}
+	 */
+	public long end() {
+		checkMatch();
+		return matchEnd;
+	}
+	
+	/**
+	 * @return Characters of the data URI found by {@link #find()} without
+	 *     copying them. Characters read from a {@link Reader} are only
+	 *     valid until the next call of {@link #find()}.
+	 */
+	public CharSequence uri() {
+		checkMatch();
+		
+		if (null != reader) {
+			return CharBuffer.wrap(buffer, (int)(matchStart - base), (int)(matchEnd - matchStart));
+		}
+		if (null != octets) {
+			return text.subSequence((int)matchStart, (int)matchEnd);
+		}
+		return CharBuffer.wrap(text, (int)matchStart, (int)matchEnd);
+	}
+	
+	/**
+	 * Parses the data URI found by {@link #find()}
+	 * 
+	 * @param charset Charset to use when decoding percent encoded options
+	 *     like filename
+	 * 
+	 * @see DataUri#parse(CharSequence, Charset)
+	 */
+	public DataUri parse(Charset charset) {
+		if (null != octets) {
+			checkMatch();
+			
+			final ByteBuffer slice = octets.duplicate();
+			slice.limit(octets.position() + (int)matchEnd).position(octets.position() + (int)matchStart);
+			return DataUri.parse(slice, charset);
+		}
+		return DataUri.parse(uri(), charset);
+	}
+	
+	/**
+	 * Parses the data URI found by {@link #find()} without throwing an
+	 * exception if it is malformed
+	 * 
+	 * @see DataUri#tryParse(CharSequence, Charset)
+	 */
+	public DataUriParseResult tryParse(Charset charset) {
+		return DataUri.tryParse(uri(), charset);
+	}
+	
+	
+	
+	private void checkMatch() {
+		if (-1 == matchStart) {
+			throw new IllegalStateException("No data URI found");
+		}
+	}
+	
+	/**
+	 * @return Document position after the last available character
+	 */
+	private long available() {
+		return (null == reader) ? text.length() : base + limit;
+	}
+	
+	private char at(long i) {
+		return (null == reader) ? text.charAt((int)i) : buffer[(int)(i - base)];
+	}
+	
+	/**
+	 * Reads more characters from {@link #reader}, discarding characters
+	 * before {@code keep} (except for {@link #LOOKBEHIND} characters)
+	 * 
+	 * @return false iff the end of the document has been reached
+	 */
+	private boolean fill(long keep) throws IOException {
+		if ((null == reader) || eof) {
+			return false;
+		}
+		
+		final int discard = (int)Math.max(0, keep - LOOKBEHIND - base);
+		
+		if (discard > 0) {
+			System.arraycopy(buffer, discard, buffer, 0, limit - discard);
+			limit -= discard;
+			base += discard;
+		}
+		if (limit == buffer.length) {
+			buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+		}
+		
+		final int read = reader.read(buffer, limit, buffer.length - limit);
+		
+		if (-1 == read) {
+			eof = true;
+			return false;
+		}
+		limit += read;
+		return true;
+	}
+	
+	/**
+	 * @return true iff a case-insensitive "data:" starts at {@code i}
+	 */
+	private boolean isScheme(long i) {
+		for (int k = 0; k < DataUri.DATA_SCHEME.length(); ++k) {
+			final char c = at(i + k);
+			
+			if (DataUri.DATA_SCHEME.charAt(k) != (((c >= 'A') && (c <= 'Z')) ? (char)(c | 0x20) : c)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @return Character introducing the data URI starting at {@code i} or
+	 *     0 if the data URI does not appear in a recognized context
+	 */
+	private char opener(long i) {
+		final long first = (null == reader) ? 0 : Math.max(base, i - LOOKBEHIND);
+		long k = i - 1;
+		
+		if (k < first) {
+			return 0;
+		}
+		
+		final char quote = at(k);
+		
+		if (('"' == quote) || ('\'' == quote)) {
+			return quote;
+		}
+		
+		while ((k > first) && isWhitespace(at(k))) {
+			--k;
+		}
+		
+		final char c = at(k);
+		return (('(' == c) || ('=' == c)) ? c : 0;
+	}
+	
+	/**
+	 * @param opener Character introducing the data URI
+	 * 
+	 * @return true iff {@code c} ends a data URI introduced by
+	 *     {@code opener}
+	 */
+	static boolean isTerminator(char opener, char c) {
+		switch (opener) {
+			case '"':
+			case '\'':
+				return (opener == c) || ('<' == c) || ('>' == c) || ('\n' == c) || ('\r' == c);
+			case '(':
+				return (')' == c) || isWhitespace(c);
+			default:
+				return ('>' == c) || isWhitespace(c);
+		}
+	}
+	
+	static boolean isWhitespace(char c) {
+		return (' ' == c) || ('\t' == c) || ('\n' == c) || ('\r' == c) || ('\f' == c);
+	}
+}
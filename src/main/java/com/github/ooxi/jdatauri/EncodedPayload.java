@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The still encoded payload region of a data URI, which will be decoded on
+ * demand
+ * 
+ * @author ooxi
+ */
+final class EncodedPayload {
+	
+	private final CharSequence source;
+	private final int start;
+	private final int end;
+	private final boolean base64;
+	private final Charset charset;
+	
+	
+	
+	/**
+	 * @param source Data URI containing the payload, must not be modified
+	 *     afterwards
+	 * @param start Position of the first payload character (after the
+	 *     `,')
+	 * @param end Position after the last payload character
+	 * @param base64 Iff true the payload is base64 encoded
+	 * @param charset Charset to use when decoding literal characters
+	 *     outside of US-ASCII
+	 */
+	EncodedPayload(CharSequence source, int start, int end, boolean base64, Charset charset) {
+		this.source = source;
+		this.start = start;
+		this.end = end;
+		this.base64 = base64;
+		this.charset = charset;
+	}
+	
+	
+	
+	byte[] decode() {
+		return decode(source, start, end, base64, charset);
+	}
+	
+	
+	
+	/**
+	 * Calculates the exact length of the decoded payload
+	 * {@code source[start, end)} without decoding it.
+	 * 
+	 * Base64 decoding ignores all octets outside of the base64 alphabet
+	 * and stops at the first padding character, thus the length is
+	 * derived from the number of alphabet symbols before the padding.
+	 * 
+	 * @throws IllegalArgumentException iff the payload contains an illegal
+	 *     percent escape
+	 */
+	static int decodedLength(CharSequence source, int start, int end, boolean base64, Charset charset) {
+		if (!base64) {
+			return PercentDecoder.decodedLength(source, start, end, charset);
+		}
+		
+		int symbols = 0;
+		boolean padded = false;
+		
+		for (int i = start; i < end; ++i) {
+			int octet = source.charAt(i);
+			
+			if ('%' == octet) {
+				octet = PercentDecoder.escape(source, i, end);
+				i += 2;
+			}
+			
+			/* Literal characters outside of US-ASCII are never part
+			 * of the base64 alphabet
+			 */
+			if (padded || (octet >= 0x80)) {
+				continue;
+			}
+			if ('=' == octet) {
+				padded = true;
+			} else if (Base64Codec.DECODE_TABLE[octet] >= 0) {
+				++symbols;
+			}
+		}
+		
+		return base64Length(symbols);
+	}
+	
+	/**
+	 * @return Number of octets {@code symbols} base64 symbols decode to,
+	 *     a single trailing symbol does not carry a whole octet and is
+	 *     discarded
+	 */
+	static int base64Length(int symbols) {
+		final int remainder = symbols % 4;
+		return 3 * (symbols / 4) + ((remainder > 1) ? remainder - 1 : 0);
+	}
+	
+	
+	
+	/**
+	 * Decodes the payload {@code source[start, end)}
+	 * 
+	 * @throws IllegalArgumentException iff the payload contains an illegal
+	 *     percent escape
+	 */
+	static byte[] decode(CharSequence source, int start, int end, boolean base64, Charset charset) {
+		if (!base64) {
+			return PercentDecoder.decode(source, start, end, charset, false);
+		}
+		
+		/* Without percent escapes the symbols can be decoded straight
+		 * from the data URI
+		 */
+		if (end == HeaderScanner.indexOf(source, '%', start, end)) {
+			final byte[] data = new byte[Base64Codec.decodedLength(source, start, end - start)];
+			Base64Codec.decode(source, start, end - start, data, 0);
+			return data;
+		}
+		
+		/* Otherwise the exact length is known in advance, thus the
+		 * symbols can be streamed into a single allocation
+		 */
+		final byte[] data = new byte[decodedLength(source, start, end, true, charset)];
+		final ByteBuffer target = ByteBuffer.wrap(data);
+		final PayloadChannel payload = new PayloadChannel(source, start, end, true, charset);
+		
+		while (target.hasRemaining() && (-1 != payload.decode(target))) {
+		}
+		return data;
+	}
+	
+	/**
+	 * Decodes the payload {@code source[start, end)} like
+	 * {@link #decode(CharSequence, int, int, boolean, Charset)} but splits
+	 * base64 decoding of huge payloads without percent escapes into chunks
+	 * executed by {@code pool}
+	 * 
+	 * @throws IllegalArgumentException iff the payload contains an illegal
+	 *     percent escape
+	 */
+	static byte[] decode(CharSequence source, int start, int end, boolean base64, Charset charset, ForkJoinPool pool) {
+		if (base64 && (end == HeaderScanner.indexOf(source, '%', start, end))) {
+			return ParallelBase64.decode(source, start, end - start, pool);
+		}
+		return decode(source, start, end, base64, charset);
+	}
+}
@@ -0,0 +1,714 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Scans the header of a data URI, i.e. everything up to and including the
+ * first `,', without copying or lowercasing the URI
+ * 
+ * @see http://shadow2531.com/opera/testcases/datauri/data_uri_rules.html
+ *
+ * @author ooxi
+ */
+final class HeaderScanner {
+	
+	/**
+	 * Let mimeType be a string with the value "text/plain".
+	 */
+	String mime = "text/plain";
+	
+	/**
+	 * Let contentEncoding be an empy string.
+	 * 
+	 * `base64' is the only supported content encoding, thus
+	 * contentEncoding and contentEncodingAlreadySet collapse into a single
+	 * flag.
+	 */
+	boolean base64 = false;
+	
+	/**
+	 * Let supportedValues be a map of string:string pairs [...]
+	 * 
+	 * A value of null represents a value which has not been set, rendering
+	 * supportedValueSetBits redundant.
+	 */
+	String charsetName = null;
+	int charsetOffset = -1;
+	String filename = null;
+	String contentDisposition = null;
+	
+	/**
+	 * Additional content encodings in order of appearance, only
+	 * recognized if configured in the {@link DataUriParser}
+	 */
+	DataUriContentEncoding[] encodings = NO_ENCODINGS;
+	int encodingCount = 0;
+	
+	/**
+	 * Retained parameters other than the supported values as flat array of
+	 * name, value pairs, only populated if configured in the
+	 * {@link DataUriParser}
+	 */
+	private String[] parameters = DataUri.NO_PARAMETERS;
+	private int parameterCount = 0;
+	
+	/**
+	 * Let comma be the position of the first "," found in URI.
+	 */
+	int comma;
+	
+	/**
+	 * Reason the header is malformed or null if it is well formed
+	 */
+	DataUriError error = null;
+	int errorOffset = -1;
+	
+	
+	
+	private static final DataUriContentEncoding[] NO_ENCODINGS = new DataUriContentEncoding[0];
+	
+	
+	
+	private HeaderScanner() {
+	}
+	
+	
+	
+	/**
+	 * @return Charset named by the `charset' option or null if none was
+	 *     specified
+	 * 
+	 * @throws java.nio.charset.IllegalCharsetNameException iff the charset
+	 *     name is illegal
+	 * @throws java.nio.charset.UnsupportedCharsetException iff the charset
+	 *     is not supported
+	 */
+	Charset charset() {
+		return (null == charsetName) ? null : HeaderValues.charset(charsetName);
+	}
+	
+	/**
+	 * @return Retained parameters as flat array of name, value pairs
+	 */
+	String[] parameters() {
+		return (0 == parameterCount) ? DataUri.NO_PARAMETERS : Arrays.copyOf(parameters, 2 * parameterCount);
+	}
+	
+	
+	
+	/**
+	 * Scans the header of a data URI presented as octets
+	 * 
+	 * If the header contains octets outside of US-ASCII, it will be decoded
+	 * using {@code charset} before scanning, otherwise it is scanned in
+	 * place. In both cases {@link #comma} refers to the octet position.
+	 * 
+	 * @param charset Charset of the octets which will also be used when
+	 *     decoding percent encoded options like filename
+	 * 
+	 * @throws IllegalArgumentException iff the header is malformed
+	 */
+	static HeaderScanner scan(AsciiSequence uri, Charset charset) {
+		return scan(uri, charset, DataUriParser.DEFAULT);
+	}
+	
+	static HeaderScanner scan(AsciiSequence uri, Charset charset, DataUriParser parser) {
+		final int comma = indexOf(uri, ',', 0, Math.min(uri.length(), parser.maximumHeaderLength));
+		
+		if (uri.isAscii(0, comma)) {
+			return scan((CharSequence)uri, charset, parser);
+		}
+		
+		final HeaderScanner scanner = scan(uri.decode(0, Math.min(comma + 1, uri.length()), charset), charset, parser);
+		scanner.comma = comma;
+		return scanner;
+	}
+	
+	/**
+	 * Scans the header of a data URI whose `,' is already known (e.g.
+	 * from a {@link DataUriIndex}), thus the header is not searched for
+	 * it again
+	 * 
+	 * @param comma Octet position of the `,' ending the header
+	 * 
+	 * @throws IllegalArgumentException iff the header is malformed or
+	 *     there is no `,' at {@code comma}
+	 */
+	static HeaderScanner scan(AsciiSequence uri, int comma, Charset charset) {
+		final HeaderScanner scanner;
+		
+		if ((comma < 0) || (comma >= uri.length()) || (',' != uri.charAt(comma))) {
+			scanner = new HeaderScanner().fail(DataUriError.MISSING_COMMA, comma);
+		} else if (uri.isAscii(0, comma)) {
+			scanner = tryScan(uri, comma, charset, DataUriParser.DEFAULT);
+		} else {
+			final String header = uri.decode(0, comma + 1, charset);
+			scanner = tryScan(header, header.length() - 1, charset, DataUriParser.DEFAULT);
+			scanner.comma = comma;
+		}
+		
+		if (null != scanner.error) {
+			throw new IllegalArgumentException(scanner.error.message(scanner.errorOffset));
+		}
+		return scanner;
+	}
+	
+	
+	
+	/**
+	 * @param decodedLength Exact length of the decoded payload or
+	 *     {@link DataUriHeader#UNKNOWN_LENGTH}
+	 */
+	DataUriHeader toHeader(long decodedLength) {
+		return new DataUriHeader(
+			mime,
+			charset(),
+			filename,
+			contentDisposition,
+			contentEncoding(),
+			decodedLength
+		);
+	}
+	
+	/**
+	 * @return All content encodings in order of appearance separated by
+	 *     `;' (like `gzip;base64'), null if the payload is only percent
+	 *     encoded
+	 */
+	String contentEncoding() {
+		if (0 == encodingCount) {
+			return base64 ? DataUri.BASE64_ENCODING_NAME : null;
+		}
+		
+		final StringBuilder s = new StringBuilder();
+		
+		for (int i = 0; i < encodingCount; ++i) {
+			s.append(encodings[i].getName()).append(';');
+		}
+		if (base64) {
+			s.append(DataUri.BASE64_ENCODING_NAME);
+		} else {
+			s.setLength(s.length() - 1);
+		}
+		return s.toString();
+	}
+	
+	
+	
+	/**
+	 * Scans the header of a data URI described in RFC2397
+	 * 
+	 * @param uri Data URI, only the characters up to and including the
+	 *     first `,' will be examined
+	 * @param charset Charset to use when decoding percent encoded options
+	 *     like filename
+	 * 
+	 * @throws IllegalArgumentException iff the header is malformed
+	 */
+	static HeaderScanner scan(CharSequence uri, Charset charset) {
+		return scan(uri, charset, DataUriParser.DEFAULT);
+	}
+	
+	/**
+	 * @param parser Configures the recognized content encodings and
+	 *     parameters as well as strict checking
+	 */
+	static HeaderScanner scan(CharSequence uri, Charset charset, DataUriParser parser) {
+		final HeaderScanner scanner = tryScan(uri, charset, parser);
+		
+		if (null != scanner.error) {
+			throw new IllegalArgumentException(scanner.error.message(scanner.errorOffset));
+		}
+		return scanner;
+	}
+	
+	/**
+	 * Scans the header of a data URI described in RFC2397 without throwing
+	 * exceptions, instead {@link #error} and {@link #errorOffset} will be
+	 * set if the header is malformed
+	 * 
+	 * @param uri Data URI, only the characters up to and including the
+	 *     first `,' will be examined
+	 * @param charset Charset to use when decoding percent encoded options
+	 *     like filename
+	 */
+	static HeaderScanner tryScan(CharSequence uri, Charset charset) {
+		return tryScan(uri, charset, DataUriParser.DEFAULT);
+	}
+	
+	/**
+	 * @param parser Configures the recognized content encodings and
+	 *     parameters as well as strict checking
+	 */
+	static HeaderScanner tryScan(CharSequence uri, Charset charset, DataUriParser parser) {
+		final HeaderScanner scanner = new HeaderScanner();
+
+		/* If URI does not start with a case-insensitive "data:":
+		 * Throw a MALFORMED_URI exception.
+		 */
+		if (!hasDataScheme(uri)) {
+			return scanner.fail(DataUriError.MISSING_SCHEME, 0);
+		}
+
+		/* Let comma be the position of the first "," found in URI.
+		 * 
+		 * The search is bounded by the maximum header length, thus huge
+		 * URIs without a comma are rejected early.
+		 */
+		final int bound = Math.min(uri.length(), parser.maximumHeaderLength);
+		final int comma = indexOf(uri, ',', DataUri.DATA_SCHEME.length(), bound);
+
+		/* If URI does not contain a ",":
+		 * Throw a MALFORMED_URI exception.
+		 */
+		if (bound == comma) {
+			if (uri.length() >= parser.maximumHeaderLength) {
+				return scanner.fail(DataUriError.HEADER_TOO_LONG, parser.maximumHeaderLength);
+			}
+			return scanner.fail(DataUriError.MISSING_COMMA, comma);
+		}
+		
+		return scanner.scanHeaders(uri, comma, charset, parser);
+	}
+	
+	/**
+	 * @param comma Position of the first `,' in {@code uri}
+	 */
+	private static HeaderScanner tryScan(CharSequence uri, int comma, Charset charset, DataUriParser parser) {
+		final HeaderScanner scanner = new HeaderScanner();
+		
+		if (!hasDataScheme(uri)) {
+			return scanner.fail(DataUriError.MISSING_SCHEME, 0);
+		}
+		return scanner.scanHeaders(uri, comma, charset, parser);
+	}
+	
+	/**
+	 * @return true iff {@code uri[start, end)} consists of nothing but
+	 *     header separators
+	 */
+	private static boolean isEmptyTail(CharSequence uri, int start, int end) {
+		for (int i = start; i < end; ++i) {
+			if (';' != uri.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static boolean hasDataScheme(CharSequence uri) {
+		return (uri.length() >= DataUri.DATA_SCHEME.length()) && equalsIgnoreCase(uri, 0, DataUri.DATA_SCHEME.length(), DataUri.DATA_SCHEME);
+	}
+	
+	/**
+	 * Processes the headers between `data:' and {@code comma}
+	 */
+	private HeaderScanner scanHeaders(CharSequence uri, int comma, Charset charset, DataUriParser parser) {
+		this.comma = comma;
+		
+		/* For each string s in headers, where headers is the result of
+		 * splitting the substring between "data:" and comma by ";".
+		 * 
+		 * Instead of splitting, each header is processed in place as
+		 * the range [start, end) of URI.
+		 */
+		for (int header = 0, start = DataUri.DATA_SCHEME.length(); start <= comma; ++header) {
+			final int end = indexOf(uri, ';', start, comma);
+			
+			/* Splitting drops trailing empty strings, thus empty
+			 * headers followed by nothing but further empty headers
+			 * are ignored (like `data:text/plain;,')
+			 */
+			if ((0 != header) && (start == end) && isEmptyTail(uri, start, comma)) {
+				break;
+			}
+			
+			if (header > parser.maximumParameterCount) {
+				return fail(DataUriError.TOO_MANY_PARAMETERS, start);
+			}
+
+			/* Percent escapes are validated even if the header
+			 * is skipped afterwards (unknown or not retained)
+			 */
+			final int illegal = PercentDecoder.indexOfIllegalEscape(uri, start, end);
+			
+			if (-1 != illegal) {
+				return fail(DataUriError.ILLEGAL_PERCENT_ESCAPE, illegal);
+			}
+
+			/* Let eq be the position result of searching for "=" in
+			 * s.
+			 */
+			final int eq = indexOf(uri, '=', start, end);
+
+			/* If eq is not a valid position in s:
+			 */
+			if (end == eq) {
+
+				/* Let name equal the result of percent-decoding
+				 * s, trimming leading and trailing white-space.
+				 * 
+				 * If s is the first element in headers and the
+				 * length of name is greater than 0:
+				 */
+				if (0 == header) {
+					final String name = header(uri, start, end, charset);
+					
+					/* Let mimeType equal name.
+					 */
+					if (!name.isEmpty()) {
+						if (parser.strict && !isMediaType(name)) {
+							return fail(DataUriError.ILLEGAL_MEDIA_TYPE, start);
+						}
+						mime = name;
+					}
+
+				/* If name is found case-insensitively in
+				 * supportedContentEncodings and
+				 * contentEncodingAlreadySet is false:
+				 */
+				} else if (!base64 && headerEquals(uri, start, end, DataUri.BASE64_ENCODING_NAME, charset)) {
+					base64 = true;
+				
+				/* Additional content encodings are applied before
+				 * the transfer encoding, thus they must precede
+				 * `base64'
+				 */
+				} else {
+					final int encoding = base64 ? -1 : lookup(parser.encodingNames, uri, start, end, charset);
+					
+					if (-1 != encoding) {
+						addEncoding(parser.encodings[encoding]);
+					} else if (parser.strict && (null == error)) {
+						return fail(DataUriError.ILLEGAL_PARAMETER, start);
+					}
+				}
+
+			/* Else:
+			 * 
+			 * Let name equal the substring of s from position 0 to,
+			 * but not including, position eq and value equal the
+			 * substring of s from position eq + 1 to the end of s.
+			 * 
+			 * If the length of value is greater than 0 and name is
+			 * found case-insensitively in supportedValues and the
+			 * corresponding value has not been set yet, let the
+			 * corresponding value equal value.
+			 */
+			} else {
+				if (parser.strict) {
+					if (0 == header) {
+						return fail(DataUriError.ILLEGAL_MEDIA_TYPE, start);
+					}
+					if (base64 || (0 != encodingCount) || (start == eq) || (eq + 1 == end)) {
+						return fail(DataUriError.ILLEGAL_PARAMETER, start);
+					}
+				}
+				
+				if ((null == charsetName) && headerEquals(uri, start, eq, DataUri.CHARSET_OPTION_NAME, charset)) {
+					charsetName = emptyToNull(header(uri, eq + 1, end, charset));
+					charsetOffset = eq + 1;
+				} else if ((null == filename) && headerEquals(uri, start, eq, DataUri.FILENAME_OPTION_NAME, charset)) {
+					filename = emptyToNull(header(uri, eq + 1, end, charset));
+				} else if ((null == contentDisposition) && headerEquals(uri, start, eq, DataUri.CONTENT_DISPOSITION_OPTION_NAME, charset)) {
+					contentDisposition = emptyToNull(header(uri, eq + 1, end, charset));
+				} else if (parser.strict && isSupportedValue(uri, start, eq, charset)) {
+					return fail(DataUriError.ILLEGAL_PARAMETER, start);
+				} else if (parser.retainsParameters || parser.strict) {
+					retainParameter(parser, uri, start, eq, end, charset);
+				}
+			}
+			
+			if (null != error) {
+				return this;
+			}
+			start = end + 1;
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * Validates the name of the `charset' option without resolving it,
+	 * setting {@link #error} if it is illegal or not supported
+	 */
+	HeaderScanner checkCharset() {
+		if ((null != charsetName) && (null == error) && !HeaderValues.isKnownCharset(charsetName)) {
+			if (!isLegalCharsetName(charsetName)) {
+				return fail(DataUriError.ILLEGAL_CHARSET_NAME, charsetOffset);
+			}
+			if (!Charset.isSupported(charsetName)) {
+				return fail(DataUriError.UNSUPPORTED_CHARSET, charsetOffset);
+			}
+		}
+		return this;
+	}
+	
+	HeaderScanner fail(DataUriError error, int errorOffset) {
+		this.error = error;
+		this.errorOffset = errorOffset;
+		return this;
+	}
+	
+	private void addEncoding(DataUriContentEncoding encoding) {
+		if (encodings.length == encodingCount) {
+			encodings = Arrays.copyOf(encodings, Math.max(2, 2 * encodingCount));
+		}
+		encodings[encodingCount++] = encoding;
+	}
+	
+	/**
+	 * Retains the parameter {@code s[start, end)} if {@code parser} is
+	 * configured to do so. Like supported values, the first non empty
+	 * value of a parameter wins (duplicated and unknown parameters are
+	 * illegal in strict mode).
+	 */
+	private void retainParameter(DataUriParser parser, CharSequence s, int start, int eq, int end, Charset charset) {
+		final String name;
+		
+		if (parser.retainsAllParameters) {
+			name = header(s, start, eq, charset);
+		} else {
+			final int index = lookup(parser.parameterNames, s, start, eq, charset);
+			name = (-1 == index) ? "" : parser.parameterNames.get(index);
+		}
+		
+		if (name.isEmpty()) {
+			if (parser.strict) {
+				fail(DataUriError.ILLEGAL_PARAMETER, start);
+			}
+			return;
+		}
+		
+		for (int i = 0; i < parameterCount; ++i) {
+			if (name.equals(parameters[2 * i])) {
+				if (parser.strict) {
+					fail(DataUriError.ILLEGAL_PARAMETER, start);
+				}
+				return;
+			}
+		}
+		
+		final String value = header(s, eq + 1, end, charset);
+		
+		if (value.isEmpty()) {
+			return;
+		}
+		
+		if (parameters.length == 2 * parameterCount) {
+			parameters = Arrays.copyOf(parameters, Math.max(4, 4 * parameterCount));
+		}
+		parameters[2 * parameterCount] = name;
+		parameters[2 * parameterCount + 1] = value;
+		++parameterCount;
+	}
+	
+	/**
+	 * @return true iff the parameter name {@code s[start, end)} is one of
+	 *     the supported values
+	 */
+	private boolean isSupportedValue(CharSequence s, int start, int end, Charset charset) {
+		return headerEquals(s, start, end, DataUri.CHARSET_OPTION_NAME, charset)
+			|| headerEquals(s, start, end, DataUri.FILENAME_OPTION_NAME, charset)
+			|| headerEquals(s, start, end, DataUri.CONTENT_DISPOSITION_OPTION_NAME, charset);
+	}
+	
+	/**
+	 * @return Index of the header {@code s[start, end)} in {@code table}
+	 *     after lowercasing, percent-decoding and trimming or -1 if it
+	 *     is not contained
+	 */
+	private int lookup(DataUriParser.NameTable table, CharSequence s, int start, int end, Charset charset) {
+		if (table.isEmpty()) {
+			return -1;
+		}
+		
+		if (end != indexOf(s, '%', start, end)) {
+			final String name = header(s, start, end, charset);
+			return table.indexOf(name, 0, name.length());
+		}
+		
+		while ((start < end) && (s.charAt(start) <= ' ')) {
+			++start;
+		}
+		while ((start < end) && (s.charAt(end - 1) <= ' ')) {
+			--end;
+		}
+		return table.indexOf(s, start, end);
+	}
+	
+	
+	
+	/**
+	 * @return Position of the first occurence of {@code c} in
+	 *     {@code s} between {@code start} (inclusive) and {@code end}
+	 *     (exclusive) or {@code end} if {@code c} cannot be found
+	 */
+	static int indexOf(CharSequence s, char c, int start, int end) {
+		for (int i = start; i < end; ++i) {
+			if (c == s.charAt(i)) {
+				return i;
+			}
+		}
+		return end;
+	}
+	
+	/**
+	 * @param expected Lowercase US-ASCII string
+	 * 
+	 * @return true iff the header {@code s[start, end)} is equal to
+	 *     {@code expected} after lowercasing, percent-decoding and
+	 *     trimming
+	 */
+	private boolean headerEquals(CharSequence s, int start, int end, String expected, Charset charset) {
+		if (end != indexOf(s, '%', start, end)) {
+			return expected.equals(header(s, start, end, charset));
+		}
+		
+		while ((start < end) && (s.charAt(start) <= ' ')) {
+			++start;
+		}
+		while ((start < end) && (s.charAt(end - 1) <= ' ')) {
+			--end;
+		}
+		return equalsIgnoreCase(s, start, end, expected);
+	}
+	
+	/**
+	 * @param expected Lowercase US-ASCII string
+	 * 
+	 * @return true iff {@code s[start, end)} is equal to {@code expected}
+	 *     ignoring the case of US-ASCII letters
+	 */
+	static boolean equalsIgnoreCase(CharSequence s, int start, int end, String expected) {
+		if (end - start != expected.length()) {
+			return false;
+		}
+		for (int i = 0; i < expected.length(); ++i) {
+			final char c = s.charAt(start + i);
+			
+			if (expected.charAt(i) != (((c >= 'A') && (c <= 'Z')) ? (char)(c | 0x20) : c)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Materializes the header {@code s[start, end)} by lowercasing,
+	 * percent-decoding and trimming it. Recurring values share a
+	 * canonical instance.
+	 * 
+	 * An illegal percent escape sets {@link #error} and results in an
+	 * empty header.
+	 */
+	private String header(CharSequence s, int start, int end, Charset charset) {
+		final int percent = indexOf(s, '%', start, end);
+		
+		if (end == percent) {
+			while ((start < end) && (s.charAt(start) <= ' ')) {
+				++start;
+			}
+			while ((start < end) && (s.charAt(end - 1) <= ' ')) {
+				--end;
+			}
+			
+			if (isAscii(s, start, end)) {
+				return HeaderValues.intern(s, start, end);
+			}
+			return HeaderValues.intern(s.subSequence(start, end).toString().toLowerCase(Locale.ROOT));
+		}
+		
+		final int illegal = PercentDecoder.indexOfIllegalEscape(s, percent, end);
+		
+		if (-1 != illegal) {
+			fail(DataUriError.ILLEGAL_PERCENT_ESCAPE, illegal);
+			return "";
+		}
+		return HeaderValues.intern(PercentDecoder.decodeToString(s, start, end, charset, true).trim());
+	}
+	
+	/**
+	 * Checks a charset name like {@link Charset#forName(String)} does,
+	 * but without throwing an exception
+	 * 
+	 * @return true iff {@code name} consists of letters, digits, `-', `+',
+	 *     `:', `_' and `.' and starts with a letter or digit
+	 */
+	static boolean isLegalCharsetName(String name) {
+		if (name.isEmpty()) {
+			return false;
+		}
+		
+		for (int i = 0; i < name.length(); ++i) {
+			final char c = name.charAt(i);
+			
+			if (((c >= 'A') && (c <= 'Z')) || ((c >= 'a') && (c <= 'z')) || ((c >= '0') && (c <= '9'))) {
+				continue;
+			}
+			if ((i > 0) && (('-' == c) || ('+' == c) || (':' == c) || ('_' == c) || ('.' == c))) {
+				continue;
+			}
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * @return true iff {@code name} is of the form `type/subtype' where
+	 *     both are tokens as defined by RFC2045
+	 */
+	static boolean isMediaType(String name) {
+		final int slash = name.indexOf('/');
+		
+		if ((slash <= 0) || (slash == name.length() - 1)) {
+			return false;
+		}
+		
+		for (int i = 0; i < name.length(); ++i) {
+			final char c = name.charAt(i);
+			
+			if ((i != slash) && ((c <= ' ') || (c >= 0x7F) || (-1 != "()<>@,;:\\\"/[]?=".indexOf(c)))) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static boolean isAscii(CharSequence s, int start, int end) {
+		for (int i = start; i < end; ++i) {
+			if (s.charAt(i) >= 0x80) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static String emptyToNull(String s) {
+		return s.isEmpty() ? null : s;
+	}
+}
@@ -0,0 +1,268 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Canonical instances of header values, thus parsed data URIs share their
+ * mime type, charset and option strings instead of retaining duplicates
+ * 
+ * Well-known mime types and charset names are looked up in a table which is
+ * filled once, other values in a bounded table which forgets values on
+ * collision. Both are read without locking and are consulted before a
+ * header value is materialized, thus a hit does not allocate. Values longer
+ * than {@link #MAXIMUM_INTERNED_LENGTH} are never interned, thus untrusted
+ * input cannot pin large strings.
+ *
+ * @author ooxi
+ */
+final class HeaderValues {
+	
+	private static final String[] WELL_KNOWN = {
+		"text/plain", "text/html", "text/css", "text/javascript", "text/csv", "text/xml",
+		"image/png", "image/gif", "image/jpeg", "image/jpg", "image/webp", "image/svg+xml",
+		"image/x-icon", "image/vnd.microsoft.icon", "image/bmp", "image/avif", "image/apng",
+		"application/octet-stream", "application/json", "application/javascript",
+		"application/xml", "application/pdf", "application/zip", "application/x-font-woff",
+		"application/font-woff", "application/vnd.ms-fontobject", "application/x-font-ttf",
+		"font/woff", "font/woff2", "font/ttf", "font/otf",
+		"audio/mpeg", "audio/ogg", "audio/wav", "video/mp4", "video/webm",
+		"utf-8", "us-ascii", "iso-8859-1", "utf-16", "utf-16be", "utf-16le", "windows-1252",
+		"inline", "attachment"
+	};
+	
+	/**
+	 * Maximum length of values which will be interned, longer values are
+	 * most likely unique (like generated filenames)
+	 */
+	static final int MAXIMUM_INTERNED_LENGTH = 64;
+	
+	/**
+	 * Maximum number of charsets resolved by {@link Charset#forName(String)}
+	 * which will be remembered
+	 */
+	private static final int MAXIMUM_CHARSETS = 64;
+	
+	private static final InternTable WELL_KNOWN_VALUES = new InternTable(256);
+	private static final InternTable VALUES = new InternTable(4096);
+	private static final ConcurrentMap<String, Charset> CHARSETS = new ConcurrentHashMap<String, Charset>();
+	
+	static {
+		for (final String value : WELL_KNOWN) {
+			WELL_KNOWN_VALUES.put(value);
+		}
+	}
+	
+	
+	
+	private HeaderValues() {
+	}
+	
+	
+	
+	/**
+	 * @param s US-ASCII characters without surrounding white-space
+	 * 
+	 * @return Canonical instance of {@code s[start, end)} after
+	 *     lowercasing, or a new string if it is longer than
+	 *     {@link #MAXIMUM_INTERNED_LENGTH}
+	 */
+	static String intern(CharSequence s, int start, int end) {
+		if (end - start > MAXIMUM_INTERNED_LENGTH) {
+			return InternTable.lowercase(s, start, end);
+		}
+		
+		final int hash = InternTable.hash(s, start, end);
+		final String wellKnown = WELL_KNOWN_VALUES.get(s, start, end, hash);
+		
+		if (null != wellKnown) {
+			return wellKnown;
+		}
+		
+		final String value = VALUES.get(s, start, end, hash);
+		
+		if (null != value) {
+			return value;
+		}
+		return VALUES.put(InternTable.lowercase(s, start, end));
+	}
+	
+	/**
+	 * @return Canonical instance of {@code value}, or {@code value}
+	 *     itself if it is longer than {@link #MAXIMUM_INTERNED_LENGTH}
+	 */
+	static String intern(String value) {
+		if (value.length() > MAXIMUM_INTERNED_LENGTH) {
+			return value;
+		}
+		
+		final String wellKnown = WELL_KNOWN_VALUES.get(value);
+		
+		if (null != wellKnown) {
+			return wellKnown;
+		}
+		
+		final String interned = VALUES.get(value);
+		return (null != interned) ? interned : VALUES.put(value);
+	}
+	
+	
+	
+	/**
+	 * @return Charset named {@code name}, resolved only once for the most
+	 *     frequently used names
+	 * 
+	 * @throws java.nio.charset.IllegalCharsetNameException iff the charset
+	 *     name is illegal
+	 * @throws java.nio.charset.UnsupportedCharsetException iff the charset
+	 *     is not supported
+	 */
+	static Charset charset(String name) {
+		Charset charset = CHARSETS.get(name);
+		
+		if (null == charset) {
+			charset = Charset.forName(name);
+			
+			if (CHARSETS.size() < MAXIMUM_CHARSETS) {
+				CHARSETS.putIfAbsent(name, charset);
+			}
+		}
+		return charset;
+	}
+	
+	/**
+	 * @return true iff {@code name} has already been resolved by
+	 *     {@link #charset(String)}
+	 */
+	static boolean isKnownCharset(String name) {
+		return CHARSETS.containsKey(name);
+	}
+	
+	
+	
+	/**
+	 * Hash table of lowercase strings which can be queried by character
+	 * ranges, on collision one of the probed slots is overwritten
+	 */
+	private static final class InternTable {
+		
+		private static final int PROBES = 4;
+		
+		private final AtomicReferenceArray<String> slots;
+		private final int mask;
+		
+		/**
+		 * @param capacity Power of two
+		 */
+		InternTable(int capacity) {
+			this.slots = new AtomicReferenceArray<String>(capacity);
+			this.mask = capacity - 1;
+		}
+		
+		/**
+		 * @param hash {@link #hash(CharSequence, int, int)} of
+		 *     {@code s[start, end)}
+		 * 
+		 * @return Value equal to {@code s[start, end)} after lowercasing
+		 *     or null
+		 */
+		String get(CharSequence s, int start, int end, int hash) {
+			for (int probe = 0; probe < PROBES; ++probe) {
+				final String value = slots.get((hash + probe) & mask);
+				
+				if (null == value) {
+					return null;
+				}
+				if ((value.hashCode() == hash) && HeaderScanner.equalsIgnoreCase(s, start, end, value)) {
+					return value;
+				}
+			}
+			return null;
+		}
+		
+		/**
+		 * @return Value equal to {@code value} or null
+		 */
+		String get(String value) {
+			final int hash = value.hashCode();
+			
+			for (int probe = 0; probe < PROBES; ++probe) {
+				final String candidate = slots.get((hash + probe) & mask);
+				
+				if (null == candidate) {
+					return null;
+				}
+				if (value.equals(candidate)) {
+					return candidate;
+				}
+			}
+			return null;
+		}
+		
+		/**
+		 * @return {@code value} which has been stored in an empty slot or
+		 *     in place of an arbitrary probed value
+		 */
+		String put(String value) {
+			final int hash = value.hashCode();
+			
+			for (int probe = 0; probe < PROBES; ++probe) {
+				if (slots.compareAndSet((hash + probe) & mask, null, value)) {
+					return value;
+				}
+			}
+			slots.set(hash & mask, value);
+			return value;
+		}
+		
+		/**
+		 * @return Same value as {@link String#hashCode()} of the
+		 *     lowercased range
+		 */
+		static int hash(CharSequence s, int start, int end) {
+			int hash = 0;
+			
+			for (int i = start; i < end; ++i) {
+				hash = 31 * hash + lowercase(s.charAt(i));
+			}
+			return hash;
+		}
+		
+		static String lowercase(CharSequence s, int start, int end) {
+			final char[] chars = new char[end - start];
+			
+			for (int i = start; i < end; ++i) {
+				chars[i - start] = lowercase(s.charAt(i));
+			}
+			return new String(chars);
+		}
+		
+		private static char lowercase(char c) {
+			return ((c >= 'A') && (c <= 'Z')) ? (char)(c | 0x20) : c;
+		}
+	}
+}
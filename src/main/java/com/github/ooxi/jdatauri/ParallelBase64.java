@@ -0,0 +1,271 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits huge base64 payloads into chunks which are encoded or decoded
+ * concurrently straight into their final position of the output array
+ * 
+ * The result is identical to {@link Base64Codec}, payloads smaller than
+ * {@link #THRESHOLD} are processed sequentially in the calling thread.
+ *
+ * @author ooxi
+ */
+final class ParallelBase64 {
+	
+	/**
+	 * Payloads smaller than this number of octets are not worth the
+	 * overhead of splitting
+	 */
+	static final int THRESHOLD = 1024 * 1024;
+	
+	/**
+	 * Minimum number of octets processed by a single task
+	 */
+	private static final int MIN_CHUNK = 256 * 1024;
+	
+	
+	
+	private ParallelBase64() {
+	}
+	
+	
+	
+	/**
+	 * Decodes the symbols {@code src[offset, offset + length)} with the
+	 * same semantics as {@link Base64Codec#decode(byte[], int, int, byte[], int)}
+	 * 
+	 * @see #decode(CharSequence, int, int, ForkJoinPool)
+	 */
+	static byte[] decode(byte[] src, int offset, int length, ForkJoinPool pool) {
+		if (length < THRESHOLD) {
+			final byte[] decoded = new byte[Base64Codec.decodedLength(src, offset, length)];
+			Base64Codec.decode(src, offset, length, decoded, 0);
+			return decoded;
+		}
+		return decode(new AsciiSequence(ByteBuffer.wrap(src)), offset, length, pool);
+	}
+	
+	/**
+	 * Decodes the symbols {@code src[offset, offset + length)} with the
+	 * same semantics as {@link Base64Codec#decode(CharSequence, int, int, byte[], int)},
+	 * thus payloads without percent escapes can be decoded straight from
+	 * the data URI
+	 * 
+	 * A quantum may be interrupted by octets outside of the alphabet and
+	 * thus cross chunk boundaries. Every quantum is decoded by the chunk
+	 * containing its first symbol, which reads beyond its end if
+	 * necessary.
+	 * 
+	 * @return Decoded octets
+	 */
+	static byte[] decode(final CharSequence src, int offset, int length, ForkJoinPool pool) {
+		if (length < THRESHOLD) {
+			final byte[] decoded = new byte[Base64Codec.decodedLength(src, offset, length)];
+			Base64Codec.decode(src, offset, length, decoded, 0);
+			return decoded;
+		}
+		
+		final int chunks = chunks(length, pool);
+		final int chunkLength = (length + chunks - 1) / chunks;
+		
+		/* Let start[k] be the position of chunk k and end the position
+		 * of the first padding character (or the end of the payload)
+		 */
+		final int[] start = new int[chunks + 1];
+		final int[] pad = new int[chunks];
+		final int[] symbols = new int[chunks + 1];
+		
+		for (int k = 0; k < chunks; ++k) {
+			start[k] = offset + Math.min(k * chunkLength, length);
+		}
+		start[chunks] = offset + length;
+		
+		final List<ForkJoinTask<?>> count = new ArrayList<ForkJoinTask<?>>(chunks);
+		
+		for (int k = 0; k < chunks; ++k) {
+			final int chunk = k;
+			
+			count.add(new RecursiveAction() {
+				@Override protected void compute() {
+					pad[chunk] = -1;
+					
+					for (int i = start[chunk]; i < start[chunk + 1]; ++i) {
+						final char c = src.charAt(i);
+						
+						if (Base64Codec.PAD == c) {
+							pad[chunk] = i;
+							return;
+						}
+						if (Base64Codec.value(c) >= 0) {
+							++symbols[chunk + 1];
+						}
+					}
+				}
+			});
+		}
+		invokeAll(count, pool);
+		
+		/* Chunks after the first padding character do not contribute,
+		 * afterwards let symbols[k] be the number of symbols preceding
+		 * chunk k
+		 */
+		int end = offset + length;
+		
+		for (int k = 0; k < chunks; ++k) {
+			if (-1 != pad[k]) {
+				end = pad[k];
+				
+				for (int j = k + 1; j <= chunks; ++j) {
+					start[j] = end;
+				}
+				for (int j = k + 2; j <= chunks; ++j) {
+					symbols[j] = 0;
+				}
+				break;
+			}
+		}
+		
+		for (int k = 1; k <= chunks; ++k) {
+			symbols[k] += symbols[k - 1];
+		}
+		
+		final byte[] decoded = new byte[EncodedPayload.base64Length(symbols[chunks])];
+		final int total = symbols[chunks];
+		final int last = end;
+		final List<ForkJoinTask<?>> decode = new ArrayList<ForkJoinTask<?>>(chunks);
+		
+		for (int k = 0; k < chunks; ++k) {
+			final int chunk = k;
+			
+			decode.add(new RecursiveAction() {
+				@Override protected void compute() {
+					
+					/* Let ownedFirst and ownedEnd be the indices of
+					 * the first symbols of the first quantum owned by
+					 * this respectively the next chunk
+					 */
+					final int ownedFirst = quantumCeil(symbols[chunk]);
+					final int ownedEnd = (chunk + 1 == chunks) ? total : quantumCeil(symbols[chunk + 1]);
+					
+					if (ownedFirst >= ownedEnd) {
+						return;
+					}
+					
+					final int from = skip(src, start[chunk], last, ownedFirst - symbols[chunk]);
+					final int to = (chunk + 1 == chunks) ? last : skip(src, start[chunk + 1], last, ownedEnd - symbols[chunk + 1]);
+					
+					Base64Codec.decode(src, from, to - from, decoded, 3 * (ownedFirst / 4));
+				}
+			});
+		}
+		invokeAll(decode, pool);
+		
+		return decoded;
+	}
+	
+	
+	
+	/**
+	 * Encodes {@code src} with the same semantics as
+	 * {@link Base64Codec#encode(byte[], int, int, char[], int)}
+	 * 
+	 * Chunks are split at multiples of three octets, thus only the last
+	 * chunk may need padding.
+	 * 
+	 * @return Position in {@code dst} after the last written symbol
+	 */
+	static int encode(final byte[] src, final char[] dst, final int dstOffset, ForkJoinPool pool) {
+		if (src.length < THRESHOLD) {
+			return Base64Codec.encode(src, 0, src.length, dst, dstOffset);
+		}
+		
+		final int chunks = chunks(src.length, pool);
+		final int chunkLength = 3 * ((ceilDiv(src.length, chunks) + 2) / 3);
+		final List<ForkJoinTask<?>> encode = new ArrayList<ForkJoinTask<?>>(chunks);
+		
+		for (int k = 0; k < chunks; ++k) {
+			final int from = Math.min(k * chunkLength, src.length);
+			final int length = Math.min(chunkLength, src.length - from);
+			
+			encode.add(new RecursiveAction() {
+				@Override protected void compute() {
+					Base64Codec.encode(src, from, length, dst, dstOffset + 4 * (from / 3));
+				}
+			});
+		}
+		invokeAll(encode, pool);
+		
+		return dstOffset + (int)Base64Codec.encodedLength(src.length);
+	}
+	
+	
+	
+	/**
+	 * @return {@code dividend / divisor} rounded up
+	 */
+	private static int ceilDiv(int dividend, int divisor) {
+		return (int)(((long)dividend + divisor - 1) / divisor);
+	}
+	
+	private static int chunks(int length, ForkJoinPool pool) {
+		return Math.max(1, Math.min(4 * pool.getParallelism(), length / MIN_CHUNK));
+	}
+	
+	/**
+	 * @return Smallest multiple of four not less than {@code symbol}
+	 */
+	private static int quantumCeil(int symbol) {
+		return (symbol + 3) & ~3;
+	}
+	
+	/**
+	 * @return Position after the {@code n}-th alphabet symbol starting at
+	 *     {@code from}, but not after {@code end}
+	 */
+	private static int skip(CharSequence src, int from, int end, int n) {
+		int i = from;
+		
+		for (; (n > 0) && (i < end); ++i) {
+			if (Base64Codec.value(src.charAt(i)) >= 0) {
+				--n;
+			}
+		}
+		return i;
+	}
+	
+	private static void invokeAll(final List<ForkJoinTask<?>> tasks, ForkJoinPool pool) {
+		pool.invoke(new RecursiveAction() {
+			@Override protected void compute() {
+				ForkJoinTask.invokeAll(tasks);
+			}
+		});
+	}
+}
@@ -0,0 +1,300 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Decodes the payload region of a data URI incrementally into buffers
+ * supplied by the caller, using only a few octets of internal state.
+ * 
+ * Produces exactly the same octets as
+ * {@link EncodedPayload#decode(CharSequence, int, int, boolean, Charset)}.
+ * Malformed percent escapes are reported as
+ * {@link IllegalArgumentException} when they are reached, callers which
+ * need atomicity should validate the payload first, e.g. using
+ * {@link EncodedPayload#decodedLength(CharSequence, int, int, boolean, Charset)}.
+ *
+ * @author ooxi
+ */
+final class PayloadChannel implements ReadableByteChannel {
+	
+	private final CharSequence source;
+	private final int end;
+	private final boolean base64;
+	private final Charset charset;
+	
+	private int position;
+	private boolean open = true;
+	
+	/**
+	 * Decoded octets which did not fit into the last target buffer
+	 */
+	private byte[] pending = new byte[3];
+	private int pendingStart = 0;
+	private int pendingEnd = 0;
+	
+	/**
+	 * Base64 decoding state
+	 */
+	private int bits = 0;
+	private int symbols = 0;
+	private boolean padded = false;
+	private boolean flushed = false;
+	
+	
+	
+	/**
+	 * @see EncodedPayload#EncodedPayload(CharSequence, int, int, boolean, Charset)
+	 */
+	PayloadChannel(CharSequence source, int start, int end, boolean base64, Charset charset) {
+		this.source = source;
+		this.position = start;
+		this.end = end;
+		this.base64 = base64;
+		this.charset = charset;
+	}
+	
+	
+	
+	/**
+	 * @return Position in the source of the next character to be decoded
+	 */
+	int position() {
+		return position;
+	}
+	
+	/**
+	 * @see #decode(ByteBuffer)
+	 */
+	@Override
+	public int read(ByteBuffer target) throws ClosedChannelException {
+		if (!open) {
+			throw new ClosedChannelException();
+		}
+		return decode(target);
+	}
+	
+	/**
+	 * Decodes as many octets as fit into {@code target}
+	 * 
+	 * @return Number of octets written or -1 iff the payload has been
+	 *     decoded completely
+	 * 
+	 * @throws IllegalArgumentException iff an illegal percent escape is
+	 *     reached
+	 */
+	int decode(ByteBuffer target) {
+		final int initial = target.position();
+		
+		while (target.hasRemaining()) {
+			
+			/* Drain octets which have been decoded before
+			 */
+			if (pendingStart < pendingEnd) {
+				final int drain = Math.min(target.remaining(), pendingEnd - pendingStart);
+				target.put(pending, pendingStart, drain);
+				pendingStart += drain;
+				continue;
+			}
+			
+			if (position >= end) {
+				if (base64 && !flushed) {
+					flushBase64();
+					continue;
+				}
+				break;
+			}
+			
+			/* Percent-decode next octet, runs of literal characters
+			 * outside of US-ASCII are encoded into pending
+			 */
+			final char c = source.charAt(position);
+			final int octet;
+			
+			if ('%' == c) {
+				octet = PercentDecoder.escape(source, position, end);
+				position += 3;
+			} else if (c >= 0x80) {
+				final int run = literalEnd();
+				
+				/* Encoded literals are never part of the base64
+				 * alphabet
+				 */
+				if (!base64) {
+					encodeLiteral(run);
+				}
+				position = run;
+				continue;
+			} else {
+				octet = c;
+				++position;
+			}
+			
+			if (!base64) {
+				target.put((byte)octet);
+			} else {
+				decodeBase64(octet);
+			}
+		}
+		
+		/* Input which does not yield octets on its own (like a
+		 * trailing line break or a single trailing symbol) must not
+		 * keep the channel from reporting end-of-stream once the
+		 * target is full
+		 */
+		if (base64 && (pendingStart == pendingEnd)) {
+			skipIgnorable();
+		}
+		
+		/* Trailing partial quantum might be complete even though
+		 * target has no space left
+		 */
+		if ((position >= end) && (pendingStart == pendingEnd) && base64 && !flushed) {
+			flushBase64();
+		}
+		
+		final int written = target.position() - initial;
+		return ((0 == written) && isExhausted()) ? -1 : written;
+	}
+	
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+	
+	@Override
+	public void close() {
+		open = false;
+	}
+	
+	
+	
+	private boolean isExhausted() {
+		return (position >= end) && (pendingStart == pendingEnd) && (!base64 || flushed);
+	}
+	
+	/**
+	 * Base64 decoding ignores every octet outside of the alphabet and
+	 * stops at the first padding character.
+	 */
+	private void decodeBase64(int octet) {
+		if (padded || (octet >= 0x80)) {
+			return;
+		}
+		if (Base64Codec.PAD == octet) {
+			padded = true;
+			return;
+		}
+		
+		final int value = Base64Codec.DECODE_TABLE[octet];
+		
+		if (value < 0) {
+			return;
+		}
+		
+		bits = (bits << 6) | value;
+		
+		if (4 == ++symbols) {
+			pending[0] = (byte)(bits >> 16);
+			pending[1] = (byte)(bits >> 8);
+			pending[2] = (byte)bits;
+			pendingStart = 0;
+			pendingEnd = 3;
+			bits = 0;
+			symbols = 0;
+		}
+	}
+	
+	/**
+	 * Consumes input until it yields the next decoded octets (which will
+	 * be kept in {@link #pending}) or the payload ends. Stops in front of
+	 * illegal percent escapes, which are reported once they are decoded.
+	 */
+	private void skipIgnorable() {
+		while ((position < end) && (pendingStart == pendingEnd)) {
+			final char c = source.charAt(position);
+			
+			if ('%' == c) {
+				if (-1 != PercentDecoder.indexOfIllegalEscape(source, position, Math.min(position + 3, end))) {
+					return;
+				}
+				decodeBase64(PercentDecoder.escape(source, position, end));
+				position += 3;
+			} else {
+				decodeBase64(c);
+				++position;
+			}
+		}
+	}
+	
+	/**
+	 * A trailing partial quantum of two or three symbols carries one or
+	 * two octets, a single symbol is discarded.
+	 */
+	private void flushBase64() {
+		pendingEnd = 0;
+		
+		if (2 == symbols) {
+			pending[0] = (byte)(bits >> 4);
+			pendingEnd = 1;
+		} else if (3 == symbols) {
+			pending[0] = (byte)(bits >> 10);
+			pending[1] = (byte)(bits >> 2);
+			pendingEnd = 2;
+		}
+		pendingStart = 0;
+		flushed = true;
+	}
+	
+	/**
+	 * @return End of the run of literal characters outside of US-ASCII
+	 *     starting at {@link #position}
+	 */
+	private int literalEnd() {
+		int run = position + 1;
+		
+		while ((run < end) && (source.charAt(run) >= 0x80)) {
+			++run;
+		}
+		return run;
+	}
+	
+	/**
+	 * Encodes the literal characters {@code [position, run)} into
+	 * {@link #pending}
+	 */
+	private void encodeLiteral(int run) {
+		pending = source.subSequence(position, run).toString().getBytes(charset);
+		pendingStart = 0;
+		pendingEnd = pending.length;
+		
+		if (pending.length < 3) {
+			pending = Arrays.copyOf(pending, 3);
+		}
+	}
+}
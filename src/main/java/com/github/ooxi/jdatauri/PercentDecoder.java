@@ -0,0 +1,308 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Decodes `%hh' escape sequences directly into octets.
+ *
+ * In contrast to {@link java.net.URLDecoder} a `+' is not treated as space
+ * and escaped octets are never reinterpreted using a charset, thus binary
+ * payload survives decoding unchanged. Only literal characters outside of
+ * US-ASCII (which are not allowed in URIs anyway, but are accepted
+ * nevertheless) are encoded using the supplied charset.
+ *
+ * @author ooxi
+ */
+final class PercentDecoder {
+
+	private PercentDecoder() {
+	}
+
+
+
+	/**
+	 * @return Value of the hexadecimal digit {@code c} or -1 if {@code c}
+	 *     is not a hexadecimal digit
+	 */
+	static int hex(int c) {
+		if ((c >= '0') && (c <= '9')) {
+			return c - '0';
+		}
+
+		final int lower = c | 0x20;
+
+		if ((lower >= 'a') && (lower <= 'f')) {
+			return lower - 'a' + 10;
+		}
+		return -1;
+	}
+
+
+
+	/**
+	 * @param i Position of an `%' in {@code s}
+	 * 
+	 * @return Octet represented by the escape sequence at {@code i}
+	 * 
+	 * @throws IllegalArgumentException iff the `%' is not followed by two
+	 *     hexadecimal digits before {@code end}
+	 */
+	static int escape(CharSequence s, int i, int end) {
+		final int high = (i + 2 < end) ? hex(s.charAt(i + 1)) : -1;
+		final int low = (i + 2 < end) ? hex(s.charAt(i + 2)) : -1;
+
+		if ((high < 0) || (low < 0)) {
+			throw new IllegalArgumentException("Illegal percent escape at position "+ i);
+		}
+		return (high << 4) | low;
+	}
+
+
+
+	/**
+	 * Validates the escape sequences in {@code s[start, end)} without
+	 * throwing an exception
+	 * 
+	 * @return Position of the first `%' which is not followed by two
+	 *     hexadecimal digits or -1 if every escape sequence is valid
+	 */
+	static int indexOfIllegalEscape(CharSequence s, int start, int end) {
+		for (int i = start; i < end; ++i) {
+			if ('%' == s.charAt(i)) {
+				if ((i + 2 >= end) || (hex(s.charAt(i + 1)) < 0) || (hex(s.charAt(i + 2)) < 0)) {
+					return i;
+				}
+				i += 2;
+			}
+		}
+		return -1;
+	}
+
+
+
+	/**
+	 * Counts the `%' in {@code s[start, end)} but stops as soon as more
+	 * than {@code maximum} have been found
+	 * 
+	 * @return Position of the first `%' exceeding {@code maximum} or -1 if
+	 *     there are at most {@code maximum} escape sequences
+	 */
+	static int indexOfExcessEscape(CharSequence s, int start, int end, int maximum) {
+		int escapes = 0;
+		
+		for (int i = start; i < end; ++i) {
+			if ('%' == s.charAt(i)) {
+				if (++escapes > maximum) {
+					return i;
+				}
+				i += 2;
+			}
+		}
+		return -1;
+	}
+
+
+
+	/**
+	 * Counts the escape sequences in {@code s[start, end)}.
+	 *
+	 * @return Number of escape sequences, or the bitwise complement of the
+	 *     position of the first literal character outside of US-ASCII
+	 *     (always negative)
+	 *
+	 * @throws IllegalArgumentException iff an `%' is not followed by two
+	 *     hexadecimal digits
+	 */
+	static int countEscapes(CharSequence s, int start, int end) {
+		int escapes = 0;
+
+		for (int i = start; i < end; ++i) {
+			final char c = s.charAt(i);
+
+			if ('%' == c) {
+				escape(s, i, end);
+				++escapes;
+				i += 2;
+			} else if (c >= 0x80) {
+				return ~i;
+			}
+		}
+		return escapes;
+	}
+
+
+
+	/**
+	 * @param charset Used for encoding literal characters outside of
+	 *     US-ASCII
+	 * 
+	 * @return Exact number of octets {@code s[start, end)} will be decoded
+	 *     to
+	 * 
+	 * @throws IllegalArgumentException iff an `%' is not followed by two
+	 *     hexadecimal digits
+	 */
+	static int decodedLength(CharSequence s, int start, int end, Charset charset) {
+		int length = 0;
+
+		for (int i = start; i < end;) {
+			final int escapes = countEscapes(s, i, end);
+
+			if (escapes >= 0) {
+				return length + (end - i) - 2 * escapes;
+			}
+
+			/* Skip run of characters outside of US-ASCII
+			 */
+			final int ascii = ~escapes;
+			int run = ascii + 1;
+
+			while ((run < end) && (s.charAt(run) >= 0x80)) {
+				++run;
+			}
+
+			length += (ascii - i) - 2 * countEscapes(s, i, ascii);
+			length += s.subSequence(ascii, run).toString().getBytes(charset).length;
+			i = run;
+		}
+		return length;
+	}
+
+
+
+	/**
+	 * Percent-decodes {@code s[start, end)} into a new octet array.
+	 *
+	 * @param charset Used for encoding literal characters outside of
+	 *     US-ASCII
+	 * @param lowercase Iff true literal characters will be lowercased
+	 *     before decoding
+	 *
+	 * @throws IllegalArgumentException iff an `%' is not followed by two
+	 *     hexadecimal digits
+	 */
+	static byte[] decode(CharSequence s, int start, int end, Charset charset, boolean lowercase) {
+		final int escapes = countEscapes(s, start, end);
+
+		if (escapes < 0) {
+			return decodeNonAscii(s, start, end, charset, lowercase);
+		}
+
+		final byte[] decoded = new byte[end - start - 2 * escapes];
+		decodeAscii(s, start, end, decoded, 0, lowercase);
+		return decoded;
+	}
+
+	/**
+	 * Percent-decodes {@code s[start, end)} into a string.
+	 *
+	 * @param charset Used for interpreting escaped octets as well as
+	 *     encoding literal characters outside of US-ASCII
+	 * @param lowercase Iff true literal characters will be lowercased
+	 *     before decoding
+	 *
+	 * @throws IllegalArgumentException iff an `%' is not followed by two
+	 *     hexadecimal digits
+	 */
+	static String decodeToString(CharSequence s, int start, int end, Charset charset, boolean lowercase) {
+		return new String(decode(s, start, end, charset, lowercase), charset);
+	}
+
+
+
+	/**
+	 * Decodes {@code s[start, end)}, which must only contain US-ASCII
+	 * characters and valid escape sequences, into
+	 * {@code decoded[offset, ...)}.
+	 *
+	 * @return Position in {@code decoded} after the last written octet
+	 */
+	private static int decodeAscii(CharSequence s, int start, int end, byte[] decoded, int offset, boolean lowercase) {
+		for (int i = start; i < end; ++i) {
+			final char c = s.charAt(i);
+
+			if ('%' == c) {
+				decoded[offset++] = (byte)((hex(s.charAt(i + 1)) << 4) | hex(s.charAt(i + 2)));
+				i += 2;
+			} else if (lowercase && (c >= 'A') && (c <= 'Z')) {
+				decoded[offset++] = (byte)(c | 0x20);
+			} else {
+				decoded[offset++] = (byte)c;
+			}
+		}
+		return offset;
+	}
+
+	/**
+	 * Slow path for input containing literal characters outside of
+	 * US-ASCII, which will be encoded using {@code charset}.
+	 */
+	private static byte[] decodeNonAscii(CharSequence s, int start, int end, Charset charset, boolean lowercase) {
+		byte[] decoded = new byte[end - start];
+		int offset = 0;
+
+		for (int i = start; i < end;) {
+
+			/* Find run of either US-ASCII or other characters
+			 */
+			final boolean ascii = s.charAt(i) < 0x80;
+			int run = i + 1;
+
+			while ((run < end) && (ascii == (s.charAt(run) < 0x80))) {
+				++run;
+			}
+
+			if (ascii) {
+				countEscapes(s, i, run);
+				decoded = ensureCapacity(decoded, offset + run - i);
+				offset = decodeAscii(s, i, run, decoded, offset, lowercase);
+			} else {
+				String literal = s.subSequence(i, run).toString();
+
+				if (lowercase) {
+					literal = literal.toLowerCase(Locale.ROOT);
+				}
+
+				final byte[] encoded = literal.getBytes(charset);
+				decoded = ensureCapacity(decoded, offset + encoded.length);
+				System.arraycopy(encoded, 0, decoded, offset, encoded.length);
+				offset += encoded.length;
+			}
+
+			i = run;
+		}
+
+		return (offset == decoded.length) ? decoded : Arrays.copyOf(decoded, offset);
+	}
+
+	private static byte[] ensureCapacity(byte[] buffer, int capacity) {
+		if (capacity <= buffer.length) {
+			return buffer;
+		}
+		return Arrays.copyOf(buffer, Math.max(capacity, 2 * buffer.length));
+	}
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes `%hh' escape sequences of an US-ASCII octet stream on the fly
+ * 
+ * All other octets, including `+' and octets outside of US-ASCII, are passed
+ * through unchanged. Escape sequences may span multiple reads from the
+ * underlying stream.
+ * 
+ * @see PercentDecoder
+ *
+ * @author ooxi
+ */
+final class PercentDecodingInputStream extends FilterInputStream {
+	
+	private static final int BUFFER_SIZE = 8192;
+	
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private final byte[] single = new byte[1];
+	private int start = 0;
+	private int end = 0;
+	private boolean eof = false;
+	
+	/**
+	 * Number of encoded octets consumed before {@link #buffer}
+	 */
+	private long position = 0;
+	
+	
+	
+	PercentDecodingInputStream(InputStream in) {
+		super(in);
+	}
+	
+	
+	
+	@Override
+	public int read() throws IOException {
+		return (-1 == read(single, 0, 1)) ? -1 : (single[0] & 0xFF);
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if ((off < 0) || (len < 0) || (len > b.length - off)) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (0 == len) {
+			return 0;
+		}
+		
+		int written = 0;
+		
+		while (written < len) {
+			
+			/* Decode as much as possible from buffer, stopping in
+			 * front of incomplete escape sequences
+			 */
+			while ((written < len) && (start < end)) {
+				final byte octet = buffer[start];
+				
+				if ('%' != octet) {
+					b[off + written++] = octet;
+					++start;
+				} else if (end - start >= 3) {
+					b[off + written++] = (byte)escape(start);
+					start += 3;
+				} else {
+					break;
+				}
+			}
+			
+			/* Do not block if something has already been decoded
+			 */
+			if ((written == len) || ((written > 0) && (start == end))) {
+				break;
+			}
+			if (!fill()) {
+				if (start < end) {
+					throw new IOException("Incomplete percent escape at position "+ (position + start));
+				}
+				break;
+			}
+		}
+		
+		return ((0 == written) && eof && (start == end)) ? -1 : written;
+	}
+	
+	@Override
+	public long skip(long n) throws IOException {
+		final byte[] skipped = new byte[(int)Math.min(n, BUFFER_SIZE)];
+		long remaining = n;
+		
+		while (remaining > 0) {
+			final int read = read(skipped, 0, (int)Math.min(remaining, skipped.length));
+			
+			if (-1 == read) {
+				break;
+			}
+			remaining -= read;
+		}
+		return n - remaining;
+	}
+	
+	@Override
+	public int available() throws IOException {
+		return 0;
+	}
+	
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+	
+	@Override
+	public synchronized void mark(int readlimit) {
+	}
+	
+	@Override
+	public synchronized void reset() throws IOException {
+		throw new IOException("mark/reset not supported");
+	}
+	
+	
+	
+	private int escape(int i) throws IOException {
+		final int high = PercentDecoder.hex(buffer[i + 1]);
+		final int low = PercentDecoder.hex(buffer[i + 2]);
+		
+		if ((high < 0) || (low < 0)) {
+			throw new IOException("Illegal percent escape at position "+ (position + i));
+		}
+		return (high << 4) | low;
+	}
+	
+	/**
+	 * Moves remaining octets to the front of {@link #buffer} and reads
+	 * more octets from the underlying stream.
+	 * 
+	 * @return false iff the underlying stream is exhausted
+	 */
+	private boolean fill() throws IOException {
+		if (eof) {
+			return false;
+		}
+		
+		System.arraycopy(buffer, start, buffer, 0, end - start);
+		position += start;
+		end -= start;
+		start = 0;
+		
+		final int read = in.read(buffer, end, buffer.length - end);
+		
+		if (-1 == read) {
+			eof = true;
+			return false;
+		}
+		end += read;
+		return true;
+	}
+}
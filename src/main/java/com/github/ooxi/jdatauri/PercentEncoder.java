@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+/**
+ * Encodes octets as `%hh' escape sequences unless they may appear
+ * literally in the payload of a data URI.
+ * 
+ * Literal octets are US-ASCII letters, digits and the characters
+ * {@code -_.!~*;/?:@&=+$,}, i.e. all unreserved and reserved characters of
+ * RFC2396 except for `'', `(' and `)' which would terminate data URIs
+ * embedded unquoted in CSS. The result is decoded by {@link PercentDecoder}
+ * to the original octets.
+ *
+ * @author ooxi
+ */
+final class PercentEncoder {
+	
+	private static final char[] HEX = {
+		'0', '1', '2', '3', '4', '5', '6', '7',
+		'8', '9', 'A', 'B', 'C', 'D', 'E', 'F'
+	};
+	
+	/**
+	 * 0 for every octet which may appear literally, 1 for octets which
+	 * have to be escaped. Indexed by the unsigned octet value, thus
+	 * counting escapes does not branch.
+	 */
+	private static final byte[] ESCAPED = new byte[256];
+	
+	static {
+		for (int octet = 0; octet < ESCAPED.length; ++octet) {
+			final boolean literal = ((octet >= 'a') && (octet <= 'z'))
+				|| ((octet >= 'A') && (octet <= 'Z'))
+				|| ((octet >= '0') && (octet <= '9'))
+				|| (-1 != "-_.!~*;/?:@&=+$,".indexOf(octet));
+			
+			ESCAPED[octet] = literal ? (byte)0 : (byte)1;
+		}
+	}
+	
+	
+	
+	private PercentEncoder() {
+	}
+	
+	
+	
+	/**
+	 * @return Number of escape sequences {@code src[offset, offset + length)}
+	 *     requires, each of which adds two characters to the encoded
+	 *     length
+	 */
+	static int countEscapes(byte[] src, int offset, int length) {
+		final int end = offset + length;
+		int escapes = 0;
+		
+		for (int i = offset; i < end; ++i) {
+			escapes += ESCAPED[src[i] & 0xFF];
+		}
+		return escapes;
+	}
+	
+	/**
+	 * Encodes {@code src[srcOffset, srcOffset + length)} into {@code dst}
+	 * starting at {@code dstOffset}
+	 * 
+	 * @return Position in {@code dst} after the last written character
+	 */
+	static int encode(byte[] src, int srcOffset, int length, char[] dst, int dstOffset) {
+		final int end = srcOffset + length;
+		int o = dstOffset;
+		
+		for (int i = srcOffset; i < end; ++i) {
+			final int octet = src[i] & 0xFF;
+			
+			if (0 == ESCAPED[octet]) {
+				dst[o++] = (char)octet;
+			} else {
+				dst[o++] = '%';
+				dst[o++] = HEX[octet >>> 4];
+				dst[o++] = HEX[octet & 0x0F];
+			}
+		}
+		return o;
+	}
+}
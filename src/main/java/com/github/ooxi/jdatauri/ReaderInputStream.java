@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Encodes the characters of a reader on the fly, the counterpart of
+ * {@link java.io.InputStreamReader}
+ * 
+ * Malformed and unmappable characters are replaced, the same way
+ * {@link String#getBytes(Charset)} does.
+ *
+ * @author ooxi
+ */
+final class ReaderInputStream extends InputStream {
+	
+	private static final int BUFFER_SIZE = 8192;
+	
+	private final Reader reader;
+	private final CharsetEncoder encoder;
+	private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+	private final ByteBuffer bytes;
+	
+	private boolean eof = false;
+	private boolean flushed = false;
+	
+	
+	
+	ReaderInputStream(Reader reader, Charset charset) {
+		this.reader = reader;
+		this.encoder = charset.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.bytes = ByteBuffer.allocate((int)Math.ceil(BUFFER_SIZE * encoder.maxBytesPerChar()));
+		
+		chars.flip();
+		bytes.flip();
+	}
+	
+	
+	
+	@Override
+	public int read() throws IOException {
+		while (!bytes.hasRemaining()) {
+			if (!fill()) {
+				return -1;
+			}
+		}
+		return bytes.get() & 0xFF;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if ((off < 0) || (len < 0) || (len > b.length - off)) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (0 == len) {
+			return 0;
+		}
+		
+		while (!bytes.hasRemaining()) {
+			if (!fill()) {
+				return -1;
+			}
+		}
+		
+		final int read = Math.min(len, bytes.remaining());
+		bytes.get(b, off, read);
+		return read;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+	
+	
+	
+	/**
+	 * Encodes the next characters of {@link #reader} into {@link #bytes}
+	 * 
+	 * @return false iff the reader is exhausted and all characters have
+	 *     been encoded
+	 */
+	private boolean fill() throws IOException {
+		if (flushed) {
+			return false;
+		}
+		
+		if (!eof) {
+			chars.compact();
+			eof = (-1 == reader.read(chars));
+			chars.flip();
+		}
+		
+		bytes.clear();
+		final CoderResult result = encoder.encode(chars, bytes, eof);
+		
+		if (result.isError()) {
+			result.throwException();
+		}
+		if (eof && !chars.hasRemaining() && encoder.flush(bytes).isUnderflow()) {
+			flushed = true;
+		}
+		bytes.flip();
+		
+		return bytes.hasRemaining() || !flushed;
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author ooxi
+ */
+public class AsciiSequenceTest {
+	
+	private final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	
+	
+	@Test
+	public void testCharSequence() {
+		final AsciiSequence s = new AsciiSequence(ByteBuffer.wrap("xdata:,\u00e4".getBytes(UTF_8), 1, 8));
+		
+		Assert.assertEquals(8, s.length());
+		Assert.assertEquals('d', s.charAt(0));
+		Assert.assertEquals(0xC3, s.charAt(6));
+		Assert.assertEquals("ta:", s.subSequence(2, 5).toString());
+		Assert.assertEquals(':', s.subSequence(2, 5).charAt(2));
+	}
+	
+	
+	
+	@Test
+	public void testOutOfBounds() {
+		final AsciiSequence s = new AsciiSequence(ByteBuffer.wrap("abcdef".getBytes(UTF_8), 1, 3));
+		
+		try {
+			s.charAt(3);
+			Assert.fail("Index beyond length must be rejected");
+		} catch (IndexOutOfBoundsException e) {
+			// Pass
+		}
+		try {
+			s.subSequence(2, 4);
+			Assert.fail("Range beyond length must be rejected");
+		} catch (IndexOutOfBoundsException e) {
+			// Pass
+		}
+	}
+	
+	
+	
+	@Test
+	public void testIsAscii() {
+		final AsciiSequence s = new AsciiSequence(ByteBuffer.wrap("ab\u00e4c".getBytes(UTF_8)));
+		
+		Assert.assertTrue(s.isAscii(0, 2));
+		Assert.assertFalse(s.isAscii(0, 3));
+		Assert.assertTrue(s.isAscii(4, 5));
+	}
+	
+	
+	
+	@Test
+	public void testDecode() {
+		final ByteBuffer direct = ByteBuffer.allocateDirect(8);
+		direct.put("a\u00e4b".getBytes(UTF_8)).flip();
+		
+		Assert.assertEquals("\u00e4", new AsciiSequence(direct).decode(1, 3, UTF_8));
+		Assert.assertEquals("\u00e4", new AsciiSequence(ByteBuffer.wrap("a\u00e4b".getBytes(UTF_8))).decode(1, 3, UTF_8));
+		Assert.assertEquals(0, direct.position());
+		Assert.assertEquals(4, direct.limit());
+	}
+}
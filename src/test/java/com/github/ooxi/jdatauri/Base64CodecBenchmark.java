@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.util.Random;
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * Compares the throughput of {@link Base64Codec} with commons-codec
+ * 
+ * Not run as part of the test suite, start {@link #main(String[])} with the
+ * test classpath after {@code mvn test-compile}
+ *
+ * @author ooxi
+ */
+public class Base64CodecBenchmark {
+	
+	private static final int PAYLOAD_SIZE = 1024 * 1024;
+	private static final int WARMUP_ROUNDS = 200;
+	private static final int MEASURE_ROUNDS = 500;
+	
+	
+	
+	public static void main(String[] args) {
+		final byte[] data = new byte[PAYLOAD_SIZE];
+		new Random(42).nextBytes(data);
+		final byte[] symbols = Base64.encodeBase64(data);
+		
+		report("encode commons-codec", new Round() {
+			@Override public int run() {
+				return Base64.encodeBase64(data).length;
+			}
+		});
+		report("encode jdatauri", new Round() {
+			@Override public int run() {
+				final byte[] encoded = new byte[(int)Base64Codec.encodedLength(data.length)];
+				return Base64Codec.encode(data, 0, data.length, encoded, 0);
+			}
+		});
+		report("decode commons-codec", new Round() {
+			@Override public int run() {
+				return Base64.decodeBase64(symbols).length;
+			}
+		});
+		report("decode jdatauri", new Round() {
+			@Override public int run() {
+				final byte[] decoded = new byte[Base64Codec.decodedLength(symbols, 0, symbols.length)];
+				return Base64Codec.decode(symbols, 0, symbols.length, decoded, 0);
+			}
+		});
+	}
+	
+	
+	
+	private static void report(String name, Round round) {
+		long blackhole = 0;
+		
+		for (int i = 0; i < WARMUP_ROUNDS; ++i) {
+			blackhole += round.run();
+		}
+		
+		final long start = System.nanoTime();
+		
+		for (int i = 0; i < MEASURE_ROUNDS; ++i) {
+			blackhole += round.run();
+		}
+		
+		final double seconds = (System.nanoTime() - start) / 1e9;
+		final double megabytes = (double)PAYLOAD_SIZE * MEASURE_ROUNDS / (1024 * 1024);
+		
+		System.out.printf("%-24s %8.1f MiB/s (%d)%n", name, megabytes / seconds, blackhole);
+	}
+	
+	
+	
+	private static interface Round {
+		int run();
+	}
+}
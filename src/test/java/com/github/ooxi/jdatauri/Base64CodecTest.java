@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author ooxi
+ */
+public class Base64CodecTest {
+	
+	private final Charset US_ASCII = Charset.forName("US-ASCII");
+	
+	
+	
+	@Test
+	public void testEncodedLength() {
+		Assert.assertEquals(0, Base64Codec.encodedLength(0));
+		Assert.assertEquals(4, Base64Codec.encodedLength(1));
+		Assert.assertEquals(4, Base64Codec.encodedLength(2));
+		Assert.assertEquals(4, Base64Codec.encodedLength(3));
+		Assert.assertEquals(8, Base64Codec.encodedLength(4));
+		Assert.assertEquals(4L * 1000000000L, Base64Codec.encodedLength(3L * 1000000000L));
+	}
+	
+	
+	
+	@Test
+	public void testEncode() {
+		final Random random = new Random(42);
+		
+		for (int length = 0; length < 100; ++length) {
+			final byte[] data = new byte[length];
+			random.nextBytes(data);
+			
+			final byte[] symbols = new byte[(int)Base64Codec.encodedLength(length) + 2];
+			final int end = Base64Codec.encode(data, 0, length, symbols, 1);
+			
+			Assert.assertEquals(1 + Base64Codec.encodedLength(length), end);
+			Assert.assertEquals(Base64.encodeBase64String(data), new String(symbols, 1, end - 1, US_ASCII));
+		}
+	}
+	
+	
+	
+	@Test
+	public void testEncodeOffset() {
+		final byte[] data = "xxfoobarxx".getBytes(US_ASCII);
+		final byte[] symbols = new byte[8];
+		
+		Assert.assertEquals(8, Base64Codec.encode(data, 2, 6, symbols, 0));
+		Assert.assertEquals("Zm9vYmFy", new String(symbols, US_ASCII));
+	}
+	
+	
+	
+	@Test
+	public void testDecodeTable() {
+		Assert.assertEquals(0, Base64Codec.DECODE_TABLE['A']);
+		Assert.assertEquals(26, Base64Codec.DECODE_TABLE['a']);
+		Assert.assertEquals(52, Base64Codec.DECODE_TABLE['0']);
+		Assert.assertEquals(62, Base64Codec.DECODE_TABLE['+']);
+		Assert.assertEquals(62, Base64Codec.DECODE_TABLE['-']);
+		Assert.assertEquals(63, Base64Codec.DECODE_TABLE['/']);
+		Assert.assertEquals(63, Base64Codec.DECODE_TABLE['_']);
+		Assert.assertEquals(-1, Base64Codec.DECODE_TABLE['=']);
+		Assert.assertEquals(-1, Base64Codec.DECODE_TABLE[' ']);
+	}
+	
+	
+	
+	@Test
+	public void testDecode() {
+		final Random random = new Random(42);
+		final byte[] noise = " \r\n\t=-_*%\u00e4".getBytes(Charset.forName("ISO-8859-1"));
+		
+		for (int length = 0; length < 200; ++length) {
+			final byte[] data = new byte[length];
+			random.nextBytes(data);
+			
+			final byte[] symbols = Base64.encodeBase64(data);
+			Assert.assertArrayEquals(data, decode(symbols));
+			
+			/* Sprinkle octets outside of the alphabet, padding and URL
+			 * safe symbols into the encoded data
+			 */
+			for (int i = 0; i < symbols.length; ++i) {
+				if (0 == random.nextInt(8)) {
+					symbols[i] = noise[random.nextInt(noise.length)];
+				}
+			}
+			Assert.assertArrayEquals(Base64.decodeBase64(symbols), decode(symbols));
+		}
+	}
+	
+	
+	
+	@Test
+	public void testDecodeTrailing() {
+		Assert.assertEquals("", new String(decode("Z".getBytes(US_ASCII)), US_ASCII));
+		Assert.assertEquals("f", new String(decode("Zg".getBytes(US_ASCII)), US_ASCII));
+		Assert.assertEquals("fo", new String(decode("Zm8".getBytes(US_ASCII)), US_ASCII));
+		Assert.assertEquals("foo", new String(decode("Zm9v".getBytes(US_ASCII)), US_ASCII));
+		Assert.assertEquals("f", new String(decode("Zg==Zm9v".getBytes(US_ASCII)), US_ASCII));
+		Assert.assertEquals("foob", new String(decode("Zm9v\r\nYg".getBytes(US_ASCII)), US_ASCII));
+	}
+	
+	
+	
+	@Test
+	public void testDecodeInPlace() {
+		final byte[] buffer = "xxZm9vYmFy".getBytes(US_ASCII);
+		
+		Assert.assertEquals(6, Base64Codec.decode(buffer, 2, 8, buffer, 0));
+		Assert.assertEquals("foobar", new String(buffer, 0, 6, US_ASCII));
+	}
+	
+	
+	
+	/**
+	 * Decoding straight from a character sequence must ignore characters
+	 * outside of US-ASCII, even if their lower octet is part of the
+	 * alphabet
+	 */
+	@Test
+	public void testDecodeCharSequence() {
+		for (final String symbols : new String[] {"", "Z", "Zg", "Zm8", "Zm9v", "Zg==Zm9v", "Zm9v\r\nYg", "Zm9vYmFy", "Zm9v\u0159\u0161YmFy", "Zm\u00e49vYm-_"}) {
+			final byte[] data = new byte[Base64Codec.decodedLength(symbols, 0, symbols.length())];
+			final byte[] expected = decode(symbols.replaceAll("[^\\p{ASCII}]", "").getBytes(US_ASCII));
+			
+			Assert.assertEquals(data.length, Base64Codec.decode(symbols, 0, symbols.length(), data, 0));
+			Assert.assertArrayEquals(expected, data);
+		}
+	}
+	
+	
+	
+	private static byte[] decode(byte[] symbols) {
+		final byte[] data = new byte[Base64Codec.decodedLength(symbols, 0, symbols.length)];
+		
+		Assert.assertEquals(data.length, Base64Codec.decode(symbols, 0, symbols.length, data, 0));
+		return data;
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Random;
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author ooxi
+ */
+public class Base64DecodingOutputStreamTest {
+	
+	private final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	
+	
+	@Test
+	public void testChunks() throws IOException {
+		final Random random = new Random(42);
+		
+		for (int length : new int[] {0, 1, 2, 3, 3 * 1024 - 1, 3 * 1024, 3 * 1024 + 1, 10000}) {
+			final byte[] data = new byte[length];
+			random.nextBytes(data);
+			
+			/* Line breaks move quanta across chunk boundaries
+			 */
+			final byte[] symbols = Base64.encodeBase64(data, true);
+			
+			Assert.assertArrayEquals(data, decode(symbols, random));
+		}
+	}
+	
+	
+	
+	@Test
+	public void testLenient() throws IOException {
+		final String[] testStrings = {
+			"",
+			"Q",
+			"QQ",
+			"QUI",
+			"QUJD",
+			"QUJDRA==QUJD",
+			"QU JD\r\nRA\t==",
+			"Q!U@J#D$R*A",
+			"-_-_",
+			"=QUJD",
+			"QUJDQ"
+		};
+		
+		for (final String testString : testStrings) {
+			final byte[] symbols = testString.getBytes(UTF_8);
+			Assert.assertArrayEquals(testString, Base64.decodeBase64(symbols), decode(symbols, new Random(42)));
+		}
+	}
+	
+	
+	
+	@Test
+	public void testUnderlyingStreamRemainsOpen() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream() {
+			
+			@Override
+			public void close() {
+				Assert.fail("Underlying stream must not be closed");
+			}
+		};
+		
+		final Base64DecodingOutputStream decoder = new Base64DecodingOutputStream(out);
+		decoder.write("Zm8".getBytes(UTF_8));
+		decoder.close();
+		decoder.close();
+		out.write(',');
+		
+		Assert.assertEquals("fo,", new String(out.toByteArray(), UTF_8));
+	}
+	
+	
+	
+	/**
+	 * Mixes single octets and arrays of varying length
+	 */
+	private static byte[] decode(byte[] symbols, Random random) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final Base64DecodingOutputStream decoder = new Base64DecodingOutputStream(out);
+		
+		for (int offset = 0; offset < symbols.length;) {
+			if (0 == offset % 7) {
+				decoder.write(symbols[offset++]);
+			} else {
+				final int n = Math.min(symbols.length - offset, 1 + random.nextInt(1000));
+				decoder.write(symbols, offset, n);
+				offset += n;
+			}
+		}
+		decoder.close();
+		
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author ooxi
+ */
+public class DataUriArenaTest {
+	
+	private final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	
+	
+	@Test
+	public void testHeap() throws IOException {
+		testArena(new DataUriArena.Pool(64, false));
+	}
+	
+	@Test
+	public void testDirect() throws IOException {
+		testArena(new DataUriArena.Pool(64, true));
+	}
+	
+	private void testArena(DataUriArena.Pool pool) throws IOException {
+		final String gif = "data:image/gif;filename=pixel.gif;base64,R0lGODlhAQABAIAAAAAAAP///yH5BAEAAAAALAAAAAABAAEAAAIBRAA7";
+		final String text = "data:text/plain;charset=utf-8,h%C3%A4llo";
+		
+		final DataUriArena arena = pool.open();
+		final DataUri first = arena.parse(gif, UTF_8);
+		final DataUri second = arena.parse(ByteBuffer.wrap(text.getBytes(UTF_8)), UTF_8);
+		
+		final DataUri expectedFirst = DataUri.parse(gif, UTF_8);
+		final DataUri expectedSecond = DataUri.parse(text, UTF_8);
+		
+		Assert.assertEquals("image/gif", first.getMime());
+		Assert.assertEquals("pixel.gif", first.getFilename());
+		Assert.assertEquals(UTF_8, second.getCharset());
+		Assert.assertEquals("h\u00e4llo", new String(second.getData(), UTF_8));
+		
+		Assert.assertEquals(expectedFirst, first);
+		Assert.assertEquals(first, expectedFirst);
+		Assert.assertEquals(expectedFirst.hashCode(), first.hashCode());
+		Assert.assertEquals(expectedSecond, second);
+		Assert.assertEquals(expectedSecond.hashCode(), second.hashCode());
+		Assert.assertArrayEquals(expectedFirst.getDigest(), first.getDigest());
+		Assert.assertEquals(expectedFirst.toString(), first.toString());
+		Assert.assertEquals(expectedFirst.getDataBuffer(), first.getDataBuffer());
+		Assert.assertTrue(first.getDataBuffer().isReadOnly());
+		
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		first.writeTo(out);
+		Assert.assertEquals(expectedFirst.toString(), new String(out.toByteArray(), UTF_8));
+		
+		/* Modifying the copy must not modify the arena
+		 */
+		first.getData()[0] = 0;
+		Assert.assertEquals(expectedFirst, first);
+		
+		Assert.assertEquals(expectedFirst.getData().length + expectedSecond.getData().length, arena.getDecodedLength());
+		
+		final byte[] copy = first.getData();
+		final ByteBuffer view = first.getDataBuffer();
+		final int hashCode = first.hashCode();
+		arena.close();
+		arena.close();
+		
+		/* Views must not expose recycled slabs, while hash code, digest
+		 * and equality remain available
+		 */
+		Assert.assertEquals(0, view.remaining());
+		try {
+			view.get(0);
+			Assert.fail("View of closed arena must not be readable");
+		} catch (IndexOutOfBoundsException e) {
+			// Pass
+		}
+		try {
+			first.getDataBuffer();
+			Assert.fail("Payload of closed arena must not be accessible");
+		} catch (IllegalStateException e) {
+			// Pass
+		}
+		Assert.assertEquals(hashCode, first.hashCode());
+		Assert.assertArrayEquals(expectedFirst.getDigest(), first.getDigest());
+		Assert.assertEquals(expectedFirst, first);
+		Assert.assertEquals(first, expectedFirst);
+		Assert.assertFalse(first.equals(second));
+		Assert.assertFalse(expectedSecond.equals(first));
+		
+		try {
+			first.getData();
+			Assert.fail("Payload of closed arena must not be accessible");
+		} catch (IllegalStateException e) {
+			// Pass
+		}
+		try {
+			arena.parse(gif, UTF_8);
+			Assert.fail("Closed arena must not parse");
+		} catch (IllegalStateException e) {
+			// Pass
+		}
+		Assert.assertArrayEquals(expectedFirst.getData(), copy);
+		Assert.assertEquals("image/gif", first.getMime());
+	}
+	
+	
+	
+	@Test
+	public void testSlabsRecycled() {
+		final DataUriArena.Pool pool = new DataUriArena.Pool(16, false, 1);
+		
+		final DataUriArena first = pool.open();
+		first.parse("data:,0123456789", UTF_8);
+		first.parse("data:,0123456789", UTF_8);
+		Assert.assertEquals(0, pool.getIdleSlabCount());
+		first.close();
+		
+		/* Only a single idle slab is retained
+		 */
+		Assert.assertEquals(1, pool.getIdleSlabCount());
+		
+		final DataUriArena second = pool.open();
+		final DataUri dataUri = second.parse("data:,abc", UTF_8);
+		Assert.assertEquals(0, pool.getIdleSlabCount());
+		Assert.assertEquals("abc", new String(dataUri.getData(), UTF_8));
+		second.close();
+		Assert.assertEquals(1, pool.getIdleSlabCount());
+	}
+	
+	
+	
+	@Test
+	public void testOversized() {
+		final DataUriArena.Pool pool = new DataUriArena.Pool(4, true);
+		final byte[] payload = new byte[100];
+		Arrays.fill(payload, (byte)'x');
+		
+		final DataUriArena arena = pool.open();
+		final DataUri dataUri = arena.parse("data:,"+ new String(payload, UTF_8), UTF_8);
+		Assert.assertArrayEquals(payload, dataUri.getData());
+		Assert.assertEquals(new DataUri("text/plain", null, payload), dataUri);
+		
+		/* Dedicated buffers are not pooled
+		 */
+		arena.close();
+		Assert.assertEquals(0, pool.getIdleSlabCount());
+	}
+	
+	
+	
+	@Test(timeout = 10000)
+	public void testTrailingLineBreak() {
+		final DataUriArena arena = new DataUriArena.Pool(64, false).open();
+		
+		for (final String uri : new String[] {"data:;base64,QUJD\r\n", "data:;base64,QUJD\n", "data:;base64,QU%0AJD%0D%0A"}) {
+			Assert.assertArrayEquals(uri, new byte[] {'A', 'B', 'C'}, arena.parse(uri, UTF_8).getData());
+			Assert.assertArrayEquals(uri, new byte[] {'A', 'B', 'C'}, arena.parse(ByteBuffer.wrap(uri.getBytes(UTF_8)), UTF_8).getData());
+		}
+		arena.close();
+	}
+	
+	
+	
+	@Test
+	public void testMalformed() {
+		final DataUriArena arena = new DataUriArena.Pool(64, false).open();
+		
+		try {
+			arena.parse("data:,%g0", UTF_8);
+			Assert.fail("Illegal percent escape must be rejected");
+		} catch (IllegalArgumentException e) {
+			// Pass
+		}
+		Assert.assertEquals(0, arena.getDecodedLength());
+		Assert.assertEquals("foo", new String(arena.parse("data:,foo", UTF_8).getData(), UTF_8));
+		arena.close();
+	}
+	
+	
+	
+	@Test
+	public void testIllegalPool() {
+		try {
+			new DataUriArena.Pool(0, false);
+			Assert.fail("Slab size must be positive");
+		} catch (IllegalArgumentException e) {
+			// Pass
+		}
+	}
+}
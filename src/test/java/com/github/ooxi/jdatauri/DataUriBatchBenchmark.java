@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Compares the throughput of {@link DataUriBatch} with parsing data URIs
+ * one after another, catching exceptions for every malformed one
+ * 
+ * Not run as part of the test suite, start {@link #main(String[])} with the
+ * test classpath after {@code mvn test-compile}
+ *
+ * @author ooxi
+ */
+public class DataUriBatchBenchmark {
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final int BATCH_SIZE = 5000;
+	private static final int WARMUP_ROUNDS = 50;
+	private static final int MEASURE_ROUNDS = 100;
+	
+	
+	
+	public static void main(String[] args) throws InterruptedException {
+		final Random random = new Random(42);
+		final List<String> uris = new ArrayList<String>(BATCH_SIZE);
+		
+		for (int i = 0; i < BATCH_SIZE; ++i) {
+			final byte[] data = new byte[random.nextInt(4096)];
+			random.nextBytes(data);
+			
+			final String uri = new DataUri("image/png", null, data).toString();
+			uris.add((0 == i % 100) ? uri + "%" : uri);
+		}
+		
+		final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		
+		try {
+			for (int round = 0; round < WARMUP_ROUNDS; ++round) {
+				loop(uris);
+				DataUriBatch.parse(uris, UTF_8, executor);
+			}
+			
+			long start = System.nanoTime();
+			for (int round = 0; round < MEASURE_ROUNDS; ++round) {
+				loop(uris);
+			}
+			report("loop", System.nanoTime() - start);
+			
+			start = System.nanoTime();
+			for (int round = 0; round < MEASURE_ROUNDS; ++round) {
+				DataUriBatch.parse(uris, UTF_8, executor);
+			}
+			report("DataUriBatch", System.nanoTime() - start);
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	
+	
+	private static int loop(List<String> uris) {
+		int errors = 0;
+		
+		for (final String uri : uris) {
+			try {
+				DataUri.parse(uri, UTF_8);
+			} catch (IllegalArgumentException e) {
+				++errors;
+			}
+		}
+		return errors;
+	}
+	
+	private static void report(String name, long nanos) {
+		final double seconds = nanos / 1e9;
+		System.out.printf("%-16s %10.0f data URIs/s%n", name, (double)BATCH_SIZE * MEASURE_ROUNDS / seconds);
+	}
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author ooxi
+ */
+public class DataUriBatchTest {
+	
+	private final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private static ExecutorService executor;
+	
+	
+	
+	@BeforeClass
+	public static void setUpClass() {
+		executor = Executors.newFixedThreadPool(4);
+	}
+	
+	@AfterClass
+	public static void tearDownClass() {
+		executor.shutdown();
+	}
+	
+	
+	
+	@Test
+	public void testParse() throws InterruptedException {
+		final List<String> uris = new ArrayList<String>();
+		
+		for (int i = 0; i < 1000; ++i) {
+			uris.add((0 == i % 7) ? "data:text/plain,%g" + i : "data:text/plain;base64," + Integer.toString(i).replace('0', 'A'));
+		}
+		
+		final List<DataUriBatch.Result> results = DataUriBatch.parse(uris, UTF_8, executor);
+		Assert.assertEquals(uris.size(), results.size());
+		
+		for (int i = 0; i < uris.size(); ++i) {
+			final DataUriBatch.Result result = results.get(i);
+			
+			if (0 == i % 7) {
+				Assert.assertFalse(result.isSuccess());
+				Assert.assertNull(result.getDataUri());
+				Assert.assertTrue(result.getError() instanceof IllegalArgumentException);
+			} else {
+				Assert.assertTrue(result.isSuccess());
+				Assert.assertNull(result.getError());
+				Assert.assertEquals(DataUri.parse(uris.get(i), UTF_8), result.getDataUri());
+			}
+		}
+	}
+	
+	
+	
+	@Test
+	public void testParseArray() throws InterruptedException {
+		final List<DataUriBatch.Result> results = DataUriBatch.parse(new CharSequence[] {
+			"data:,A%20brief%20note",
+			null,
+			"data:text/plain;charset=unknown-charset,",
+			"http://example.com/"
+		}, UTF_8, executor);
+		
+		Assert.assertEquals(4, results.size());
+		Assert.assertEquals("A brief note", new String(results.get(0).getDataUri().getData(), UTF_8));
+		Assert.assertTrue(results.get(1).getError() instanceof NullPointerException);
+		Assert.assertTrue(results.get(2).getError() instanceof IllegalArgumentException);
+		Assert.assertTrue(results.get(3).getError() instanceof IllegalArgumentException);
+	}
+	
+	
+	
+	@Test
+	public void testParseEmpty() throws InterruptedException {
+		Assert.assertTrue(DataUriBatch.parse(Arrays.<CharSequence>asList(), UTF_8, executor).isEmpty());
+	}
+}
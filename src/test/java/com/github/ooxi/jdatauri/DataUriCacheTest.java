@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author ooxi
+ */
+public class DataUriCacheTest {
+	
+	private final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	
+	
+	@Test
+	public void testHit() {
+		final DataUriCache cache = new DataUriCache(1024);
+		final String uri = "data:image/gif;base64,R0lGODlhAQABAIAAAAAAAP///yH5BAEAAAAALAAAAAABAAEAAAIBRAA7";
+		
+		final DataUri first = cache.parse(uri, UTF_8);
+		final DataUri second = cache.parse(new StringBuilder(uri), UTF_8);
+		
+		Assert.assertSame(first, second);
+		Assert.assertEquals(DataUri.parse(uri, UTF_8), first);
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(1, cache.getMissCount());
+		Assert.assertEquals(0, cache.getEvictionCount());
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals(first.getDataBuffer().remaining() + uri.length(), cache.getWeight());
+		
+		/* The charset is part of the key
+		 */
+		Assert.assertNotSame(first, cache.parse(uri, Charset.forName("ISO-8859-1")));
+		Assert.assertEquals(2, cache.getMissCount());
+	}
+	
+	
+	
+	@Test
+	public void testImmutable() {
+		final DataUriCache cache = new DataUriCache(1024);
+		final String uri = "data:,foo";
+		
+		cache.parse(uri, UTF_8).getData()[0] = 'b';
+		Assert.assertEquals("foo", new String(cache.parse(uri, UTF_8).getData(), UTF_8));
+		Assert.assertTrue(cache.parse(uri, UTF_8).getDataBuffer().isReadOnly());
+		
+		/* Cached instances are marked as shared instead of being copied,
+		 * thus every call returns an independent clone
+		 */
+		final DataUri shared = cache.parse(uri, UTF_8);
+		Assert.assertNotSame(shared.getData(), shared.getData());
+		Assert.assertEquals(DataUri.parse(uri, UTF_8), shared);
+		Assert.assertEquals(DataUri.parse(uri, UTF_8).hashCode(), shared.hashCode());
+	}
+	
+	
+	
+	@Test
+	public void testMalformed() {
+		final DataUriCache cache = new DataUriCache(1024);
+		
+		try {
+			cache.parse("data:text/plain", UTF_8);
+			Assert.fail("Malformed data URI must not be parsed");
+		} catch (IllegalArgumentException e) {
+			// Pass
+		}
+		Assert.assertEquals(0, cache.size());
+	}
+	
+	
+	
+	@Test
+	public void testEviction() {
+		final DataUriCache cache = new DataUriCache(10 * weight(0));
+		
+		for (int i = 0; i < 20; ++i) {
+			cache.parse(uri(i), UTF_8);
+		}
+		
+		Assert.assertEquals(10, cache.size());
+		Assert.assertEquals(10, cache.getEvictionCount());
+		Assert.assertTrue(cache.getWeight() <= 10 * weight(0));
+		
+		/* Least recently used entries have been evicted
+		 */
+		cache.parse(uri(19), UTF_8);
+		Assert.assertEquals(1, cache.getHitCount());
+		cache.parse(uri(0), UTF_8);
+		Assert.assertEquals(1, cache.getHitCount());
+	}
+	
+	
+	
+	/**
+	 * Frequently used data URIs survive a scan of data URIs used only once
+	 */
+	@Test
+	public void testFrequency() {
+		final DataUriCache cache = new DataUriCache(10 * weight(0));
+		
+		for (int i = 0; i < 5; ++i) {
+			cache.parse(uri(i), UTF_8);
+			cache.parse(uri(i), UTF_8);
+		}
+		for (int i = 100; i < 200; ++i) {
+			cache.parse(uri(i), UTF_8);
+		}
+		
+		final long hits = cache.getHitCount();
+		
+		for (int i = 0; i < 5; ++i) {
+			cache.parse(uri(i), UTF_8);
+		}
+		Assert.assertEquals(hits + 5, cache.getHitCount());
+	}
+	
+	
+	
+	@Test
+	public void testTooLarge() {
+		final DataUriCache cache = new DataUriCache(weight(0) - 1);
+		
+		cache.parse(uri(0), UTF_8);
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(0, cache.getEvictionCount());
+	}
+	
+	
+	
+	@Test
+	public void testConcurrent() throws Exception {
+		final DataUriCache cache = new DataUriCache(50 * weight(0));
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		
+		try {
+			final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+			
+			for (int t = 0; t < 4; ++t) {
+				final int seed = t;
+				
+				tasks.add(new Callable<Void>() {
+					@Override public Void call() {
+						for (int i = 0; i < 10000; ++i) {
+							final int n = (i * 31 + seed) % 100;
+							Assert.assertEquals(DataUri.parse(uri(n), UTF_8), cache.parse(uri(n), UTF_8));
+						}
+						return null;
+					}
+				});
+			}
+			
+			for (final Future<Void> task : executor.invokeAll(tasks)) {
+				task.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		
+		Assert.assertEquals(40000, cache.getHitCount() + cache.getMissCount());
+		Assert.assertTrue(cache.getWeight() <= 50 * weight(0));
+	}
+	
+	
+	
+	private static String uri(int i) {
+		return String.format("data:text/plain;filename=%03d.txt,%0100d", i, i);
+	}
+	
+	private static long weight(int i) {
+		return uri(i).length() + 100;
+	}
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author ooxi
+ */
+public class DataUriCompressionTest {
+	
+	private final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private final DataUriParser parser = new DataUriParser.Builder()
+		.addContentEncoding(DataUriCompression.GZIP)
+		.addContentEncoding(DataUriCompression.DEFLATE)
+		.build();
+	
+	
+	
+	@Test
+	public void testRoundTrip() throws IOException {
+		final DataUri dataUri = new DataUri("image/svg+xml", UTF_8, svg(200).getBytes(UTF_8));
+		
+		for (DataUriCompression compression : DataUriCompression.values()) {
+			final String compressed = dataUri.toString(compression);
+			
+			Assert.assertTrue(compressed, compressed.startsWith("data:image/svg+xml;charset=UTF-8;"+ compression.getName() +";base64,"));
+			Assert.assertTrue(compressed.length() < dataUri.toString().length() / 4);
+			Assert.assertEquals(dataUri, parser.parse(compressed));
+			
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			dataUri.writeTo(out, compression);
+			Assert.assertEquals(dataUri, parser.parse(new String(out.toByteArray(), UTF_8)));
+			
+			final DataUriInputStream in = new DataUriInputStream(new ByteArrayInputStream(out.toByteArray()), parser);
+			final ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[100];
+			
+			for (int read = in.read(buffer); -1 != read; read = in.read(buffer)) {
+				decoded.write(buffer, 0, read);
+			}
+			in.close();
+			
+			Assert.assertEquals("image/svg+xml", in.getMime());
+			Assert.assertEquals(compression.getName() +";base64", in.getContentEncoding());
+			Assert.assertArrayEquals(dataUri.getData(), decoded.toByteArray());
+		}
+	}
+	
+	
+	
+	@Test
+	public void testStacked() throws IOException {
+		final DataUri dataUri = new DataUri("text/csv", null, "a,b\n1,2\n".getBytes(UTF_8));
+		
+		/* Payload deflated first and gzipped afterwards, thus gzip
+		 * follows deflate in the header
+		 */
+		final byte[] deflated = DataUri.parse(compress(dataUri.getData(), DataUriCompression.DEFLATE), UTF_8).getData();
+		final String stacked = compress(deflated, DataUriCompression.GZIP).replace(";gzip;", ";deflate;gzip;");
+		
+		Assert.assertTrue(stacked, stacked.startsWith("data:text/csv;deflate;gzip;base64,"));
+		Assert.assertEquals(dataUri, parser.parse(stacked));
+		
+		/* Every content encoding is reported
+		 */
+		final DataUriInputStream in = new DataUriInputStream(new ByteArrayInputStream(stacked.getBytes(UTF_8)), parser);
+		Assert.assertEquals("deflate;gzip;base64", in.getContentEncoding());
+		in.close();
+		
+		final DataUriHeader[] header = {null};
+		final DataUriPushParser push = new DataUriPushParser(parser, new DataUriPushParser.Handler() {
+			
+			@Override
+			public void header(DataUriHeader h) {
+				header[0] = h;
+			}
+			
+			@Override
+			public void data(ByteBuffer data) {
+			}
+			
+			@Override
+			public void end() {
+			}
+		});
+		push.feed(ByteBuffer.wrap(stacked.getBytes(UTF_8)));
+		push.finish();
+		Assert.assertEquals("deflate;gzip;base64", header[0].getContentEncoding());
+	}
+	
+	
+	
+	@Test
+	public void testIncompressible() {
+		final byte[] random = new byte[1000];
+		new Random(42).nextBytes(random);
+		
+		final DataUri dataUri = new DataUri("application/octet-stream", null, random);
+		Assert.assertEquals(dataUri.toString(), dataUri.toString(DataUriCompression.GZIP));
+		
+		/* Tiny payloads never pay off
+		 */
+		final DataUri tiny = new DataUri("text/plain", null, "aaaa".getBytes(UTF_8));
+		Assert.assertEquals(tiny.toString(), tiny.toString(DataUriCompression.DEFLATE));
+		
+		final DataUri empty = new DataUri("text/plain", null, new byte[0]);
+		Assert.assertEquals(empty.toString(), empty.toString(DataUriCompression.GZIP));
+	}
+	
+	
+	
+	@Test
+	public void testIgnoredByDefault() {
+		final DataUri dataUri = new DataUri("text/plain", null, svg(10).getBytes(UTF_8));
+		final String compressed = dataUri.toString(DataUriCompression.GZIP);
+		
+		/* Parsers without the content encoding return the compressed
+		 * payload
+		 */
+		Assert.assertFalse(dataUri.equals(DataUri.parse(compressed, UTF_8)));
+		Assert.assertEquals(0x1F, DataUri.parse(compressed, UTF_8).getData()[0]);
+	}
+	
+	
+	
+	private static String svg(int circles) {
+		final StringBuilder svg = new StringBuilder("<svg xmlns=\"http://www.w3.org/2000/svg\">");
+		
+		for (int i = 0; i < circles; ++i) {
+			svg.append("<circle cx=\"").append(i).append("\" cy=\"10\" r=\"5\" fill=\"red\"/>");
+		}
+		return svg.append("</svg>").toString();
+	}
+	
+	private String compress(byte[] data, DataUriCompression compression) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new DataUri("text/csv", null, data).writeTo(out, compression);
+		return new String(out.toByteArray(), UTF_8);
+	}
+}
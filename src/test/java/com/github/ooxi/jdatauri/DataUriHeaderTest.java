@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.nio.charset.Charset;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author ooxi
+ */
+public class DataUriHeaderTest {
+	
+	private final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	
+	
+	@Test
+	public void testConstructor() {
+		DataUriHeader header = new DataUriHeader("text/plain", UTF_8, "test.txt", "inline", "base64", 3);
+		
+		Assert.assertEquals("text/plain", header.getMime());
+		Assert.assertEquals(UTF_8, header.getCharset());
+		Assert.assertEquals("test.txt", header.getFilename());
+		Assert.assertEquals("inline", header.getContentDisposition());
+		Assert.assertEquals("base64", header.getContentEncoding());
+		Assert.assertEquals(3, header.getDecodedLength());
+	}
+	
+	
+	
+	@Test
+	public void testDisallowMimeNull() {
+		try {
+			new DataUriHeader(null, UTF_8, null, null, null, 0);
+			Assert.fail("MIME must not be null");
+		} catch (NullPointerException e) {
+			// Pass
+		}
+	}
+	
+	
+	
+	@Test
+	public void testDisallowNegativeLength() {
+		try {
+			new DataUriHeader("text/plain", UTF_8, null, null, null, -2);
+			Assert.fail("Decoded length must not be negative");
+		} catch (IllegalArgumentException e) {
+			// Pass
+		}
+	}
+	
+	
+	
+	@Test
+	public void testUnknownLength() {
+		DataUriHeader header = new DataUriHeader("text/plain", UTF_8, null, null, null, DataUriHeader.UNKNOWN_LENGTH);
+		
+		Assert.assertEquals(DataUriHeader.UNKNOWN_LENGTH, header.getDecodedLength());
+	}
+	
+	
+	
+	@Test
+	public void testEquals() {
+		DataUriHeader header = new DataUriHeader("text/plain", UTF_8, "test.txt", null, "base64", 3);
+		DataUriHeader equal = new DataUriHeader("text/plain", UTF_8, "test.txt", null, "base64", 3);
+		DataUriHeader notEqual = new DataUriHeader("text/plain", UTF_8, "test.txt", null, "base64", 4);
+		
+		Assert.assertEquals(header, equal);
+		Assert.assertEquals(header.hashCode(), equal.hashCode());
+		Assert.assertFalse(header.equals(notEqual));
+		Assert.assertFalse(header.equals(null));
+	}
+}
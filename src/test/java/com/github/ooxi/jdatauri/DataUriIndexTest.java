@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author ooxi
+ */
+public class DataUriIndexTest {
+	
+	private final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private static final String GIF = "data:image/gif;base64,R0lGODlhAQABAIAAAAAAAP///yH5BAEAAAAALAAAAAABAAEAAAIBRAA7";
+	private static final String SVG = "data:image/svg+xml;charset=utf-8;filename=%C3%A4.svg,%3Csvg%2F%3E";
+	
+	private static final String DOCUMENT
+		= "<p>\u00e4</p><img src=\"" + GIF + "\">\n"
+		+ "<img src=\"data:image/png;base64\">\n"
+		+ "<style>.b { background: url(" + SVG + "); }</style>";
+	
+	
+	
+	@Test
+	public void testBuild() throws IOException {
+		final File file = File.createTempFile("jdatauri", ".html");
+		
+		try {
+			final FileOutputStream out = new FileOutputStream(file);
+			
+			try {
+				out.write(DOCUMENT.getBytes(UTF_8));
+			} finally {
+				out.close();
+			}
+			
+			final RandomAccessFile raf = new RandomAccessFile(file, "r");
+			
+			try {
+				final MappedByteBuffer document = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+				final DataUriIndex index = DataUriIndex.build(document);
+				assertIndex(index, document);
+				
+				/* Persisted index can be used instead of scanning
+				 * the document again
+				 */
+				final ByteArrayOutputStream persisted = new ByteArrayOutputStream();
+				index.writeTo(persisted);
+				assertIndex(DataUriIndex.readFrom(new ByteArrayInputStream(persisted.toByteArray())), document);
+			} finally {
+				raf.close();
+			}
+		} finally {
+			file.delete();
+		}
+	}
+	
+	
+	
+	@Test
+	public void testCharsetValidated() {
+		final ByteBuffer document = ByteBuffer.wrap((
+			"<img src=\"data:text/plain;charset=no-such-charset,abc\">"
+			+ "<img src=\"data:text/plain;charset=utf 8,abc\">"
+			+ "<img src=\"data:text/plain;charset=iso-8859-1,abc\">"
+		).getBytes(UTF_8));
+		final DataUriIndex index = DataUriIndex.build(document);
+		
+		Assert.assertEquals(1, index.size());
+		Assert.assertEquals(Charset.forName("ISO-8859-1"), index.parse(document, 0, UTF_8).getCharset());
+	}
+	
+	
+	
+	@Test
+	public void testStoredComma() {
+		final String uri = "data:text/plain;filename=\u00e4,b%2Cc";
+		final byte[] octets = ("<a href=\"" + uri + "\">").getBytes(UTF_8);
+		final ByteBuffer document = ByteBuffer.wrap(octets);
+		final DataUriIndex index = DataUriIndex.build(document);
+		
+		Assert.assertEquals(1, index.size());
+		Assert.assertEquals(',', octets[index.headerEnd(0)]);
+		Assert.assertEquals(DataUri.parse(uri, UTF_8), index.parse(document, 0, UTF_8));
+		Assert.assertEquals("\u00e4", index.parse(document, 0, UTF_8).getFilename());
+		
+		/* The header is not searched for a `,' again, thus a document
+		 * modified after indexing is detected
+		 */
+		octets[index.headerEnd(0)] = ';';
+		
+		try {
+			index.parse(document, 0, UTF_8);
+			Assert.fail("Missing `,' at the indexed position must be rejected");
+		} catch (IllegalArgumentException e) {
+			// Pass
+		}
+	}
+	
+	
+	
+	@Test
+	public void testDocumentLength() {
+		final ByteBuffer document = ByteBuffer.wrap(DOCUMENT.getBytes(UTF_8));
+		final DataUriIndex index = DataUriIndex.build(document);
+		
+		try {
+			index.parse(ByteBuffer.wrap(new byte[10]), 0, UTF_8);
+			Assert.fail("Document length must be verified");
+		} catch (IllegalArgumentException e) {
+			// Pass
+		}
+	}
+	
+	
+	
+	@Test
+	public void testReadCorrupt() {
+		try {
+			DataUriIndex.readFrom(new ByteArrayInputStream(new byte[] {0, 1, 2, 3, 4, 5, 6, 7}));
+			Assert.fail("Corrupt index must not be read");
+		} catch (IOException e) {
+			// Pass
+		}
+	}
+	
+	
+	
+	private void assertIndex(DataUriIndex index, ByteBuffer document) {
+		final byte[] octets = DOCUMENT.getBytes(UTF_8);
+		final int gif = DOCUMENT.indexOf(GIF) + 1;
+		final int svg = DOCUMENT.indexOf(SVG) + 1;
+		
+		Assert.assertEquals(octets.length, index.getDocumentLength());
+		Assert.assertEquals(2, index.size());
+		
+		Assert.assertEquals(gif, index.start(0));
+		Assert.assertEquals(gif + GIF.indexOf(','), index.headerEnd(0));
+		Assert.assertEquals(gif + GIF.length(), index.end(0));
+		Assert.assertTrue(index.isBase64(0));
+		
+		Assert.assertEquals(svg, index.start(1));
+		Assert.assertEquals(svg + SVG.length(), index.end(1));
+		Assert.assertFalse(index.isBase64(1));
+		
+		Assert.assertEquals(DataUri.parse(GIF, UTF_8), index.parse(document, 0, UTF_8));
+		Assert.assertEquals(DataUri.parse(SVG, UTF_8), index.parse(document, 1, UTF_8));
+		Assert.assertEquals("\u00e4.svg", index.parse(document, 1, UTF_8).getFilename());
+		Assert.assertEquals(0, document.position());
+		
+		try {
+			index.start(2);
+			Assert.fail("Index must be checked");
+		} catch (IndexOutOfBoundsException e) {
+			// Pass
+		}
+	}
+}
@@ -0,0 +1,273 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author ooxi
+ */
+public class DataUriInputStreamTest {
+	
+	private final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private final String[] TEST_STRINGS = {
+		"data:image/gif;base64,R0lGODlhAQABAIAAAP///wAAACH5BAEAAAAALAAAAAABAAEAAAICRAEAOw==",
+		"data:image/gif;charset=utf-8;filename=test.txt;content-disposition=inline;base64,R0lGODlhAQABAIAAAP///wAAACH5BAEAAAAALAAAAAABAAEAAAICRAEAOw==",
+		"data:text/plain;charset=utf-8,Hello%2C%20how%20do%20you%20do%3F",
+		"data:application/atom+xml;charset=utf-8,%3Ca%3E1%2B1%3D2%20isn%27t%20it%3F%3C%2Fa%3E",
+		"data:,",
+		"data:;base64,",
+		"data:;base64,QU%4ADRA%3D%3D",
+		"data:;base64,QU JD\nRA\t==ignored",
+		"data:application/octet-stream,%00%FF%fe%80a+b",
+		"data:text/plain;filename=%C3%A4.txt,\u00e4\u00f6\u00fc"
+	};
+	
+	
+	
+	@Test
+	public void testInputStream() throws IOException {
+		for (final String testString : TEST_STRINGS) {
+			final DataUri expected = DataUri.parse(testString, UTF_8);
+			final DataUriInputStream in = new DataUriInputStream(new ByteArrayInputStream(testString.getBytes(UTF_8)), UTF_8);
+			
+			assertHeader(testString, expected, in);
+			Assert.assertArrayEquals(testString, expected.getData(), readFully(in));
+		}
+	}
+	
+	
+	
+	@Test
+	public void testReader() throws IOException {
+		for (final String testString : TEST_STRINGS) {
+			final DataUri expected = DataUri.parse(testString, UTF_8);
+			final DataUriInputStream in = new DataUriInputStream(new StringReader(testString), UTF_8);
+			
+			assertHeader(testString, expected, in);
+			Assert.assertArrayEquals(testString, expected.getData(), readFully(in));
+		}
+	}
+	
+	
+	
+	@Test
+	public void testSingleOctetReads() throws IOException {
+		for (final String testString : TEST_STRINGS) {
+			final DataUri expected = DataUri.parse(testString, UTF_8);
+			final DataUriInputStream in = new DataUriInputStream(new TrickleInputStream(testString.getBytes(UTF_8)), UTF_8);
+			
+			assertHeader(testString, expected, in);
+			Assert.assertArrayEquals(testString, expected.getData(), readFully(in));
+		}
+	}
+	
+	
+	
+	@Test
+	public void testLargePayload() throws IOException {
+		final byte[] payload = new byte[3 * 1024 * 1024 + 1];
+		
+		for (int i = 0; i < payload.length; ++i) {
+			payload[i] = (byte)(31 * i);
+		}
+		
+		final String uri = new DataUri("application/octet-stream", null, payload).toString();
+		final DataUriInputStream in = new DataUriInputStream(new ByteArrayInputStream(uri.getBytes(UTF_8)), UTF_8);
+		
+		Assert.assertEquals("application/octet-stream", in.getMime());
+		Assert.assertEquals("base64", in.getContentEncoding());
+		Assert.assertTrue(Arrays.equals(payload, readFully(in)));
+	}
+	
+	
+	
+	@Test
+	public void testMalformedHeader() throws IOException {
+		final String[] testStrings = {
+			"",
+			"dato:text/plain,abc",
+			"data:text/plain;base64"
+		};
+		
+		for (final String testString : testStrings) {
+			try {
+				new DataUriInputStream(new ByteArrayInputStream(testString.getBytes(UTF_8)), UTF_8);
+				Assert.fail("Malformed header `"+ testString +"' must be rejected");
+			} catch (IllegalArgumentException e) {
+				// Pass
+			}
+		}
+	}
+	
+	
+	
+	@Test
+	public void testIllegalPercentEscape() throws IOException {
+		final DataUriInputStream in = new DataUriInputStream(new ByteArrayInputStream("data:text/plain,abc%4".getBytes(UTF_8)), UTF_8);
+		
+		try {
+			readFully(in);
+			Assert.fail("Illegal percent escape must be rejected");
+		} catch (IOException e) {
+			// Pass
+		}
+	}
+	
+	
+	
+	@Test
+	public void testReaderLimits() throws IOException {
+		final DataUriParser limited = new DataUriParser.Builder()
+			.setCharset(UTF_8)
+			.setMaximumHeaderLength(32)
+			.setMaximumParameterCount(2)
+			.build();
+		
+		final String[] testStrings = {
+			"data:text/plain;filename=aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa,abc",
+			"data:;a;b;c,abc"
+		};
+		
+		for (final String testString : testStrings) {
+			try {
+				new DataUriInputStream(new StringReader(testString), limited);
+				Assert.fail("`"+ testString +"' exceeds limits");
+			} catch (IllegalArgumentException e) {
+				// Pass
+			}
+		}
+		
+		final DataUriInputStream in = new DataUriInputStream(new StringReader("data:text/plain;filename=abcdef,\u00e4"), limited);
+		Assert.assertEquals("abcdef", in.getFilename());
+		Assert.assertArrayEquals("\u00e4".getBytes(UTF_8), readFully(in));
+	}
+	
+	
+	
+	@Test
+	public void testPayloadLimits() throws IOException {
+		final DataUriParser limited = new DataUriParser.Builder()
+			.setCharset(UTF_8)
+			.setMode(DataUriParser.Mode.STRICT)
+			.addContentEncoding(DataUriCompression.GZIP)
+			.setMaximumEscapeCount(2)
+			.setMaximumDecodedLength(100)
+			.build();
+		
+		/* Decompression bombs are stopped after inflating more octets
+		 * than allowed
+		 */
+		final String bomb = new DataUri("text/plain", null, new byte[1000]).toString(DataUriCompression.GZIP);
+		Assert.assertTrue(bomb, bomb.contains(";gzip;base64,"));
+		
+		final String[] testStrings = {
+			"data:,%20%20%20",
+			"data:," + new String(new char[101]).replace('\0', 'a'),
+			"data:;base64,QUJ",
+			"data:;base64,QU-D",
+			"data:;base64,QQ==QQ==",
+			bomb
+		};
+		
+		for (final String testString : testStrings) {
+			try {
+				readFully(new DataUriInputStream(new ByteArrayInputStream(testString.getBytes(UTF_8)), limited));
+				Assert.fail("`"+ testString +"' violates limits");
+			} catch (IOException e) {
+				// Pass
+			}
+			
+			try {
+				readFully(new DataUriInputStream(new StringReader(testString), limited));
+				Assert.fail("`"+ testString +"' violates limits");
+			} catch (IOException e) {
+				// Pass
+			}
+		}
+		
+		try {
+			readFully(new DataUriInputStream(new ByteArrayInputStream("data:,%20%20%20".getBytes(UTF_8)), limited));
+			Assert.fail("Third escape exceeds the limit");
+		} catch (IOException e) {
+			Assert.assertEquals(DataUriError.TOO_MANY_ESCAPES.message(12), e.getMessage());
+		}
+		
+		/* Payload exactly at the limits
+		 */
+		final String exact = "data:,%20%20" + new String(new char[98]).replace('\0', 'a');
+		Assert.assertEquals(100, readFully(new DataUriInputStream(new ByteArrayInputStream(exact.getBytes(UTF_8)), limited)).length);
+		Assert.assertArrayEquals("A".getBytes(UTF_8), readFully(new DataUriInputStream(new StringReader("data:;base64,QQ=="), limited)));
+		
+		final String small = new DataUri("text/plain", null, new byte[100]).toString(DataUriCompression.GZIP);
+		Assert.assertArrayEquals(new byte[100], readFully(new DataUriInputStream(new ByteArrayInputStream(small.getBytes(UTF_8)), limited)));
+	}
+	
+	
+	
+	private static void assertHeader(String message, DataUri expected, DataUriInputStream actual) {
+		Assert.assertEquals(message, expected.getMime(), actual.getMime());
+		Assert.assertEquals(message, expected.getCharset(), actual.getCharset());
+		Assert.assertEquals(message, expected.getFilename(), actual.getFilename());
+		Assert.assertEquals(message, expected.getContentDisposition(), actual.getContentDisposition());
+	}
+	
+	private static byte[] readFully(InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[1000];
+		
+		for (int read = in.read(buffer); -1 != read; read = in.read(buffer)) {
+			out.write(buffer, 0, read);
+		}
+		in.close();
+		return out.toByteArray();
+	}
+	
+	
+	
+	/**
+	 * Returns at most one octet per read
+	 */
+	private static class TrickleInputStream extends FilterInputStream {
+		
+		public TrickleInputStream(byte[] data) {
+			super(new ByteArrayInputStream(data));
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			return super.read(b, off, Math.min(1, len));
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.nio.charset.Charset;
+
+/**
+ * Compares the parse throughput of a shared {@link DataUriParser} with the
+ * static {@link DataUri#parse(CharSequence, Charset)}
+ * 
+ * Not run as part of the test suite, start {@link #main(String[])} with the
+ * test classpath after {@code mvn test-compile}
+ *
+ * @author ooxi
+ */
+public class DataUriParserBenchmark {
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final int ROUNDS = 5;
+	private static final int ITERATIONS = 1000000;
+	
+	private static final String[] URIS = {
+		"data:image/png;filename=spinner.png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNkYPhfDwAChwGA60e6kgAAAABJRU5ErkJggg==",
+		"data:image/gif;base64,R0lGODlhAQABAIAAAAAAAP///yH5BAEAAAAALAAAAAABAAEAAAIBRAA7",
+		"data:image/svg+xml;charset=utf-8,%3Csvg%20xmlns%3D%22http%3A%2F%2Fwww.w3.org%2F2000%2Fsvg%22%2F%3E",
+		"data:text/plain;charset=US-ASCII;content-disposition=inline;filename=readme.txt,Hello",
+		"data:application/json;charset=utf-8;width=16,%7B%7D"
+	};
+	
+	
+	
+	public static void main(String[] args) {
+		final DataUriParser lenient = new DataUriParser.Builder().build();
+		final DataUriParser parameters = new DataUriParser.Builder().addParameter("width").build();
+		long blackhole = 0;
+		
+		for (int round = 0; round < ROUNDS; ++round) {
+			long start = System.nanoTime();
+			
+			for (int i = 0; i < ITERATIONS; ++i) {
+				blackhole += DataUri.parse(URIS[i % URIS.length], UTF_8).getMime().length();
+			}
+			final double staticSeconds = (System.nanoTime() - start) / 1e9;
+			
+			start = System.nanoTime();
+			
+			for (int i = 0; i < ITERATIONS; ++i) {
+				blackhole += lenient.parse(URIS[i % URIS.length]).getMime().length();
+			}
+			final double lenientSeconds = (System.nanoTime() - start) / 1e9;
+			
+			start = System.nanoTime();
+			
+			for (int i = 0; i < ITERATIONS; ++i) {
+				blackhole += parameters.parse(URIS[i % URIS.length]).getParameterCount();
+			}
+			final double parametersSeconds = (System.nanoTime() - start) / 1e9;
+			
+			System.out.printf("static %10.0f  parser %10.0f  parameters %10.0f data URIs/s (%d)%n",
+				ITERATIONS / staticSeconds, ITERATIONS / lenientSeconds, ITERATIONS / parametersSeconds, blackhole
+			);
+		}
+	}
+}
@@ -0,0 +1,288 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author ooxi
+ */
+public class DataUriParserTest {
+	
+	private final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	/**
+	 * `hello' compressed using gzip
+	 */
+	private static final String GZIP_HELLO = "H4sIAAAAAAACA8tIzcnJBwCGphA2BQAAAA==";
+	
+	private static final DataUriContentEncoding GZIP = new DataUriContentEncoding() {
+		
+		@Override
+		public String getName() {
+			return "gzip";
+		}
+		
+		@Override
+		public InputStream decode(InputStream encoded) throws IOException {
+			return new GZIPInputStream(encoded);
+		}
+		
+		@Override
+		public OutputStream encode(OutputStream encoded) throws IOException {
+			return new GZIPOutputStream(encoded);
+		}
+	};
+	
+	
+	
+	@Test
+	public void testDefault() {
+		final DataUriParser parser = new DataUriParser.Builder().build();
+		final String[] uris = {
+			"data:image/gif;base64,R0lGODlhAQABAIAAAAAAAP///yH5BAEAAAAALAAAAAABAAEAAAIBRAA7",
+			"data:text/plain;charset=utf-8;filename=a.txt;foo=bar,h%C3%A4llo",
+			"data:;base64;base64,Zm9v",
+			"data:,"
+		};
+		
+		for (String uri : uris) {
+			Assert.assertEquals(DataUri.parse(uri, UTF_8), parser.parse(uri));
+			Assert.assertEquals(DataUri.parse(uri, UTF_8), parser.parse(ByteBuffer.wrap(uri.getBytes(UTF_8))));
+			Assert.assertEquals(DataUri.parse(uri, UTF_8), parser.tryParse(uri).getDataUri());
+		}
+		Assert.assertEquals(DataUriParser.Mode.LENIENT, parser.getMode());
+		Assert.assertEquals(UTF_8, parser.getCharset());
+		Assert.assertEquals(0, parser.parse(uris[1]).getParameterCount());
+	}
+	
+	
+	
+	@Test
+	public void testParameters() {
+		final DataUriParser parser = new DataUriParser.Builder()
+			.addParameter("Width")
+			.addParameter("height")
+			.build();
+		
+		final DataUri dataUri = parser.parse("data:image/png;WIDTH=16;foo=bar;height=%33%32;width=8;base64,");
+		
+		Assert.assertEquals(2, dataUri.getParameterCount());
+		Assert.assertEquals("width", dataUri.getParameterName(0));
+		Assert.assertEquals("16", dataUri.getParameterValue(0));
+		Assert.assertEquals("height", dataUri.getParameterName(1));
+		Assert.assertEquals("32", dataUri.getParameterValue(1));
+		Assert.assertEquals("16", dataUri.getParameter("Width"));
+		Assert.assertNull(dataUri.getParameter("foo"));
+		Assert.assertEquals("data:image/png;width=16;height=32;base64,", dataUri.toString());
+		Assert.assertEquals(dataUri, parser.parse(dataUri.toString()));
+		Assert.assertFalse(dataUri.equals(DataUri.parse("data:image/png;base64,", UTF_8)));
+		
+		try {
+			dataUri.getParameterName(2);
+			Assert.fail("Index out of bounds");
+		} catch (IndexOutOfBoundsException e) {
+			// Pass
+		}
+		
+		final DataUri all = new DataUriParser.Builder()
+			.setRetainAllParameters(true)
+			.build()
+			.parse("data:text/plain;charset=utf-8;foo=bar;=x;empty=;baz=qux,");
+		
+		Assert.assertEquals(2, all.getParameterCount());
+		Assert.assertEquals("bar", all.getParameter("foo"));
+		Assert.assertEquals("qux", all.getParameter("baz"));
+		Assert.assertEquals(UTF_8, all.getCharset());
+	}
+	
+	
+	
+	@Test
+	public void testContentEncoding() {
+		final DataUriParser parser = new DataUriParser.Builder()
+			.addContentEncoding(GZIP)
+			.build();
+		
+		Assert.assertEquals("hello", new String(parser.parse("data:text/plain;GZIP;base64,"+ GZIP_HELLO).getData(), UTF_8));
+		
+		/* Content encodings following `base64' are ignored
+		 */
+		Assert.assertEquals(DataUri.parse("data:;base64;gzip,Zm9v", UTF_8), parser.parse("data:;base64;gzip,Zm9v"));
+		
+		final DataUriParseResult result = parser.tryParse("data:;gzip;base64,Zm9v");
+		Assert.assertEquals(DataUriError.ILLEGAL_CONTENT_ENCODING, result.getError());
+		Assert.assertEquals(18, result.getErrorOffset());
+		
+		try {
+			parser.parse("data:;gzip;base64,Zm9v");
+			Assert.fail("Malformed gzip stream must be rejected");
+		} catch (IllegalArgumentException e) {
+			// Pass
+		}
+		
+		try {
+			new DataUriParser.Builder().addParameter("Charset");
+			Assert.fail("Supported values cannot be added");
+		} catch (IllegalArgumentException e) {
+			// Pass
+		}
+	}
+	
+	
+	
+	@Test
+	public void testStrict() {
+		final DataUriParser parser = new DataUriParser.Builder()
+			.setMode(DataUriParser.Mode.STRICT)
+			.addContentEncoding(GZIP)
+			.addParameter("width")
+			.build();
+		
+		Assert.assertEquals("hello", new String(parser.parse("data:text/plain;charset=utf-8;gzip;base64,"+ GZIP_HELLO).getData(), UTF_8));
+		Assert.assertEquals("foo", new String(parser.parse("data:,foo").getData(), UTF_8));
+		Assert.assertEquals("16", parser.parse("data:image/png;width=16;base64,").getParameter("width"));
+		
+		/* Trailing empty headers are dropped like by splitting
+		 */
+		Assert.assertEquals("text/plain", parser.parse("data:text/plain;,").getMime());
+		Assert.assertEquals("f", new String(parser.parse("data:;base64;,Zg==").getData(), UTF_8));
+		Assert.assertEquals("foo", new String(parser.parse("data:text/plain;charset=utf-8;;,foo").getData(), UTF_8));
+		
+		assertError(parser, "data:image,", DataUriError.ILLEGAL_MEDIA_TYPE, 5);
+		assertError(parser, "data:image/png/,", DataUriError.ILLEGAL_MEDIA_TYPE, 5);
+		assertError(parser, "data:charset=utf-8,", DataUriError.ILLEGAL_MEDIA_TYPE, 5);
+		assertError(parser, "data:;foo=bar,", DataUriError.ILLEGAL_PARAMETER, 6);
+		assertError(parser, "data:;foo,", DataUriError.ILLEGAL_PARAMETER, 6);
+		assertError(parser, "data:;charset=,", DataUriError.ILLEGAL_PARAMETER, 6);
+		assertError(parser, "data:;charset=utf-8;charset=utf-8,", DataUriError.ILLEGAL_PARAMETER, 20);
+		assertError(parser, "data:;width=1;width=2,", DataUriError.ILLEGAL_PARAMETER, 14);
+		assertError(parser, "data:;base64;width=1,", DataUriError.ILLEGAL_PARAMETER, 13);
+		assertError(parser, "data:;base64;gzip,", DataUriError.ILLEGAL_PARAMETER, 13);
+		assertError(parser, "data:;base64;base64,", DataUriError.ILLEGAL_PARAMETER, 13);
+		assertError(parser, "data:text/plain;;base64,", DataUriError.ILLEGAL_PARAMETER, 16);
+		assertError(parser, "data:;base64,Zm9", DataUriError.ILLEGAL_BASE64, 16);
+		assertError(parser, "data:;base64,Zm-v", DataUriError.ILLEGAL_BASE64, 15);
+		assertError(parser, "data:;base64,Z===", DataUriError.ILLEGAL_BASE64, 14);
+		assertError(parser, "data:;base64,Zg=a", DataUriError.ILLEGAL_BASE64, 15);
+		
+		Assert.assertEquals("f", new String(parser.parse("data:;base64,Zg==").getData(), UTF_8));
+		Assert.assertEquals("fo", new String(parser.parse("data:;base64,Zm8=").getData(), UTF_8));
+	}
+	
+	@Test
+	public void testLimits() throws Exception {
+		final DataUriParser parser = new DataUriParser.Builder()
+			.addContentEncoding(GZIP)
+			.setMaximumDecodedLength(4)
+			.setMaximumHeaderLength(24)
+			.setMaximumParameterCount(2)
+			.setMaximumEscapeCount(2)
+			.build();
+		
+		Assert.assertEquals("abcd", new String(parser.parse("data:,abcd").getData(), UTF_8));
+		Assert.assertEquals("a b", new String(parser.parse("data:,a%20b").getData(), UTF_8));
+		Assert.assertEquals("foo", new String(parser.parse("data:;foo=bar;base64,Zm9v").getData(), UTF_8));
+		Assert.assertEquals(",", new String(parser.parse("data:text/plain;base64,LA==").getData(), UTF_8));
+		
+		/* Cheap upper bound exceeds the limit while the exact length
+		 * does not
+		 */
+		Assert.assertEquals("%%", new String(parser.parse("data:,%25%25").getData(), UTF_8));
+		Assert.assertEquals("abc", new String(parser.parse("data:;base64,YW Jj").getData(), UTF_8));
+		
+		assertError(parser, "data:,abcde", DataUriError.PAYLOAD_TOO_LARGE, 6);
+		assertError(parser, "data:;base64,YWJjZGU=", DataUriError.PAYLOAD_TOO_LARGE, 13);
+		assertError(parser, "data:text/plain;charset=utf-8,a", DataUriError.HEADER_TOO_LONG, 24);
+		assertError(parser, "data:text/plain;charset=", DataUriError.HEADER_TOO_LONG, 24);
+		assertError(parser, "data:;a=1;b=2;c=3,", DataUriError.TOO_MANY_PARAMETERS, 14);
+		assertError(parser, "data:,%20%20%20", DataUriError.TOO_MANY_ESCAPES, 12);
+		
+		/* Decode-only charsets have no encoder to derive the cheap
+		 * upper bound from
+		 */
+		if (Charset.isSupported("ISO-2022-CN")) {
+			final DataUriParser decodeOnly = new DataUriParser.Builder()
+				.setCharset(Charset.forName("ISO-2022-CN"))
+				.setMaximumDecodedLength(4)
+				.build();
+			
+			Assert.assertFalse(decodeOnly.getCharset().canEncode());
+			Assert.assertEquals("abcd", new String(decodeOnly.parse("data:,abcd").getData(), UTF_8));
+			assertError(decodeOnly, "data:,abcde", DataUriError.PAYLOAD_TOO_LARGE, 6);
+		}
+		
+		/* Decompression bombs are stopped while inflating
+		 */
+		final String bomb = new DataUri("text/plain", null, new byte[1000]).toString(DataUriCompression.GZIP);
+		final DataUriParser bombParser = new DataUriParser.Builder()
+			.addContentEncoding(DataUriCompression.GZIP)
+			.setMaximumDecodedLength(100)
+			.build();
+		
+		assertError(bombParser, bomb, DataUriError.PAYLOAD_TOO_LARGE, bomb.indexOf(',') + 1);
+		Assert.assertEquals(1000, new DataUriParser.Builder().addContentEncoding(DataUriCompression.GZIP).build().parse(bomb).getData().length);
+		
+		/* Streams stop reading the header at the limit
+		 */
+		try {
+			new DataUriInputStream(new ByteArrayInputStream("data:text/plain;charset=utf-8,a".getBytes(UTF_8)), parser);
+			Assert.fail("Header must be rejected");
+		} catch (IllegalArgumentException e) {
+			Assert.assertEquals(DataUriError.HEADER_TOO_LONG.message(24), e.getMessage());
+		}
+		
+		try {
+			new DataUriParser.Builder().setMaximumDecodedLength(-1);
+			Assert.fail("Negative limit must be rejected");
+		} catch (IllegalArgumentException e) {
+			// Pass
+		}
+	}
+	
+	
+	
+	private static void assertError(DataUriParser parser, String uri, DataUriError error, int offset) {
+		final DataUriParseResult result = parser.tryParse(uri);
+		
+		Assert.assertEquals(uri, error, result.getError());
+		Assert.assertEquals(uri, offset, result.getErrorOffset());
+		
+		try {
+			parser.parse(uri);
+			Assert.fail(uri +" must be rejected");
+		} catch (IllegalArgumentException e) {
+			Assert.assertEquals(error.message(offset), e.getMessage());
+		}
+	}
+}
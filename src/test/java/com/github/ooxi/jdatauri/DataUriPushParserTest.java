@@ -0,0 +1,339 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author ooxi
+ */
+public class DataUriPushParserTest {
+	
+	private final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private final String[] TEST_STRINGS = {
+		"data:image/gif;base64,R0lGODlhAQABAIAAAP///wAAACH5BAEAAAAALAAAAAABAAEAAAICRAEAOw==",
+		"data:image/gif;charset=utf-8;filename=test.txt;content-disposition=inline;base64,R0lGODlhAQABAIAAAP///wAAACH5BAEAAAAALAAAAAABAAEAAAICRAEAOw==",
+		"data:text/plain;charset=utf-8,Hello%2C%20how%20do%20you%20do%3F",
+		"data:,",
+		"data:;base64,",
+		"data:;base64,QU%4ADRA%3D%3D",
+		"data:;base64,QU JD\nRA\t==ignored",
+		"data:application/octet-stream,%00%FF%fe%80a+b",
+		"data:text/plain;filename=%C3%A4.txt,\u00e4\u00f6\u00fc"
+	};
+	
+	
+	
+	@Test
+	public void testSingleChunk() {
+		for (final String testString : TEST_STRINGS) {
+			final Recorder recorder = new Recorder();
+			final DataUriPushParser parser = new DataUriPushParser(UTF_8, recorder);
+			
+			parser.feed(ByteBuffer.wrap(testString.getBytes(UTF_8)));
+			parser.finish();
+			
+			recorder.assertParsed(testString, DataUri.parse(testString, UTF_8));
+		}
+	}
+	
+	
+	
+	@Test
+	public void testEverySplit() {
+		for (final String testString : TEST_STRINGS) {
+			final byte[] octets = testString.getBytes(UTF_8);
+			
+			for (int split = 0; split <= octets.length; ++split) {
+				final Recorder recorder = new Recorder();
+				final DataUriPushParser parser = new DataUriPushParser(UTF_8, recorder);
+				
+				parser.feed(ByteBuffer.wrap(octets, 0, split));
+				parser.feed(ByteBuffer.wrap(octets, split, octets.length - split));
+				parser.finish();
+				
+				recorder.assertParsed(testString +" split at "+ split, DataUri.parse(testString, UTF_8));
+			}
+		}
+	}
+	
+	
+	
+	@Test
+	public void testSingleOctetDirectChunks() {
+		for (final String testString : TEST_STRINGS) {
+			final Recorder recorder = new Recorder();
+			final DataUriPushParser parser = new DataUriPushParser(UTF_8, recorder);
+			final ByteBuffer chunk = ByteBuffer.allocateDirect(1);
+			
+			for (byte octet : testString.getBytes(UTF_8)) {
+				chunk.clear();
+				chunk.put(octet).flip();
+				parser.feed(chunk);
+			}
+			parser.finish();
+			
+			recorder.assertParsed(testString, DataUri.parse(testString, UTF_8));
+		}
+	}
+	
+	
+	
+	@Test
+	public void testHeaderReportedEarly() {
+		final Recorder recorder = new Recorder();
+		final DataUriPushParser parser = new DataUriPushParser(UTF_8, recorder);
+		
+		parser.feed(ByteBuffer.wrap("data:text/plain;filename=a.txt".getBytes(UTF_8)));
+		Assert.assertFalse(parser.isHeaderComplete());
+		Assert.assertNull(recorder.header);
+		
+		parser.feed(ByteBuffer.wrap(",".getBytes(UTF_8)));
+		Assert.assertTrue(parser.isHeaderComplete());
+		Assert.assertEquals("a.txt", recorder.header.getFilename());
+		Assert.assertEquals(DataUriHeader.UNKNOWN_LENGTH, recorder.header.getDecodedLength());
+		Assert.assertFalse(recorder.ended);
+	}
+	
+	
+	
+	@Test
+	public void testLargePayload() {
+		final byte[] payload = new byte[1024 * 1024 + 2];
+		
+		for (int i = 0; i < payload.length; ++i) {
+			payload[i] = (byte)(17 * i);
+		}
+		
+		final byte[] octets = new DataUri("application/octet-stream", null, payload).toString().getBytes(UTF_8);
+		final Recorder recorder = new Recorder();
+		final DataUriPushParser parser = new DataUriPushParser(UTF_8, recorder);
+		
+		for (int offset = 0; offset < octets.length; offset += 1001) {
+			parser.feed(ByteBuffer.wrap(octets, offset, Math.min(1001, octets.length - offset)));
+		}
+		parser.finish();
+		
+		Assert.assertArrayEquals(payload, recorder.data.toByteArray());
+		Assert.assertTrue(recorder.ended);
+	}
+	
+	
+	
+	@Test
+	public void testMalformed() {
+		final String[] testStrings = {
+			"dato:text/plain,abc",
+			"data:text/plain",
+			"data:text/plain,abc%4",
+			"data:text/plain,abc%",
+			"data:text/plain,abc%zz"
+		};
+		
+		for (final String testString : testStrings) {
+			final DataUriPushParser parser = new DataUriPushParser(UTF_8, new Recorder());
+			
+			try {
+				parser.feed(ByteBuffer.wrap(testString.getBytes(UTF_8)));
+				parser.finish();
+				Assert.fail("Malformed `"+ testString +"' must be rejected");
+			} catch (IllegalArgumentException e) {
+				// Pass
+			}
+			
+			try {
+				parser.feed(ByteBuffer.wrap(new byte[] {'a'}));
+				Assert.fail("Failed parser must not be usable anymore");
+			} catch (IllegalStateException e) {
+				// Pass
+			}
+		}
+	}
+	
+	
+	
+	@Test
+	public void testHeaderLimit() {
+		final DataUriParser limited = new DataUriParser.Builder()
+			.setCharset(UTF_8)
+			.setMaximumHeaderLength(32)
+			.build();
+		
+		/* Header is rejected as soon as the limit has been reached,
+		 * long before a `,' arrives
+		 */
+		final DataUriPushParser parser = new DataUriPushParser(limited, new Recorder());
+		parser.feed(ByteBuffer.wrap("data:text/plain;filename=".getBytes(UTF_8)));
+		
+		try {
+			for (int i = 0; i < 1000; ++i) {
+				parser.feed(ByteBuffer.wrap("aaaaaaaa".getBytes(UTF_8)));
+			}
+			Assert.fail("Header exceeding the limit must be rejected");
+		} catch (IllegalArgumentException e) {
+			Assert.assertEquals(DataUriError.HEADER_TOO_LONG.message(32), e.getMessage());
+		}
+		
+		/* Header of exactly the maximum length is accepted
+		 */
+		final Recorder recorder = new Recorder();
+		final DataUriPushParser exact = new DataUriPushParser(limited, recorder);
+		exact.feed(ByteBuffer.wrap("data:text/plain;filename=abcdef,x".getBytes(UTF_8)));
+		exact.finish();
+		Assert.assertEquals("abcdef", recorder.header.getFilename());
+	}
+	
+	
+	
+	@Test
+	public void testLimits() {
+		final String[] testStrings = {
+			"data:;a;b;c,",
+			"data:,%41%41%41",
+			"data:,abcdef",
+			"data:;base64,QUJDREVG"
+		};
+		final DataUriParser limited = new DataUriParser.Builder()
+			.setCharset(UTF_8)
+			.setMaximumParameterCount(2)
+			.setMaximumEscapeCount(2)
+			.setMaximumDecodedLength(5)
+			.build();
+		
+		for (final String testString : testStrings) {
+			final DataUriPushParser parser = new DataUriPushParser(limited, new Recorder());
+			
+			try {
+				parser.feed(ByteBuffer.wrap(testString.getBytes(UTF_8)));
+				parser.finish();
+				Assert.fail("`"+ testString +"' exceeds limits");
+			} catch (IllegalArgumentException e) {
+				// Pass
+			}
+		}
+		
+		final Recorder recorder = new Recorder();
+		final DataUriPushParser parser = new DataUriPushParser(limited, recorder);
+		parser.feed(ByteBuffer.wrap("data:;a,%41%42cde".getBytes(UTF_8)));
+		parser.finish();
+		Assert.assertArrayEquals("ABcde".getBytes(UTF_8), recorder.data.toByteArray());
+	}
+	
+	
+	
+	/**
+	 * The decoded length limit cannot bound compressed payload, which is
+	 * handed over without inflating it
+	 */
+	@Test
+	public void testContentEncodingWithLimit() {
+		final String compressed = new DataUri("text/plain", null, new byte[1000]).toString(DataUriCompression.GZIP);
+		final DataUriParser limited = new DataUriParser.Builder()
+			.setCharset(UTF_8)
+			.addContentEncoding(DataUriCompression.GZIP)
+			.setMaximumDecodedLength(100)
+			.build();
+		
+		final DataUriPushParser parser = new DataUriPushParser(limited, new Recorder());
+		
+		try {
+			parser.feed(ByteBuffer.wrap(compressed.getBytes(UTF_8)));
+			Assert.fail("Content encoding must be rejected if the decoded length is limited");
+		} catch (IllegalArgumentException e) {
+			Assert.assertEquals(DataUriError.ILLEGAL_CONTENT_ENCODING.message(compressed.indexOf(',') + 1), e.getMessage());
+		}
+		
+		/* Without a limit the compressed payload is handed over
+		 */
+		final Recorder recorder = new Recorder();
+		final DataUriPushParser unlimited = new DataUriPushParser(new DataUriParser.Builder().setCharset(UTF_8).addContentEncoding(DataUriCompression.GZIP).build(), recorder);
+		unlimited.feed(ByteBuffer.wrap(compressed.getBytes(UTF_8)));
+		unlimited.finish();
+		
+		Assert.assertEquals("gzip;base64", recorder.header.getContentEncoding());
+		Assert.assertEquals(0x1F, recorder.data.toByteArray()[0]);
+	}
+	
+	
+	
+	@Test
+	public void testFinishOnlyOnce() {
+		final DataUriPushParser parser = new DataUriPushParser(UTF_8, new Recorder());
+		
+		parser.feed(ByteBuffer.wrap("data:,a".getBytes(UTF_8)));
+		parser.finish();
+		
+		try {
+			parser.finish();
+			Assert.fail("Parser must only finish once");
+		} catch (IllegalStateException e) {
+			// Pass
+		}
+	}
+	
+	
+	
+	private static class Recorder implements DataUriPushParser.Handler {
+		
+		private DataUriHeader header;
+		private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		private boolean ended = false;
+		
+		@Override
+		public void header(DataUriHeader header) {
+			Assert.assertNull(this.header);
+			this.header = header;
+		}
+		
+		@Override
+		public void data(ByteBuffer data) {
+			Assert.assertNotNull(header);
+			Assert.assertTrue(data.isReadOnly());
+			
+			while (data.hasRemaining()) {
+				this.data.write(data.get());
+			}
+		}
+		
+		@Override
+		public void end() {
+			Assert.assertFalse(ended);
+			ended = true;
+		}
+		
+		void assertParsed(String message, DataUri expected) {
+			Assert.assertEquals(message, expected.getMime(), header.getMime());
+			Assert.assertEquals(message, expected.getCharset(), header.getCharset());
+			Assert.assertEquals(message, expected.getFilename(), header.getFilename());
+			Assert.assertEquals(message, expected.getContentDisposition(), header.getContentDisposition());
+			Assert.assertArrayEquals(message, expected.getData(), data.toByteArray());
+			Assert.assertTrue(message, ended);
+		}
+	}
+}
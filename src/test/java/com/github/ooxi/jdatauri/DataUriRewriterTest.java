@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author ooxi
+ */
+public class DataUriRewriterTest {
+	
+	private final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private static final String GIF = "data:image/gif;base64,R0lGODlhAQABAIAAAAAAAP///yH5BAEAAAAALAAAAAABAAEAAAIBRAA7";
+	private static final String SVG = "data:image/svg+xml;charset=utf-8,%3Csvg%2F%3E";
+	
+	
+	
+	@Test
+	public void testRewrite() throws IOException {
+		final String document
+			= ".a { background: url(" + GIF + "); }\n"
+			+ ".b { background: url( '" + SVG + "' ); }\n"
+			+ "<p>Metadata: data:text/plain,foo</p>\n"
+			+ "<img src=\"" + GIF + "\" alt=x><a href=" + SVG + ">svg</a>\n"
+			+ "{\"spinner\": \"" + GIF + "\"}";
+		
+		final String expected
+			= ".a { background: url(gif-0); }\n"
+			+ ".b { background: url( 'svg+xml-1' ); }\n"
+			+ "<p>Metadata: data:text/plain,foo</p>\n"
+			+ "<img src=\"gif-2\" alt=x><a href=svg+xml-3>svg</a>\n"
+			+ "{\"spinner\": \"gif-4\"}";
+		
+		final Collector collector = new Collector();
+		
+		Assert.assertEquals(expected, rewrite(new DataUriRewriter(UTF_8, collector), new StringReader(document)));
+		Assert.assertEquals(5, collector.payloads.size());
+		Assert.assertArrayEquals(DataUri.parse(GIF, UTF_8).getData(), collector.payloads.get(0));
+		Assert.assertArrayEquals(DataUri.parse(SVG, UTF_8).getData(), collector.payloads.get(1));
+		Assert.assertEquals(UTF_8, collector.headers.get(1).getCharset());
+		Assert.assertEquals("base64", collector.headers.get(4).getContentEncoding());
+		
+		/* Same result if the document trickles in
+		 */
+		Assert.assertEquals(expected, rewrite(new DataUriRewriter(UTF_8, new Collector()), new TrickleReader(new StringReader(document))));
+	}
+	
+	
+	
+	@Test
+	public void testMalformed() throws IOException {
+		final String document = "<img src=\"data:image/gif;base64\"> <img src='data:text/plain;charset=no-such-charset,x'> <img src=\"dat\">";
+		final Collector collector = new Collector();
+		
+		Assert.assertEquals(document, rewrite(new DataUriRewriter(UTF_8, collector), new TrickleReader(new StringReader(document))));
+		Assert.assertTrue(collector.payloads.isEmpty());
+	}
+	
+	
+	
+	/**
+	 * The handler does not need to read the payload completely
+	 */
+	@Test
+	public void testPartialRead() throws IOException {
+		final StringBuilder document = new StringBuilder();
+		final StringBuilder expected = new StringBuilder();
+		final String large = new DataUri("application/octet-stream", null, new byte[100000]).toString();
+		
+		for (int i = 0; i < 10; ++i) {
+			document.append("<a href=\"").append(large).append("\">").append(i).append("</a>\n");
+			expected.append("<a href=\"external\">").append(i).append("</a>\n");
+		}
+		
+		final DataUriRewriter rewriter = new DataUriRewriter(UTF_8, new DataUriRewriter.Handler() {
+			@Override public String replace(DataUriHeader header, InputStream payload) throws IOException {
+				Assert.assertEquals(0, payload.read());
+				return "external";
+			}
+		});
+		
+		Assert.assertEquals(expected.toString(), rewrite(rewriter, new StringReader(document.toString())));
+	}
+	
+	
+	
+	@Test
+	public void testIllegalEscape() throws IOException {
+		final DataUriRewriter rewriter = new DataUriRewriter(UTF_8, new Collector());
+		
+		try {
+			rewrite(rewriter, new StringReader("<img src=\"data:,%zz\">"));
+			Assert.fail("Illegal percent escape must abort rewriting");
+		} catch (IOException e) {
+			// Pass
+		}
+	}
+	
+	
+	
+	private static String rewrite(DataUriRewriter rewriter, Reader document) throws IOException {
+		final StringWriter out = new StringWriter();
+		rewriter.rewrite(document, out);
+		return out.toString();
+	}
+	
+	
+	
+	/**
+	 * Replaces data URIs by the subtype of their mime type and a counter,
+	 * retaining their header and payload
+	 */
+	private static final class Collector implements DataUriRewriter.Handler {
+		
+		final List<DataUriHeader> headers = new ArrayList<DataUriHeader>();
+		final List<byte[]> payloads = new ArrayList<byte[]>();
+		
+		@Override
+		public String replace(DataUriHeader header, InputStream payload) throws IOException {
+			final ByteArrayOutputStream data = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[7];
+			
+			for (int read = payload.read(buffer); -1 != read; read = payload.read(buffer)) {
+				data.write(buffer, 0, read);
+			}
+			
+			headers.add(header);
+			payloads.add(data.toByteArray());
+			return header.getMime().substring(header.getMime().indexOf('/') + 1) + "-" + (payloads.size() - 1);
+		}
+	}
+	
+	/**
+	 * Returns at most three characters per read
+	 */
+	private static final class TrickleReader extends FilterReader {
+		
+		TrickleReader(Reader in) {
+			super(in);
+		}
+		
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			return super.read(cbuf, off, Math.min(3, len));
+		}
+	}
+}
@@ -0,0 +1,234 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author ooxi
+ */
+public class DataUriScannerTest {
+	
+	private final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private static final String GIF = "data:image/gif;base64,R0lGODlhAQABAIAAAAAAAP///yH5BAEAAAAALAAAAAABAAEAAAIBRAA7";
+	private static final String SVG = "data:image/svg+xml;charset=utf-8,%3Csvg%2F%3E";
+	
+	private static final String DOCUMENT
+		= "<html><head><style>\n"
+		+ ".a { background: url(" + GIF + "); }\n"
+		+ ".b { background: url( '" + SVG + "' ); }\n"
+		+ ".c { background: url(\"" + GIF + "\") }\n"
+		+ "</style></head><body>\n"
+		+ "<p>Metadata: not a data URI, neither is data:text/plain,foo</p>\n"
+		+ "<img src=\"" + GIF + "\" alt=x>\n"
+		+ "<a href=" + SVG + ">svg</a>\n"
+		+ "<script>var icons = {\"spinner\": \"" + GIF + "\"};</script>\n"
+		+ "</body></html>\n";
+	
+	private static final String[] EXPECTED = {GIF, SVG, GIF, GIF, SVG, GIF};
+	
+	
+	
+	@Test
+	public void testCharSequence() throws IOException {
+		assertMatches(new DataUriScanner(DOCUMENT));
+	}
+	
+	
+	
+	@Test
+	public void testByteBuffer() throws IOException {
+		final ByteBuffer octets = ByteBuffer.wrap(("\u00e4" + DOCUMENT).getBytes(UTF_8));
+		octets.position(2);
+		
+		assertMatches(new DataUriScanner(octets));
+		Assert.assertEquals(2, octets.position());
+	}
+	
+	
+	
+	@Test
+	public void testReader() throws IOException {
+		assertMatches(new DataUriScanner(new StringReader(DOCUMENT)));
+		assertMatches(new DataUriScanner(new TrickleReader(new StringReader(DOCUMENT))));
+	}
+	
+	
+	
+	/**
+	 * Scanning a large document from a reader only requires memory for the
+	 * longest data URI
+	 */
+	@Test
+	public void testLargeDocument() throws IOException {
+		final StringBuilder document = new StringBuilder();
+		
+		for (int i = 0; i < 10000; ++i) {
+			document.append("<img src=\"").append(GIF).append("\">\n<p>").append(i).append("</p>\n");
+		}
+		
+		final DataUriScanner scanner = new DataUriScanner(new StringReader(document.toString()), GIF.length());
+		int matches = 0;
+		
+		while (scanner.find()) {
+			Assert.assertEquals(GIF, scanner.uri().toString());
+			Assert.assertEquals(document.indexOf(GIF, (int)scanner.start()), scanner.start());
+			++matches;
+		}
+		Assert.assertEquals(10000, matches);
+	}
+	
+	
+	
+	@Test
+	public void testMaximumLength() throws IOException {
+		final DataUriScanner scanner = new DataUriScanner(new TrickleReader(new StringReader(DOCUMENT)), SVG.length());
+		final List<String> uris = new ArrayList<String>();
+		
+		while (scanner.find()) {
+			uris.add(scanner.uri().toString());
+		}
+		Assert.assertEquals(2, uris.size());
+		Assert.assertEquals(SVG, uris.get(0));
+		Assert.assertEquals(SVG, uris.get(1));
+	}
+	
+	
+	
+	/**
+	 * An unterminated quote must not swallow the rest of the document
+	 */
+	@Test
+	public void testUnterminatedQuote() throws IOException {
+		final String document
+			= "<img src=\"data:,abc>\n"
+			+ "<style>.a { background: url(" + GIF + "); }</style>\n"
+			+ "<img src='data:,def\n"
+			+ "<img src=\"" + SVG + "\">";
+		
+		final DataUriScanner[] scanners = {
+			new DataUriScanner(document),
+			new DataUriScanner(ByteBuffer.wrap(document.getBytes(UTF_8))),
+			new DataUriScanner(new TrickleReader(new StringReader(document)))
+		};
+		
+		for (final DataUriScanner scanner : scanners) {
+			final List<String> uris = new ArrayList<String>();
+			
+			while (scanner.find()) {
+				uris.add(scanner.uri().toString());
+			}
+			Assert.assertEquals(Arrays.asList("data:,abc", GIF, "data:,def", SVG), uris);
+		}
+	}
+	
+	
+	
+	@Test
+	public void testMaximumLengthInMemory() throws IOException {
+		final String document = "<img src=\"" + GIF + "\"><img src=\"data:,a\">";
+		final List<String> uris = new ArrayList<String>();
+		
+		final DataUriScanner scanner = new DataUriScanner(document, GIF.length() - 1);
+		while (scanner.find()) {
+			uris.add(scanner.uri().toString());
+		}
+		
+		final DataUriScanner octets = new DataUriScanner(ByteBuffer.wrap(document.getBytes(UTF_8)), GIF.length() - 1);
+		while (octets.find()) {
+			uris.add(octets.uri().toString());
+		}
+		Assert.assertEquals(Arrays.asList("data:,a", "data:,a"), uris);
+	}
+	
+	
+	
+	@Test
+	public void testNoMatch() throws IOException {
+		final DataUriScanner scanner = new DataUriScanner("data:,foo");
+		
+		Assert.assertFalse(scanner.find());
+		Assert.assertFalse(scanner.find());
+		
+		try {
+			scanner.start();
+			Assert.fail("No data URI found");
+		} catch (IllegalStateException e) {
+			// Pass
+		}
+	}
+	
+	
+	
+	@Test
+	public void testUnterminated() throws IOException {
+		final DataUriScanner scanner = new DataUriScanner(new StringReader("<img src=\"data:,foo"));
+		
+		Assert.assertTrue(scanner.find());
+		Assert.assertEquals(10, scanner.start());
+		Assert.assertEquals(19, scanner.end());
+		Assert.assertFalse(scanner.find());
+	}
+	
+	
+	
+	private void assertMatches(DataUriScanner scanner) throws IOException {
+		for (final String expected : EXPECTED) {
+			Assert.assertTrue(scanner.find());
+			Assert.assertEquals(expected, scanner.uri().toString());
+			Assert.assertEquals(expected.length(), scanner.end() - scanner.start());
+			Assert.assertEquals(DataUri.parse(expected, UTF_8), scanner.parse(UTF_8));
+			Assert.assertTrue(scanner.tryParse(UTF_8).isSuccess());
+		}
+		Assert.assertFalse(scanner.find());
+	}
+	
+	
+	
+	/**
+	 * Returns at most three characters per read
+	 */
+	private static final class TrickleReader extends FilterReader {
+		
+		TrickleReader(Reader in) {
+			super(in);
+		}
+		
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			return super.read(cbuf, off, Math.min(3, len));
+		}
+	}
+}
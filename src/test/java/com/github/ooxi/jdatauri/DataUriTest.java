@@ -22,7 +22,21 @@
  */
 package com.github.ooxi.jdatauri;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.apache.commons.codec.binary.Base64;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -232,4 +246,681 @@ public class DataUriTest {
 		Assert.assertEquals("<a>1+1=2 isn't it?</a>", new String(duri.getData(), duri.getCharset()));
 		Assert.assertEquals("application/atom+xml", duri.getMime());
 	}
+	
+	
+	
+	@Test
+	public void testHeaderCaseAndWhitespace() {
+		DataUri duri = DataUri.parse("data: Image/GIF ; CharSet = UTF-8 ; FileName= Test.TXT ;BASE64 ,dGVzdA==", UTF_8);
+		
+		Assert.assertEquals("image/gif", duri.getMime());
+		Assert.assertEquals(Charset.forName("UTF-8"), duri.getCharset());
+		Assert.assertEquals("test.txt", duri.getFilename());
+		Assert.assertEquals(null, duri.getContentDisposition());
+		Assert.assertArrayEquals("test".getBytes(UTF_8), duri.getData());
+	}
+	
+	
+	
+	@Test
+	public void testPercentEncodedHeaders() {
+		DataUri duri = DataUri.parse("data:image%2Fsvg%2Bxml;%63harset=utf-8;filename=a%20b.svg;%20%62ase64,dGVzdA==", UTF_8);
+		
+		Assert.assertEquals("image/svg+xml", duri.getMime());
+		Assert.assertEquals(Charset.forName("UTF-8"), duri.getCharset());
+		Assert.assertEquals("a b.svg", duri.getFilename());
+		Assert.assertArrayEquals("test".getBytes(UTF_8), duri.getData());
+	}
+	
+	
+	
+	@Test
+	public void testFirstNonEmptyValueWins() {
+		DataUri duri = DataUri.parse("data:text/plain;filename=;filename=first.txt;filename=second.txt;content-disposition=inline;content-disposition=attachment,test", UTF_8);
+		
+		Assert.assertEquals("first.txt", duri.getFilename());
+		Assert.assertEquals("inline", duri.getContentDisposition());
+		Assert.assertArrayEquals("test".getBytes(UTF_8), duri.getData());
+	}
+	
+	
+	
+	@Test
+	public void testDefaultMime() {
+		final String[] testStrings = {
+			"data:,test",
+			"data:;;,test",
+			"data: ;base64,dGVzdA==",
+			"data:charset=utf-8,test",
+			"data:%20;base64,dGVzdA=="
+		};
+		
+		for (final String testString : testStrings) {
+			DataUri duri = DataUri.parse(testString, UTF_8);
+			
+			Assert.assertEquals(testString, "text/plain", duri.getMime());
+			Assert.assertArrayEquals(testString, "test".getBytes(UTF_8), duri.getData());
+		}
+	}
+	
+	
+	
+	@Test
+	public void testContentEncodingOnlyAfterMime() {
+		DataUri duri = DataUri.parse("data:base64,dGVzdA==", UTF_8);
+		
+		Assert.assertEquals("base64", duri.getMime());
+		Assert.assertArrayEquals("dGVzdA==".getBytes(UTF_8), duri.getData());
+	}
+	
+	
+	
+	@Test
+	public void testUnknownHeadersIgnored() {
+		DataUri duri = DataUri.parse("data:text/plain;foo=bar;gzip;charset;base64=yes;base64,dGVzdA==", UTF_8);
+		
+		Assert.assertEquals("text/plain", duri.getMime());
+		Assert.assertEquals(null, duri.getCharset());
+		Assert.assertEquals(null, duri.getFilename());
+		Assert.assertEquals(null, duri.getContentDisposition());
+		Assert.assertArrayEquals("test".getBytes(UTF_8), duri.getData());
+	}
+	
+	
+	
+	@Test
+	public void testCommaInData() {
+		DataUri duri = DataUri.parse("data:text/plain,a,b;c=d", UTF_8);
+		
+		Assert.assertEquals("text/plain", duri.getMime());
+		Assert.assertArrayEquals("a,b;c=d".getBytes(UTF_8), duri.getData());
+	}
+	
+	
+	
+	@Test
+	public void testBinaryPercentEncodedData() {
+		DataUri duri = DataUri.parse("data:application/octet-stream,%00%FF%fe%80a+b", UTF_8);
+		
+		Assert.assertArrayEquals(new byte[] {0, -1, -2, -128, 'a', '+', 'b'}, duri.getData());
+	}
+	
+	
+	
+	@Test
+	public void testPercentEncodedBase64Data() {
+		DataUri duri = DataUri.parse("data:text/plain;base64,dGVz%64A%3D%3D", UTF_8);
+		
+		Assert.assertArrayEquals("test".getBytes(UTF_8), duri.getData());
+	}
+	
+	
+	
+	@Test
+	public void testIllegalPercentEscape() {
+		final String[] testStrings = {
+			"data:text/plain,%",
+			"data:text/plain,abc%4",
+			"data:text/plain,%zz",
+			"data:text/plain;filename=%x1,abc",
+			"data:;x=%g1,abc",
+			"data:;%zz=y,"
+		};
+		
+		for (final String testString : testStrings) {
+			try {
+				DataUri.parse(testString, UTF_8);
+				Assert.fail("Illegal percent escape in `"+ testString +"' must be rejected");
+			} catch (IllegalArgumentException e) {
+				// Pass
+			}
+		}
+	}
+	
+	
+	
+	@Test
+	public void testLazy() {
+		final String test = "data:image/gif;charset=utf-8;filename=test.txt;content-disposition=inline;base64,R0lGODlhAQABAIAAAP///wAAACH5BAEAAAAALAAAAAABAAEAAAICRAEAOw==";
+		DataUri lazy = DataUri.parseLazy(test, UTF_8);
+		
+		Assert.assertEquals("image/gif", lazy.getMime());
+		Assert.assertEquals(Charset.forName("UTF-8"), lazy.getCharset());
+		Assert.assertEquals("test.txt", lazy.getFilename());
+		Assert.assertEquals("inline", lazy.getContentDisposition());
+		
+		final byte[] data = lazy.getData();
+		Assert.assertArrayEquals(DataUri.parse(test, UTF_8).getData(), data);
+		Assert.assertSame(data, lazy.getData());
+		
+		Assert.assertEquals(DataUri.parse(test, UTF_8), lazy);
+		Assert.assertEquals(DataUri.parse(test, UTF_8).hashCode(), lazy.hashCode());
+		Assert.assertEquals(DataUri.parse(test, UTF_8).toString(), lazy.toString());
+	}
+	
+	
+	
+	@Test
+	public void testLazyConcurrentAccess() throws InterruptedException {
+		final DataUri lazy = DataUri.parseLazy("data:text/plain,Hello%2C%20World", UTF_8);
+		final byte[][] results = new byte[8][];
+		final Thread[] threads = new Thread[results.length];
+		
+		for (int i = 0; i < threads.length; ++i) {
+			final int thread = i;
+			threads[i] = new Thread() {
+				@Override public void run() {
+					results[thread] = lazy.getData();
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		for (byte[] result : results) {
+			Assert.assertSame(results[0], result);
+		}
+		Assert.assertArrayEquals("Hello, World".getBytes(UTF_8), results[0]);
+	}
+	
+	
+	
+	@Test
+	public void testLazyValidatesEagerly() {
+		try {
+			DataUri.parseLazy("data:text/plain,abc%4", UTF_8);
+			Assert.fail("Illegal percent escape must be rejected during parse");
+		} catch (IllegalArgumentException e) {
+			// Pass
+		}
+	}
+	
+	
+	
+	@Test
+	public void testPeek() {
+		final String test = "data:image/gif;charset=utf-8;filename=test.txt;content-disposition=inline;base64,R0lGODlhAQABAIAAAP///wAAACH5BAEAAAAALAAAAAABAAEAAAICRAEAOw==";
+		DataUriHeader header = DataUri.peek(test, UTF_8);
+		
+		Assert.assertEquals("image/gif", header.getMime());
+		Assert.assertEquals(Charset.forName("UTF-8"), header.getCharset());
+		Assert.assertEquals("test.txt", header.getFilename());
+		Assert.assertEquals("inline", header.getContentDisposition());
+		Assert.assertEquals("base64", header.getContentEncoding());
+		Assert.assertEquals(43, header.getDecodedLength());
+		
+		header = DataUri.peek("data:,Hello%2C%20World", UTF_8);
+		Assert.assertEquals("text/plain", header.getMime());
+		Assert.assertEquals(null, header.getContentEncoding());
+		Assert.assertEquals(12, header.getDecodedLength());
+		
+		/* Headers can be peeked at without creating a string
+		 */
+		header = DataUri.peek(new StringBuilder(test), UTF_8);
+		Assert.assertEquals("image/gif", header.getMime());
+		Assert.assertEquals(43, header.getDecodedLength());
+	}
+	
+	
+	
+	@Test
+	public void testPeekDecodedLength() {
+		final String[] testStrings = {
+			"data:,",
+			"data:,a",
+			"data:,%00%ff+",
+			"data:,\u00e4\u00f6%20\u00fc",
+			"data:;base64,",
+			"data:;base64,Q",
+			"data:;base64,QQ",
+			"data:;base64,QUI",
+			"data:;base64,QUJD",
+			"data:;base64,QUJDRA",
+			"data:;base64,QUJDRA==",
+			"data:;base64,QUJDRA==QUJD",
+			"data:;base64,QU%4ADRA%3D%3D",
+			"data:;base64,QU JD\nRA\t==",
+			"data:;base64,Q!U@J#D$R*A",
+			"data:;base64,-_-_",
+			"data:;base64,\u00e4QUJD\u00f6",
+			"data:;base64,=QUJD"
+		};
+		
+		for (final String testString : testStrings) {
+			Assert.assertEquals(testString, DataUri.parse(testString, UTF_8).getData().length, DataUri.peek(testString, UTF_8).getDecodedLength());
+		}
+	}
+	
+	
+	
+	@Test
+	public void testPeekIllegalPercentEscape() {
+		final String[] testStrings = {
+			"data:text/plain,abc%4",
+			"data:;base64,QUJD%zz",
+			"data:;base64,QUJD==%"
+		};
+		
+		for (final String testString : testStrings) {
+			try {
+				DataUri.peek(testString, UTF_8);
+				Assert.fail("Illegal percent escape in `"+ testString +"' must be rejected");
+			} catch (IllegalArgumentException e) {
+				// Pass
+			}
+		}
+	}
+	
+	
+	
+	@Test
+	public void testParseInPlace() {
+		final String[] testStrings = {
+			"data:image/gif;charset=utf-8;filename=test.txt;content-disposition=inline;base64,R0lGODlhAQABAIAAAP///wAAACH5BAEAAAAALAAAAAABAAEAAAICRAEAOw==",
+			"data:text/plain;charset=utf-8,Hello%2C%20how%20do%20you%20do%3F",
+			"data:application/octet-stream,%00%FF%fe%80a+b",
+			"data:text/plain;filename=%C3%A4.txt,\u00e4\u00f6\u00fc",
+			"data:text/plain;filename=\u00c4.txt,%C3%A4",
+			"DATA: Image/PNG ;BASE64,QUJD"
+		};
+		
+		for (final String testString : testStrings) {
+			final DataUri expected = DataUri.parse(testString, UTF_8);
+			final byte[] octets = testString.getBytes(UTF_8);
+			
+			final byte[] padded = new byte[octets.length + 6];
+			System.arraycopy(octets, 0, padded, 3, octets.length);
+			
+			final ByteBuffer direct = ByteBuffer.allocateDirect(octets.length + 4);
+			direct.position(2);
+			direct.put(octets);
+			direct.position(2).limit(2 + octets.length);
+			
+			Assert.assertEquals(testString, expected, DataUri.parse(new StringBuilder(testString), UTF_8));
+			Assert.assertEquals(testString, expected, DataUri.parse(octets, 0, octets.length, UTF_8));
+			Assert.assertEquals(testString, expected, DataUri.parse(padded, 3, octets.length, UTF_8));
+			Assert.assertEquals(testString, expected, DataUri.parse(ByteBuffer.wrap(padded, 3, octets.length), UTF_8));
+			Assert.assertEquals(testString, expected, DataUri.parse(direct, UTF_8));
+			
+			Assert.assertEquals(2, direct.position());
+			Assert.assertEquals(2 + octets.length, direct.limit());
+		}
+	}
+	
+	
+	
+	@Test
+	public void testParseOctetsMalformed() {
+		final String[] testStrings = {
+			"",
+			"dato:text/plain,abc",
+			"data:text/plain;base64",
+			"data:text/plain,%4"
+		};
+		
+		for (final String testString : testStrings) {
+			try {
+				DataUri.parse(ByteBuffer.wrap(testString.getBytes(UTF_8)), UTF_8);
+				Assert.fail("Malformed `"+ testString +"' must be rejected");
+			} catch (IllegalArgumentException e) {
+				// Pass
+			}
+		}
+	}
+	
+	
+	
+	@Test
+	public void testDecodeInto() {
+		final String[] testStrings = {
+			"data:image/gif;charset=utf-8;filename=test.txt;content-disposition=inline;base64,R0lGODlhAQABAIAAAP///wAAACH5BAEAAAAALAAAAAABAAEAAAICRAEAOw==",
+			"data:text/plain;charset=utf-8,Hello%2C%20how%20do%20you%20do%3F",
+			"data:application/octet-stream,%00%FF%fe%80a+b",
+			"data:text/plain;filename=%C3%A4.txt,\u00e4\u00f6\u00fc",
+			"data:;base64,QUJ",
+			"data:,"
+		};
+		
+		for (final String testString : testStrings) {
+			final DataUri expected = DataUri.parse(testString, UTF_8);
+			final ByteBuffer heap = ByteBuffer.allocate(expected.getData().length + 5);
+			final ByteBuffer direct = ByteBuffer.allocateDirect(expected.getData().length + 5);
+			heap.position(2);
+			direct.position(3);
+			
+			DataUriHeader header = DataUri.decodeInto(testString, UTF_8, heap);
+			Assert.assertEquals(testString, expected.getMime(), header.getMime());
+			Assert.assertEquals(testString, expected.getFilename(), header.getFilename());
+			Assert.assertEquals(testString, expected.getData().length, header.getDecodedLength());
+			Assert.assertEquals(testString, 2 + expected.getData().length, heap.position());
+			
+			header = DataUri.decodeInto(ByteBuffer.wrap(testString.getBytes(UTF_8)), UTF_8, direct);
+			Assert.assertEquals(testString, expected.getData().length, header.getDecodedLength());
+			Assert.assertEquals(testString, 3 + expected.getData().length, direct.position());
+			
+			heap.flip().position(2);
+			direct.flip().position(3);
+			Assert.assertEquals(testString, expected.getDataBuffer(), heap);
+			Assert.assertEquals(testString, expected.getDataBuffer(), direct);
+		}
+	}
+	
+	
+	
+	@Test
+	public void testDecodeIntoOverflow() {
+		final ByteBuffer target = ByteBuffer.allocate(3);
+		
+		try {
+			DataUri.decodeInto("data:,abcd", UTF_8, target);
+			Assert.fail("Overflow must be signaled");
+		} catch (BufferOverflowException e) {
+			// Pass
+		}
+		Assert.assertEquals(0, target.position());
+		
+		Assert.assertEquals(3, DataUri.decodeInto("data:;base64,QUJD", UTF_8, target).getDecodedLength());
+		Assert.assertEquals(0, DataUri.decodeInto("data:;base64,", UTF_8, target).getDecodedLength());
+	}
+	
+	
+	
+	@Test(timeout = 10000)
+	public void testDecodeIntoTrailingInput() throws IOException {
+		for (final String testString : new String[] {"data:;base64,QUJD\n", "data:;base64,QUJD\r\n", "data:;base64,QUJDQ"}) {
+			final ByteBuffer target = ByteBuffer.allocate(3);
+			
+			Assert.assertEquals(testString, 3, DataUri.decodeInto(testString, UTF_8, target).getDecodedLength());
+			Assert.assertEquals(testString, 0, target.remaining());
+			
+			final ByteArrayOutputStream octets = new ByteArrayOutputStream();
+			Assert.assertEquals(testString, 3, DataUri.transferTo(testString, UTF_8, Channels.newChannel(octets), ByteBuffer.allocate(3)).getDecodedLength());
+			Assert.assertArrayEquals(testString, new byte[] {'A', 'B', 'C'}, octets.toByteArray());
+		}
+	}
+	
+	
+	
+	@Test
+	public void testDataBuffer() {
+		final byte[] data = new byte[] {1, 2, 3};
+		final ByteBuffer buffer = new DataUri("application/octet-stream", null, data).getDataBuffer();
+		
+		Assert.assertTrue(buffer.isReadOnly());
+		Assert.assertEquals(0, buffer.position());
+		Assert.assertEquals(3, buffer.remaining());
+		
+		data[1] = 42;
+		Assert.assertEquals(42, buffer.get(1));
+	}
+	
+	
+	
+	@Test
+	public void testToStringMatchesBase64() {
+		final Random random = new Random(42);
+		
+		for (final int length : new int[] {0, 1, 2, 3, 4, 3071, 3072, 3073, 10000}) {
+			final byte[] data = new byte[length];
+			random.nextBytes(data);
+			
+			Assert.assertEquals(
+				"data:application/octet-stream;filename=\u00e4.bin;base64,"+ Base64.encodeBase64String(data),
+				new DataUri("application/octet-stream", null, "\u00e4.bin", null, data).toString()
+			);
+		}
+	}
+	
+	
+	
+	@Test
+	public void testWriteTo() throws IOException {
+		final Random random = new Random(42);
+		
+		for (final int length : new int[] {0, 1, 2, 3, 4, 3071, 3072, 3073, 10000}) {
+			final byte[] data = new byte[length];
+			random.nextBytes(data);
+			
+			final DataUri duri = new DataUri("image/png", UTF_8, "\u00e4.png", "inline", data);
+			final String expected = duri.toString();
+			
+			final StringBuilder builder = new StringBuilder();
+			duri.writeTo(builder);
+			Assert.assertEquals(expected, builder.toString());
+			
+			final StringWriter writer = new StringWriter();
+			duri.writeTo(writer);
+			Assert.assertEquals(expected, writer.toString());
+			
+			final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			duri.writeTo(stream);
+			Assert.assertEquals(expected, new String(stream.toByteArray(), UTF_8));
+			
+			final ByteArrayOutputStream channel = new ByteArrayOutputStream();
+			duri.writeTo(Channels.newChannel(channel));
+			Assert.assertEquals(expected, new String(channel.toByteArray(), UTF_8));
+		}
+	}
+	
+	
+	
+	@Test
+	public void testTransferTo() throws IOException {
+		final byte[] data = new byte[100000];
+		new Random(42).nextBytes(data);
+		
+		final String[] testStrings = {
+			new DataUri("application/octet-stream", null, "a.bin", null, data).toString(),
+			"data:text/plain;charset=utf-8,Hello%2C%20how%20do%20you%20do%3F",
+			"data:text/plain;filename=%C3%A4.txt,\u00e4\u00f6\u00fc",
+			"data:,"
+		};
+		
+		for (final String testString : testStrings) {
+			final DataUri expected = DataUri.parse(testString, UTF_8);
+			
+			final ByteArrayOutputStream chars = new ByteArrayOutputStream();
+			DataUriHeader header = DataUri.transferTo(testString, UTF_8, Channels.newChannel(chars));
+			Assert.assertEquals(expected.getMime(), header.getMime());
+			Assert.assertEquals(expected.getFilename(), header.getFilename());
+			Assert.assertEquals(expected.getData().length, header.getDecodedLength());
+			Assert.assertArrayEquals(expected.getData(), chars.toByteArray());
+			
+			final ByteArrayOutputStream octets = new ByteArrayOutputStream();
+			header = DataUri.transferTo(ByteBuffer.wrap(testString.getBytes(UTF_8)), UTF_8, Channels.newChannel(octets), ByteBuffer.allocateDirect(7));
+			Assert.assertEquals(expected.getData().length, header.getDecodedLength());
+			Assert.assertArrayEquals(expected.getData(), octets.toByteArray());
+		}
+	}
+	
+	
+	
+	@Test
+	public void testTransferToFile() throws IOException {
+		final File file = File.createTempFile("jdatauri", ".bin");
+		
+		try {
+			final FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+			
+			try {
+				DataUri.transferTo("data:;base64,R0lGODlhAQABAIAAAP///wAAACH5BAEAAAAALAAAAAABAAEAAAICRAEAOw==", UTF_8, channel);
+			} finally {
+				channel.close();
+			}
+			
+			Assert.assertEquals(43, file.length());
+		} finally {
+			file.delete();
+		}
+	}
+	
+	
+	
+	@Test
+	public void testParallel() {
+		final byte[] data = new byte[3 * 1024 * 1024 + 1];
+		new Random(42).nextBytes(data);
+		
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		
+		try {
+			final DataUri dataUri = new DataUri("application/octet-stream", null, "data.bin", null, data);
+			final String encoded = dataUri.toString(pool);
+			Assert.assertEquals(dataUri.toString(), encoded);
+			
+			final DataUri parsed = DataUri.parse(encoded, UTF_8, pool);
+			Assert.assertEquals(dataUri, parsed);
+			Assert.assertEquals("data.bin", parsed.getFilename());
+			
+			final DataUri small = DataUri.parse("data:text/plain;base64,Zm9v", UTF_8, pool);
+			Assert.assertEquals("foo", new String(small.getData(), UTF_8));
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	
+	
+	@Test
+	public void testTryParse() {
+		final String[] testStrings = {
+			"data:text/plain;charset=utf-8;filename=%C3%A4.txt,Hello%2C%20world",
+			"data:;base64,Zm9vYmFy",
+			"data:,",
+			"data:text/plain;foo=%20,ignored option"
+		};
+		
+		for (final String testString : testStrings) {
+			final DataUriParseResult result = DataUri.tryParse(testString, UTF_8);
+			
+			Assert.assertTrue(result.isSuccess());
+			Assert.assertNull(result.getError());
+			Assert.assertEquals(-1, result.getErrorOffset());
+			Assert.assertEquals(DataUri.parse(testString, UTF_8), result.getDataUri());
+			Assert.assertEquals(DataUri.parse(testString, UTF_8).getFilename(), result.getDataUri().getFilename());
+		}
+	}
+	
+	
+	
+	@Test
+	public void testTryParseError() {
+		assertTryParseError("http://example.com/", DataUriError.MISSING_SCHEME, 0);
+		assertTryParseError("dat", DataUriError.MISSING_SCHEME, 0);
+		assertTryParseError("data:text/plain", DataUriError.MISSING_COMMA, 15);
+		assertTryParseError("data:text/plain,abc%4", DataUriError.ILLEGAL_PERCENT_ESCAPE, 19);
+		assertTryParseError("data:text/plain;filename=%g0,abc", DataUriError.ILLEGAL_PERCENT_ESCAPE, 25);
+		assertTryParseError("data:text%2;base64,abc", DataUriError.ILLEGAL_PERCENT_ESCAPE, 9);
+		assertTryParseError("data:text/plain;foo=%zz,ignored option", DataUriError.ILLEGAL_PERCENT_ESCAPE, 20);
+		assertTryParseError("data:;x=%g1,abc", DataUriError.ILLEGAL_PERCENT_ESCAPE, 8);
+		assertTryParseError("data:;%zz=y,", DataUriError.ILLEGAL_PERCENT_ESCAPE, 6);
+		assertTryParseError("data:;gzip%2;base64,abc", DataUriError.ILLEGAL_PERCENT_ESCAPE, 10);
+		assertTryParseError("data:text/plain;charset=utf 8,abc", DataUriError.ILLEGAL_CHARSET_NAME, 24);
+		assertTryParseError("data:text/plain;charset=no-such-charset,abc", DataUriError.UNSUPPORTED_CHARSET, 24);
+	}
+	
+	private void assertTryParseError(String uri, DataUriError error, int offset) {
+		final DataUriParseResult result = DataUri.tryParse(uri, UTF_8);
+		
+		Assert.assertFalse(result.isSuccess());
+		Assert.assertNull(result.getDataUri());
+		Assert.assertEquals(error, result.getError());
+		Assert.assertEquals(offset, result.getErrorOffset());
+		
+		/* parse still throws for the same URI
+		 */
+		try {
+			DataUri.parse(uri, UTF_8);
+			Assert.fail("parse must throw for "+ uri);
+		} catch (IllegalArgumentException e) {
+			// Pass
+		}
+	}
+	
+	
+	
+	@Test
+	public void testSharedHeaderValues() {
+		final DataUri first = DataUri.parse("data:image/png;filename=Logo.png;base64,", UTF_8);
+		final DataUri second = DataUri.parse("data: IMAGE/PNG ;filename=logo.png;base64,", UTF_8);
+		
+		Assert.assertSame(first.getMime(), second.getMime());
+		Assert.assertSame(first.getFilename(), second.getFilename());
+	}
+	
+	
+	
+	@Test
+	public void testHashCodeCached() {
+		final DataUri dataUri = DataUri.parse("data:text/plain;charset=utf-8,Hello", UTF_8);
+		final int expected = dataUri.hashCode();
+		
+		Assert.assertEquals(expected, dataUri.hashCode());
+		Assert.assertEquals(expected, DataUri.parseLazy("data:text/plain;charset=utf-8,Hello", UTF_8).hashCode());
+		Assert.assertEquals(expected, new DataUri("text/plain", UTF_8, "Hello".getBytes(UTF_8)).hashCode());
+	}
+	
+	
+	
+	@Test
+	public void testDigest() throws Exception {
+		final byte[] data = new byte[100000];
+		new Random(42).nextBytes(data);
+		
+		final DataUri first = new DataUri("application/octet-stream", null, data.clone());
+		final DataUri second = new DataUri("application/octet-stream", null, data.clone());
+		final byte[] other = data.clone();
+		other[other.length - 1] ^= 1;
+		final DataUri third = new DataUri("application/octet-stream", null, other);
+		
+		Assert.assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(data), first.getDigest());
+		Assert.assertArrayEquals(first.getDigest(), second.getDigest());
+		Assert.assertFalse(Arrays.equals(first.getDigest(), third.getDigest()));
+		
+		/* Equality is decided by digests and hash codes if known
+		 */
+		Assert.assertEquals(first, second);
+		Assert.assertFalse(first.equals(third));
+		first.hashCode();
+		third.hashCode();
+		Assert.assertFalse(first.equals(third));
+		
+		/* Digests are not affected by modifying the returned copy
+		 */
+		first.getDigest()[0] ^= 1;
+		Assert.assertArrayEquals(first.getDigest(), second.getDigest());
+		
+		/* Only one side knows its digest
+		 */
+		Assert.assertEquals(first, new DataUri("application/octet-stream", null, data.clone()));
+	}
+	
+	
+	
+	@Test
+	public void testCompactString() {
+		final String svg = "<svg xmlns=\"http://www.w3.org/2000/svg\"><path d=\"M0 0h16v16H0z\"/></svg>";
+		final DataUri text = new DataUri("image/svg+xml", UTF_8, svg.getBytes(UTF_8));
+		final String compact = text.toCompactString();
+		
+		Assert.assertTrue(compact, compact.startsWith("data:image/svg+xml;charset=UTF-8,%3Csvg%20xmlns=%22http://"));
+		Assert.assertTrue(compact.length() < text.toString().length());
+		Assert.assertEquals(text, DataUri.parse(compact, UTF_8));
+		
+		/* Binary payload stays base64 encoded
+		 */
+		final byte[] data = new byte[300];
+		new Random(42).nextBytes(data);
+		final DataUri binary = new DataUri("application/octet-stream", null, data);
+		Assert.assertEquals(binary.toString(), binary.toCompactString());
+		
+		final DataUri empty = new DataUri("text/plain", null, new byte[0]);
+		Assert.assertEquals("data:text/plain,", empty.toCompactString());
+		Assert.assertEquals(empty, DataUri.parse(empty.toCompactString(), UTF_8));
+		
+		final DataUri parameters = new DataUriParser.Builder().setRetainAllParameters(true).build().parse("data:text/plain;foo=bar,Hello");
+		Assert.assertEquals("data:text/plain;foo=bar,Hello", parameters.toCompactString());
+	}
 }
@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.nio.charset.Charset;
+
+/**
+ * Measures parse throughput and retained heap of many small data URIs with
+ * recurring header values, which share canonical instances
+ * 
+ * Not run as part of the test suite, start {@link #main(String[])} with the
+ * test classpath after {@code mvn test-compile}
+ *
+ * @author ooxi
+ */
+public class HeaderValuesBenchmark {
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final int WARMUP_ROUNDS = 1000000;
+	private static final int MEASURE_ROUNDS = 2000000;
+	private static final int RETAINED = 200000;
+	
+	private static final String[] URIS = {
+		"data:image/png;filename=spinner.png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNkYPhfDwAChwGA60e6kgAAAABJRU5ErkJggg==",
+		"data:image/gif;base64,R0lGODlhAQABAIAAAAAAAP///yH5BAEAAAAALAAAAAABAAEAAAIBRAA7",
+		"data:image/svg+xml;charset=utf-8,%3Csvg%20xmlns%3D%22http%3A%2F%2Fwww.w3.org%2F2000%2Fsvg%22%2F%3E",
+		"data:text/plain;charset=US-ASCII;content-disposition=inline;filename=readme.txt,Hello",
+		"data:application/json;charset=utf-8,%7B%7D"
+	};
+	
+	
+	
+	public static void main(String[] args) {
+		long blackhole = 0;
+		
+		for (int i = 0; i < WARMUP_ROUNDS; ++i) {
+			blackhole += DataUri.parse(URIS[i % URIS.length], UTF_8).getMime().length();
+		}
+		
+		final long start = System.nanoTime();
+		
+		for (int i = 0; i < MEASURE_ROUNDS; ++i) {
+			blackhole += DataUri.parse(URIS[i % URIS.length], UTF_8).getMime().length();
+		}
+		
+		final double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("parse     %10.0f data URIs/s (%d)%n", MEASURE_ROUNDS / seconds, blackhole);
+		
+		final long before = usedHeap();
+		final DataUri[] retained = new DataUri[RETAINED];
+		
+		for (int i = 0; i < RETAINED; ++i) {
+			retained[i] = DataUri.parse(URIS[i % URIS.length], UTF_8);
+		}
+		
+		final long after = usedHeap();
+		System.out.printf("retained  %10.1f bytes per data URI (%d)%n", (double)(after - before) / RETAINED, retained.length);
+	}
+	
+	
+	
+	private static long usedHeap() {
+		final Runtime runtime = Runtime.getRuntime();
+		
+		for (int i = 0; i < 5; ++i) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
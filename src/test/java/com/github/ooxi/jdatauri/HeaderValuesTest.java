@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.nio.charset.Charset;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author ooxi
+ */
+public class HeaderValuesTest {
+	
+	private final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	
+	
+	@Test
+	public void testWellKnown() {
+		final String png = HeaderValues.intern("xxIMAGE/Pngxx", 2, 11);
+		
+		Assert.assertEquals("image/png", png);
+		Assert.assertSame(png, HeaderValues.intern("image/png", 0, 9));
+		Assert.assertSame(png, HeaderValues.intern(new String("image/png")));
+	}
+	
+	
+	
+	@Test
+	public void testIntern() {
+		final String first = HeaderValues.intern("Spinner.GIF", 0, 11);
+		
+		Assert.assertEquals("spinner.gif", first);
+		Assert.assertSame(first, HeaderValues.intern(new StringBuilder("spinner.gif"), 0, 11));
+		Assert.assertSame(first, HeaderValues.intern(new String("spinner.gif")));
+	}
+	
+	
+	
+	@Test
+	public void testLongValuesNotInterned() {
+		final StringBuilder builder = new StringBuilder();
+		
+		while (builder.length() <= HeaderValues.MAXIMUM_INTERNED_LENGTH) {
+			builder.append("Long");
+		}
+		final String expected = builder.toString().toLowerCase();
+		final String first = HeaderValues.intern(builder, 0, builder.length());
+		final String second = HeaderValues.intern(builder, 0, builder.length());
+		
+		Assert.assertEquals(expected, first);
+		Assert.assertEquals(expected, second);
+		Assert.assertNotSame(first, second);
+		
+		final String value = new String(expected);
+		Assert.assertSame(value, HeaderValues.intern(value));
+		Assert.assertNotSame(value, HeaderValues.intern(new String(expected)));
+		
+		final String limit = expected.substring(0, HeaderValues.MAXIMUM_INTERNED_LENGTH);
+		Assert.assertSame(HeaderValues.intern(limit, 0, limit.length()), HeaderValues.intern(new String(limit)));
+	}
+	
+	
+	
+	/**
+	 * Values materialized from percent escapes may contain uppercase
+	 * letters, which must not be folded
+	 */
+	@Test
+	public void testCase() {
+		final String upper = HeaderValues.intern(new String("Logo.PNG"));
+		
+		Assert.assertEquals("Logo.PNG", upper);
+		Assert.assertEquals("logo.png", HeaderValues.intern("Logo.PNG", 0, 8));
+	}
+	
+	
+	
+	@Test
+	public void testCharset() {
+		Assert.assertSame(UTF_8, HeaderValues.charset("utf-8"));
+		Assert.assertTrue(HeaderValues.isKnownCharset("utf-8"));
+		Assert.assertSame(HeaderValues.charset("iso-8859-1"), HeaderValues.charset("iso-8859-1"));
+		
+		try {
+			HeaderValues.charset("no-such-charset");
+			Assert.fail("Unsupported charset must not be resolved");
+		} catch (IllegalArgumentException e) {
+			// Pass
+		}
+		Assert.assertFalse(HeaderValues.isKnownCharset("no-such-charset"));
+	}
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author ooxi
+ */
+public class ParallelBase64Test {
+	
+	private static ForkJoinPool pool;
+	
+	
+	
+	@BeforeClass
+	public static void setUpClass() {
+		pool = new ForkJoinPool(4);
+	}
+	
+	@AfterClass
+	public static void tearDownClass() {
+		pool.shutdown();
+	}
+	
+	
+	
+	@Test
+	public void testEncode() {
+		final Random random = new Random(42);
+		
+		for (final int length : new int[] {0, 1, 100, ParallelBase64.THRESHOLD, 3 * ParallelBase64.THRESHOLD + 1, 3 * ParallelBase64.THRESHOLD + 2}) {
+			final byte[] data = new byte[length];
+			random.nextBytes(data);
+			
+			Assert.assertArrayEquals(encode(data), parallelEncode(data));
+		}
+	}
+	
+	
+	
+	/**
+	 * Lengths whose quotient by the number of chunks is a multiple of three
+	 * while the division leaves a remainder
+	 */
+	@Test
+	public void testEncodeUnevenChunks() {
+		final Random random = new Random(42);
+		
+		for (final int parallelism : new int[] {1, 2, 4, 8}) {
+			final ForkJoinPool pool = new ForkJoinPool(parallelism);
+			
+			try {
+				for (final int length : new int[] {1048585, 1048586, 1048587, 3000001}) {
+					final byte[] data = new byte[length];
+					random.nextBytes(data);
+					
+					Assert.assertArrayEquals("length "+ length +", parallelism "+ parallelism, encode(data), parallelEncode(data, pool));
+				}
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+	
+	@Test
+	public void testEncodeRandomLengths() {
+		final Random random = new Random(42);
+		
+		for (int i = 0; i < 20; ++i) {
+			final byte[] data = new byte[ParallelBase64.THRESHOLD + random.nextInt(3 * ParallelBase64.THRESHOLD)];
+			random.nextBytes(data);
+			
+			Assert.assertArrayEquals("length "+ data.length, encode(data), parallelEncode(data));
+		}
+	}
+	
+	
+	
+	@Test
+	public void testDecode() {
+		final Random random = new Random(42);
+		
+		for (final int length : new int[] {0, 100, ParallelBase64.THRESHOLD, 3 * ParallelBase64.THRESHOLD + 1, 3 * ParallelBase64.THRESHOLD + 2}) {
+			final byte[] data = new byte[length];
+			random.nextBytes(data);
+			
+			final byte[] symbols = toBytes(encode(data));
+			Assert.assertArrayEquals(data, ParallelBase64.decode(symbols, 0, symbols.length, pool));
+		}
+	}
+	
+	
+	
+	/**
+	 * Octets outside of the alphabet shift quanta across chunk boundaries
+	 */
+	@Test
+	public void testDecodeNoise() {
+		final Random random = new Random(42);
+		final byte[] symbols = new byte[4 * ParallelBase64.THRESHOLD + 3];
+		final byte[] noise = {' ', '\r', '\n', '*', '-', '_', (byte)0xE4};
+		
+		for (int i = 0; i < symbols.length; ++i) {
+			symbols[i] = (0 == random.nextInt(3))
+				? noise[random.nextInt(noise.length)]
+				: (byte)"ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".charAt(random.nextInt(64));
+		}
+		
+		/* Long runs of noise spanning whole chunks
+		 */
+		Arrays.fill(symbols, ParallelBase64.THRESHOLD + 7, 2 * ParallelBase64.THRESHOLD + 11, (byte)' ');
+		
+		Assert.assertArrayEquals(decode(symbols, 1, symbols.length - 1), ParallelBase64.decode(symbols, 1, symbols.length - 1, pool));
+	}
+	
+	
+	
+	/**
+	 * Payloads without percent escapes are decoded straight from the data
+	 * URI, characters outside of US-ASCII are ignored
+	 */
+	@Test
+	public void testDecodeCharSequence() {
+		final Random random = new Random(42);
+		final StringBuilder symbols = new StringBuilder(4 * ParallelBase64.THRESHOLD + 3);
+		final StringBuilder ascii = new StringBuilder(symbols.capacity());
+		final char[] noise = {' ', '\n', '*', '\u00e4', '\u0159', '\u20ac'};
+		
+		while (symbols.length() < 4 * ParallelBase64.THRESHOLD + 3) {
+			final char c = (0 == random.nextInt(3))
+				? noise[random.nextInt(noise.length)]
+				: "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".charAt(random.nextInt(64));
+			
+			symbols.append(c);
+			if (c < 0x80) {
+				ascii.append(c);
+			}
+		}
+		
+		final byte[] expected = toBytes(ascii.toString().toCharArray());
+		Assert.assertArrayEquals(decode(expected, 0, expected.length), ParallelBase64.decode(symbols, 0, symbols.length(), pool));
+	}
+	
+	
+	
+	@Test
+	public void testDecodePadding() {
+		final byte[] symbols = toBytes(encode(new byte[4 * ParallelBase64.THRESHOLD]));
+		
+		for (final int pad : new int[] {0, 1, 2, 3, 5, ParallelBase64.THRESHOLD + 2, 3 * ParallelBase64.THRESHOLD + 1, symbols.length - 1}) {
+			final byte[] padded = symbols.clone();
+			padded[pad] = Base64Codec.PAD;
+			
+			Assert.assertArrayEquals(decode(padded, 0, padded.length), ParallelBase64.decode(padded, 0, padded.length, pool));
+		}
+	}
+	
+	
+	
+	private static char[] encode(byte[] data) {
+		final char[] symbols = new char[(int)Base64Codec.encodedLength(data.length)];
+		Base64Codec.encode(data, 0, data.length, symbols, 0);
+		return symbols;
+	}
+	
+	private static char[] parallelEncode(byte[] data) {
+		return parallelEncode(data, pool);
+	}
+	
+	private static char[] parallelEncode(byte[] data, ForkJoinPool pool) {
+		final char[] symbols = new char[(int)Base64Codec.encodedLength(data.length) + 1];
+		
+		Assert.assertEquals(symbols.length, ParallelBase64.encode(data, symbols, 1, pool));
+		return Arrays.copyOfRange(symbols, 1, symbols.length);
+	}
+	
+	private static byte[] decode(byte[] symbols, int offset, int length) {
+		final byte[] data = new byte[Base64Codec.decodedLength(symbols, offset, length)];
+		Base64Codec.decode(symbols, offset, length, data, 0);
+		return data;
+	}
+	
+	private static byte[] toBytes(char[] symbols) {
+		final byte[] octets = new byte[symbols.length];
+		
+		for (int i = 0; i < symbols.length; ++i) {
+			octets[i] = (byte)symbols[i];
+		}
+		return octets;
+	}
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.Charset;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author ooxi
+ */
+public class PayloadChannelTest {
+	
+	private final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private final String[] TEST_PAYLOADS = {
+		"",
+		"a",
+		"%00%ff+",
+		"\u00e4\u00f6%20\u00fc",
+		"Hello%2C%20how%20do%20you%20do%3F"
+	};
+	
+	private final String[] TEST_BASE64_PAYLOADS = {
+		"",
+		"Q",
+		"QQ",
+		"QUI",
+		"QUJD",
+		"QUJDRA",
+		"QUJDRA==",
+		"QUJDRA==QUJD",
+		"QU%4ADRA%3D%3D",
+		"QU JD\nRA\t==",
+		"Q!U@J#D$R*A",
+		"-_-_",
+		"\u00e4QUJD\u00f6",
+		"=QUJD",
+		"R0lGODlhAQABAIAAAP///wAAACH5BAEAAAAALAAAAAABAAEAAAICRAEAOw=="
+	};
+	
+	
+	
+	@Test
+	public void testDecode() throws ClosedChannelException {
+		for (final String payload : TEST_PAYLOADS) {
+			assertDecode(payload, false);
+		}
+		for (final String payload : TEST_BASE64_PAYLOADS) {
+			assertDecode(payload, true);
+		}
+	}
+	
+	
+	
+	/**
+	 * Input which does not yield octets after the target has been filled
+	 * must not keep the channel from reaching end-of-stream
+	 */
+	@Test(timeout = 10000)
+	public void testExactTarget() {
+		for (final String payload : new String[] {"QUJD\n", "QUJD\r\n", "QUJDQ", "QUJD=\n", "QUJD%0A", "QUJD\u00e4"}) {
+			final PayloadChannel channel = new PayloadChannel(payload, 0, payload.length(), true, UTF_8);
+			final ByteBuffer target = ByteBuffer.allocate(3);
+			
+			Assert.assertEquals(payload, 3, channel.decode(target));
+			Assert.assertEquals(payload, -1, channel.decode(target));
+		}
+		
+		final PayloadChannel channel = new PayloadChannel("QUJDRA\n", 0, 7, true, UTF_8);
+		final ByteBuffer target = ByteBuffer.allocate(3);
+		
+		Assert.assertEquals(3, channel.decode(target));
+		target.clear();
+		Assert.assertEquals(1, channel.decode(target));
+		Assert.assertEquals(-1, channel.decode(target));
+	}
+	
+	
+	
+	@Test
+	public void testIllegalEscape() throws ClosedChannelException {
+		final PayloadChannel channel = new PayloadChannel("ab%4", 0, 4, false, UTF_8);
+		
+		try {
+			channel.read(ByteBuffer.allocate(10));
+			Assert.fail("Illegal percent escape must be rejected");
+		} catch (IllegalArgumentException e) {
+			// Pass
+		}
+	}
+	
+	
+	
+	@Test
+	public void testClosed() {
+		final PayloadChannel channel = new PayloadChannel("abc", 0, 3, false, UTF_8);
+		
+		Assert.assertTrue(channel.isOpen());
+		channel.close();
+		Assert.assertFalse(channel.isOpen());
+		
+		try {
+			channel.read(ByteBuffer.allocate(10));
+			Assert.fail("Closed channel must not be readable");
+		} catch (ClosedChannelException e) {
+			// Pass
+		}
+	}
+	
+	
+	
+	/**
+	 * Decodes using target buffers of every size between one octet and
+	 * more than the whole payload
+	 */
+	private void assertDecode(String payload, boolean base64) throws ClosedChannelException {
+		final byte[] expected = EncodedPayload.decode(payload, 0, payload.length(), base64, UTF_8);
+		
+		for (int size = 1; size <= expected.length + 1; ++size) {
+			final PayloadChannel channel = new PayloadChannel(payload, 0, payload.length(), base64, UTF_8);
+			final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+			final ByteBuffer target = (0 == size % 2) ? ByteBuffer.allocate(size) : ByteBuffer.allocateDirect(size);
+			
+			for (int read = channel.read(target); -1 != read; read = channel.read(target)) {
+				target.flip();
+				
+				while (target.hasRemaining()) {
+					actual.write(target.get());
+				}
+				target.clear();
+			}
+			
+			Assert.assertArrayEquals(payload +" with buffer size "+ size, expected, actual.toByteArray());
+			Assert.assertEquals(payload.length(), channel.position());
+		}
+	}
+}
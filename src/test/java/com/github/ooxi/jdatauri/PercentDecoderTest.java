@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.nio.charset.Charset;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author ooxi
+ */
+public class PercentDecoderTest {
+	
+	private final Charset UTF_8 = Charset.forName("UTF-8");
+	private final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+	
+	
+	
+	@Test
+	public void testHex() {
+		final String digits = "0123456789abcdef";
+		
+		for (int i = 0; i < digits.length(); ++i) {
+			Assert.assertEquals(i, PercentDecoder.hex(digits.charAt(i)));
+			Assert.assertEquals(i, PercentDecoder.hex(Character.toUpperCase(digits.charAt(i))));
+		}
+		Assert.assertEquals(-1, PercentDecoder.hex('g'));
+		Assert.assertEquals(-1, PercentDecoder.hex('G'));
+		Assert.assertEquals(-1, PercentDecoder.hex('%'));
+		Assert.assertEquals(-1, PercentDecoder.hex(' '));
+	}
+	
+	
+	
+	@Test
+	public void testCountEscapes() {
+		Assert.assertEquals(0, PercentDecoder.countEscapes("abc", 0, 3));
+		Assert.assertEquals(2, PercentDecoder.countEscapes("a%20b%2Fc", 0, 9));
+		Assert.assertEquals(1, PercentDecoder.countEscapes("x%20b%2Fc", 2, 9));
+		Assert.assertEquals(~1, PercentDecoder.countEscapes("a\u00e4%20", 0, 5));
+	}
+	
+	
+	
+	@Test
+	public void testDecode() {
+		Assert.assertArrayEquals(new byte[] {}, PercentDecoder.decode("", 0, 0, UTF_8, false));
+		Assert.assertArrayEquals("a+b c".getBytes(UTF_8), PercentDecoder.decode("a+b%20c", 0, 7, UTF_8, false));
+		Assert.assertArrayEquals(new byte[] {0, -1, 127, -128}, PercentDecoder.decode("%00%ff%7F%80", 0, 12, UTF_8, false));
+		Assert.assertArrayEquals("bc".getBytes(UTF_8), PercentDecoder.decode("abcd", 1, 3, UTF_8, false));
+	}
+	
+	
+	
+	@Test
+	public void testDecodeLowercase() {
+		Assert.assertArrayEquals("image/svg+xml".getBytes(UTF_8), PercentDecoder.decode("Image%2FSVG+XML", 0, 15, UTF_8, true));
+		Assert.assertArrayEquals(new byte[] {'A', 'b'}, PercentDecoder.decode("%41B", 0, 4, UTF_8, true));
+	}
+	
+	
+	
+	@Test
+	public void testDecodeNonAscii() {
+		Assert.assertArrayEquals("\u00e4 \u00f6".getBytes(UTF_8), PercentDecoder.decode("\u00e4%20\u00f6", 0, 5, UTF_8, false));
+		Assert.assertArrayEquals("\u00e4 \u00f6".getBytes(ISO_8859_1), PercentDecoder.decode("\u00e4%20\u00f6", 0, 5, ISO_8859_1, false));
+		Assert.assertArrayEquals("\u00e4a".getBytes(UTF_8), PercentDecoder.decode("\u00c4A", 0, 2, UTF_8, true));
+	}
+	
+	
+	
+	@Test
+	public void testDecodeToString() {
+		Assert.assertEquals("\u00e4 b", PercentDecoder.decodeToString("%C3%A4%20b", 0, 10, UTF_8, false));
+		Assert.assertEquals("\u00c3\u00a4", PercentDecoder.decodeToString("%C3%A4", 0, 6, ISO_8859_1, false));
+	}
+	
+	
+	
+	@Test
+	public void testIllegalEscapes() {
+		final String[] testStrings = {"%", "%2", "a%2", "%2g", "%g2", "%-1", "%+1", "\u00e4%2"};
+		
+		for (final String testString : testStrings) {
+			try {
+				PercentDecoder.decode(testString, 0, testString.length(), UTF_8, false);
+				Assert.fail("Illegal escape `"+ testString +"' must be rejected");
+			} catch (IllegalArgumentException e) {
+				// Pass
+			}
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author ooxi
+ */
+public class PercentDecodingInputStreamTest {
+	
+	private final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	
+	
+	@Test
+	public void testDecode() throws IOException {
+		Assert.assertArrayEquals(new byte[] {}, decode(""));
+		Assert.assertArrayEquals("a+b c".getBytes(UTF_8), decode("a+b%20c"));
+		Assert.assertArrayEquals(new byte[] {0, -1, 127, -128}, decode("%00%ff%7F%80"));
+	}
+	
+	
+	
+	@Test
+	public void testEscapeAcrossReads() throws IOException {
+		final String encoded = "ab%2Fcd%3a%41";
+		
+		for (int split = 0; split <= encoded.length(); ++split) {
+			final InputStream in = new PercentDecodingInputStream(new SequenceInputStream(
+				new ByteArrayInputStream(encoded.substring(0, split).getBytes(UTF_8)),
+				new ByteArrayInputStream(encoded.substring(split).getBytes(UTF_8))
+			));
+			
+			Assert.assertArrayEquals("ab/cd:A".getBytes(UTF_8), readFully(in));
+		}
+	}
+	
+	
+	
+	@Test
+	public void testSingleOctetRead() throws IOException {
+		final InputStream in = new PercentDecodingInputStream(new ByteArrayInputStream("a%FF".getBytes(UTF_8)));
+		
+		Assert.assertEquals('a', in.read());
+		Assert.assertEquals(0xFF, in.read());
+		Assert.assertEquals(-1, in.read());
+	}
+	
+	
+	
+	@Test
+	public void testSkip() throws IOException {
+		final InputStream in = new PercentDecodingInputStream(new ByteArrayInputStream("%20%20%20a".getBytes(UTF_8)));
+		
+		Assert.assertEquals(3, in.skip(3));
+		Assert.assertEquals('a', in.read());
+		Assert.assertEquals(0, in.skip(3));
+	}
+	
+	
+	
+	@Test
+	public void testIllegalEscapes() {
+		final String[] testStrings = {"%", "%2", "a%2", "%2g", "%g2"};
+		
+		for (final String testString : testStrings) {
+			try {
+				decode(testString);
+				Assert.fail("Illegal escape `"+ testString +"' must be rejected");
+			} catch (IOException e) {
+				// Pass
+			}
+		}
+	}
+	
+	
+	
+	private byte[] decode(String encoded) throws IOException {
+		return readFully(new PercentDecodingInputStream(new ByteArrayInputStream(encoded.getBytes(UTF_8))));
+	}
+	
+	private static byte[] readFully(InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[3];
+		
+		for (int read = in.read(buffer); -1 != read; read = in.read(buffer)) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.nio.charset.Charset;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author ooxi
+ */
+public class PercentEncoderTest {
+	
+	private final Charset UTF_8 = Charset.forName("UTF-8");
+	private final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+	
+	
+	
+	@Test
+	public void testEncode() {
+		assertEncoded("abcXYZ019", "abcXYZ019");
+		assertEncoded("-_.!~*;/?:@&=+$,", "-_.!~*;/?:@&=+$,");
+		assertEncoded("%20%25%22%27%28%29%23%3C%3E%0A", " %\"'()#<>\n");
+		assertEncoded("h%C3%A4llo", "h\u00e4llo");
+		assertEncoded("", "");
+	}
+	
+	
+	
+	@Test
+	public void testRoundTrip() {
+		final byte[] octets = new byte[256];
+		
+		for (int i = 0; i < octets.length; ++i) {
+			octets[i] = (byte)i;
+		}
+		
+		final char[] encoded = new char[octets.length + 2 * PercentEncoder.countEscapes(octets, 0, octets.length)];
+		Assert.assertEquals(encoded.length, PercentEncoder.encode(octets, 0, octets.length, encoded, 0));
+		Assert.assertArrayEquals(octets, PercentDecoder.decode(new String(encoded), 0, encoded.length, ISO_8859_1, false));
+	}
+	
+	
+	
+	private void assertEncoded(String expected, String decoded) {
+		final byte[] octets = ("x"+ decoded +"x").getBytes(UTF_8);
+		final char[] encoded = new char[expected.length() + 2];
+		
+		Assert.assertEquals(expected.length() - (octets.length - 2), 2 * PercentEncoder.countEscapes(octets, 1, octets.length - 2));
+		Assert.assertEquals(1 + expected.length(), PercentEncoder.encode(octets, 1, octets.length - 2, encoded, 1));
+		Assert.assertEquals(expected, new String(encoded, 1, expected.length()));
+	}
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2013 ooxi
+ *     https://github.com/ooxi/jdatauri
+ * 
+ * This software is provided 'as-is', without any express or implied warranty.
+ * In no event will the authors be held liable for any damages arising from the
+ * use of this software.
+ * 
+ * Permission is granted to anyone to use this software for any purpose,
+ * including commercial applications, and to alter it and redistribute it
+ * freely, subject to the following restrictions:
+ * 
+ *  1. The origin of this software must not be misrepresented; you must not
+ *     claim that you wrote the original software. If you use this software in a
+ *     product, an acknowledgment in the product documentation would be
+ *     appreciated but is not required.
+ * 
+ *  2. Altered source versions must be plainly marked as such, and must not be
+ *     misrepresented as being the original software.
+ * 
+ *  3. This notice may not be removed or altered from any source distribution.
+ */
+package com.github.ooxi.jdatauri;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author ooxi
+ */
+public class ReaderInputStreamTest {
+	
+	private final Charset UTF_8 = Charset.forName("UTF-8");
+	private final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+	
+	
+	
+	@Test
+	public void testEncode() throws IOException {
+		final String[] testStrings = {
+			"",
+			"abc",
+			"\u00e4\u00f6\u00fc",
+			"\ud83d\ude00 surrogate pair",
+			"\ud83d lone surrogate"
+		};
+		
+		for (final String testString : testStrings) {
+			Assert.assertArrayEquals(testString, testString.getBytes(UTF_8), encode(testString, UTF_8));
+			Assert.assertArrayEquals(testString, testString.getBytes(ISO_8859_1), encode(testString, ISO_8859_1));
+		}
+	}
+	
+	
+	
+	@Test
+	public void testLargeInput() throws IOException {
+		final StringBuilder s = new StringBuilder();
+		
+		for (int i = 0; i < 100000; ++i) {
+			s.append((char)(i % 0xD000));
+		}
+		
+		Assert.assertArrayEquals(s.toString().getBytes(UTF_8), encode(s.toString(), UTF_8));
+	}
+	
+	
+	
+	private static byte[] encode(String s, Charset charset) throws IOException {
+		final InputStream in = new ReaderInputStream(new StringReader(s), charset);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		
+		for (int octet = in.read(); -1 != octet; octet = in.read()) {
+			out.write(octet);
+		}
+		in.close();
+		return out.toByteArray();
+	}
+}